@@ -1,9 +1,11 @@
 package ws.nmathe.saber;
 
+import ws.nmathe.saber.core.MemberIndex;
 import ws.nmathe.saber.core.ShardManager;
 import ws.nmathe.saber.core.command.CommandHandler;
 import ws.nmathe.saber.core.database.Driver;
 import ws.nmathe.saber.core.google.CalendarConverter;
+import ws.nmathe.saber.core.schedule.AnnouncementRouter;
 import ws.nmathe.saber.core.schedule.EntryManager;
 import ws.nmathe.saber.core.settings.BotSettingsManager;
 import ws.nmathe.saber.core.schedule.ScheduleManager;
@@ -18,13 +20,15 @@ import ws.nmathe.saber.utils.Logging;
 public class Main
 {
     private static ShardManager shardManager;
+    private static Driver mongoDriver                        = new Driver();
     private static BotSettingsManager botSettingsManager     = new BotSettingsManager();
     private static EntryManager entryManager                 = new EntryManager();
     private static ScheduleManager scheduleManager           = new ScheduleManager();
     private static CommandHandler commandHandler             = new CommandHandler();
     private static CalendarConverter calendarConverter       = new CalendarConverter();
     private static GuildSettingsManager guildSettingsManager = new GuildSettingsManager();
-    private static Driver mongoDriver                        = new Driver();
+    private static MemberIndex memberIndex                   = new MemberIndex();
+    private static AnnouncementRouter announcementRouter     = new AnnouncementRouter();
 
     /**
      * initialize the bot
@@ -88,4 +92,14 @@ public class Main
     {
         return mongoDriver;
     }
+
+    public static MemberIndex getMemberIndex()
+    {
+        return memberIndex;
+    }
+
+    public static AnnouncementRouter getAnnouncementRouter()
+    {
+        return announcementRouter;
+    }
 }
@@ -2,6 +2,7 @@ package ws.nmathe.saber.commands;
 
 import net.dv8tion.jda.api.events.Event;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 
 /**
@@ -30,15 +31,17 @@ public interface Command
      * @param prefix the initial substring of characters denoting the string is a command
      * @param args array of argument strings
      * @param event the originating event
+     * @param context per-invocation context, entities resolved here are available to action()
      * @return true if arguments are properly formed, false otherwise
      */
-    String verify(String prefix, String[] args, EventCompat event);
+    String verify(String prefix, String[] args, EventCompat event, CommandContext context);
 
     /**
      * what the bot does when the command is called by the user
      * @param prefix the initial substring of characters denoting the string is a command
      * @param args an array of arguments provided with the commands (excludes the invoking argument)
      * @param event the originating event object
+     * @param context per-invocation context populated by verify()
      */
-    void action(String prefix, String[] args, EventCompat event);
+    void action(String prefix, String[] args, EventCompat event, CommandContext context);
 }
@@ -4,6 +4,7 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -25,13 +26,13 @@ public class ClearLocksCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         Main.getScheduleManager().clearLocks();
         MessageUtilities.sendPrivateMsg("Cleared locks!", event.getAuthor(), null);
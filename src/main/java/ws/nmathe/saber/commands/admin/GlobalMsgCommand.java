@@ -1,19 +1,15 @@
 package ws.nmathe.saber.commands.admin;
 
-import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.Broadcast;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.utils.MessageUtilities;
-import net.dv8tion.jda.api.entities.MessageChannel;
-import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.TextChannel;
-import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-
-import java.util.Collection;
 
 /**
  * messages all connected guilds
+ * usage: announcement <message>, announcement dry-run, announcement resume
  */
 public class GlobalMsgCommand implements Command
 {
@@ -31,40 +27,64 @@ public class GlobalMsgCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
-        return "";
+        if (args.length == 0)
+        {
+            return "That's not enough arguments!";
+        }
+        switch (args[0].toLowerCase())
+        {
+            case "dry-run":
+                return "";
+
+            case "resume":
+                if (Broadcast.isRunning())
+                {
+                    return "A broadcast is already being sent!";
+                }
+                if (Broadcast.getCheckpoint() == null)
+                {
+                    return "There is no unfinished broadcast to resume!";
+                }
+                return "";
+
+            default:
+                if (Broadcast.isRunning())
+                {
+                    return "A broadcast is already being sent!";
+                }
+                if (String.join(" ", args).length() > 2000)
+                {
+                    return "The announcement may not be longer than 2000 characters!";
+                }
+                return "";
+        }
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
-        String msg = "";
-        for(String arg : args)
+        switch (args[0].toLowerCase())
         {
-            msg += arg + " ";
-        }
+            case "dry-run":
+                MessageUtilities.sendMsg(Broadcast.dryRun(), event.getChannel(), null);
+                break;
 
-        for(Guild guild : Main.getShardManager().getGuilds())
-        {
-            String channelId = Main.getGuildSettingsManager().getGuildSettings(guild.getId()).getCommandChannelId();
-            if(channelId == null) // look for default control channel name
-            {
-                Collection<TextChannel> chans = guild.getTextChannelsByName( Main.getBotSettingsManager().getControlChan(), true );
-                for( TextChannel chan : chans )
+            case "resume":
+                if (Broadcast.resume(event.getAuthor()))
                 {
-                    MessageUtilities.sendMsg(msg, chan, null);
+                    MessageUtilities.sendMsg("Resuming the unfinished broadcast. . .", event.getChannel(), null);
                 }
-            }
-            else // send to configured control channel
-            {
-                MessageChannel chan = guild.getTextChannelById(channelId);
-                if(chan != null)
+                break;
+
+            default:
+                String msg = String.join(" ", args);
+                if (Broadcast.start(msg, event.getAuthor()))
                 {
-                    MessageUtilities.sendMsg(msg, chan, null);
+                    MessageUtilities.sendMsg("Sending announcement to guilds. . .", event.getChannel(), null);
                 }
-            }
+                break;
         }
-        MessageUtilities.sendPrivateMsg("Finished sending announcements to guilds!", event.getAuthor(), null);
     }
 }
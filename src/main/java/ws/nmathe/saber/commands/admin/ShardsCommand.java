@@ -6,6 +6,7 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -29,13 +30,13 @@ public class ShardsCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         Consumer<String> sendMsg = (msg) ->
         {
@@ -6,11 +6,14 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.utils.MessageUtilities;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * retrieves bot stats for the admin
@@ -30,17 +33,19 @@ public class StatsCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         JDA.ShardInfo info = event.getJDA().getShardInfo();
         Runtime rt = Runtime.getRuntime();
         RuntimeMXBean rb = ManagementFactory.getRuntimeMXBean();
+        Map<String, Long> lag = Main.getEntryManager().getActionLag();
+        long maxLag = lag.isEmpty() ? 0 : Collections.max(lag.values());
 
         String msg = "```python\n" +
                 "\"Database\"\n" +
@@ -52,6 +57,11 @@ public class StatsCommand implements Command
                 "       Guilds: " + event.getJDA().getGuilds().size() + "\n" +
                 "        Users: " + event.getJDA().getUsers().size() + "\n" +
                 "ResponseTotal: " + event.getJDA().getResponseTotal() + "\n" +
+                "      Warm-up: " + Main.getEntryManager().getWarmup(info.getShardId()) + "\n" +
+                "\n\"Actions\"\n" +
+                "       Queues: " + lag.size() + "\n" +
+                "      Pending: " + Main.getEntryManager().getPendingActions() + "\n" +
+                "      Max-lag: " + maxLag/1000 + " second(s)\n" +
                 "\n\"Application\"\n" +
                 " Memory-total: " +rt.totalMemory()/1024/1024 + " MB\n" +
                 "       -free : " + rt.freeMemory()/1024/1024 + " MB\n" +
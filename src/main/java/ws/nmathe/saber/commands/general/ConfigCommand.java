@@ -7,21 +7,19 @@ import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.entities.emoji.Emoji;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-import org.bson.Document;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.google.GoogleAuth;
-import ws.nmathe.saber.core.schedule.EntryManager;
-import ws.nmathe.saber.core.schedule.ScheduleEntry;
+import ws.nmathe.saber.core.schedule.ScheduleJob;
 import ws.nmathe.saber.utils.MessageUtilities;
 import ws.nmathe.saber.utils.ParsingUtilities;
 import ws.nmathe.saber.utils.VerifyUtilities;
 import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.eq;
@@ -111,7 +109,7 @@ public class ConfigCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String cmd = prefix + this.name();
         int index = 0;
@@ -534,8 +532,9 @@ public class ConfigCommand implements Command
                     {
                         return "That's not enough arguments!\n" +
                                 "Use ``" + cmd + " [chan] style <new config>``, " +
-                                "where ``<new config>`` can either be **\"full\"** to display events in the lengthy full information style, or **\"narrow\"** to " +
-                                "to display events in a compressed, smaller style.\n";
+                                "where ``<new config>`` can either be **\"full\"** to display events in the lengthy full information style, **\"narrow\"** to " +
+                                "to display events in a compressed, smaller style, or **\"timestamp\"** to display times and countdowns " +
+                                "in each reader's own timezone.\n";
                     }
                     break;
 
@@ -595,7 +594,7 @@ public class ConfigCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, EventCompat event)
+    public void action(String head, String[] args, EventCompat event, CommandContext context)
     {
         int index = 0;
         String cId = args[index].replaceAll("[^\\d]","");
@@ -712,8 +711,7 @@ public class ConfigCommand implements Command
                     Main.getScheduleManager().setAltZones(scheduleChan.getId(), new ArrayList<>(altZones));
 
                     // reload each entry on the schedule
-                    Main.getEntryManager().getEntriesFromChannel(scheduleChan.getId())
-                            .forEach(se -> Main.getEntryManager().reloadEntry(se.getId()));
+                    Main.getScheduleManager().rework(cId, EnumSet.of(ScheduleJob.Step.RENDER), event.getChannel());
 
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.MISC, event.getJDA()), event.getChannel(), null);
                     break;
@@ -723,9 +721,7 @@ public class ConfigCommand implements Command
                     Main.getScheduleManager().setClockFormat(scheduleChan.getId(), args[index]);
 
                     // reload the schedule display
-                    Main.getDBDriver().getEventCollection().find(eq("channelId", scheduleChan.getId()))
-                            .forEach((Consumer<? super Document>) document ->
-                                    Main.getEntryManager().reloadEntry((Integer) document.get("_id")));
+                    Main.getScheduleManager().rework(cId, EnumSet.of(ScheduleJob.Step.RENDER), event.getChannel());
 
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.MISC, event.getJDA()), event.getChannel(), null);
                     break;
@@ -770,15 +766,9 @@ public class ConfigCommand implements Command
                     List<Integer> rem = new ArrayList<>(list);
                     Main.getScheduleManager().setReminders(cId, rem);
 
-                    // for every entry on channel, update
-                    Main.getDBDriver().getEventCollection().find(eq("channelId", scheduleChan.getId()))
-                            .forEach((Consumer<? super Document>) document ->
-                            {
-                                // reload entry reminders
-                                ScheduleEntry se = new ScheduleEntry(document)
-                                        .reloadReminders(Main.getScheduleManager().getReminders(scheduleChan.getId()));
-                                Main.getEntryManager().updateEntry(se, false);
-                            });
+                    // for every entry on channel, reload entry reminders
+                    Main.getScheduleManager().rework(cId,
+                            EnumSet.of(ScheduleJob.Step.REMINDERS, ScheduleJob.Step.RENDER), event.getChannel());
 
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.REM, event.getJDA()), event.getChannel(), null);
                     break;
@@ -793,15 +783,9 @@ public class ConfigCommand implements Command
                     List<Integer> rem2 = new ArrayList<>(list2);
                     Main.getScheduleManager().setEndReminders(cId, rem2);
 
-                    // for every entry on channel, update
-                    Main.getDBDriver().getEventCollection().find(eq("channelId", scheduleChan.getId()))
-                            .forEach((Consumer<? super Document>) document ->
-                            {
-                                // reload entry reminders
-                                ScheduleEntry se = new ScheduleEntry(document)
-                                        .reloadEndReminders(Main.getScheduleManager().getEndReminders(scheduleChan.getId()));
-                                Main.getEntryManager().updateEntry(se, false);
-                            });
+                    // for every entry on channel, reload entry end reminders
+                    Main.getScheduleManager().rework(cId,
+                            EnumSet.of(ScheduleJob.Step.END_REMINDERS, ScheduleJob.Step.RENDER), event.getChannel());
 
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.REM, event.getJDA()), event.getChannel(), null);
                     break;
@@ -880,72 +864,22 @@ public class ConfigCommand implements Command
                             break;
                     }
 
-                    String clearEmoji = Main.getScheduleManager().getRSVPClear(cId);
                     // if add or remove option was used, clear the reactions and re-add the new reactions
                     if(new_enabled == null)
                     {
-                        // for each entry on the schedule
-                        Main.getDBDriver().getEventCollection()
-                                .find(eq("channelId", scheduleChan.getId()))
-                                .forEach((Consumer<? super Document>) document ->
-                                {
-                                    // clear reactions
-                                    event.getGuild().getTextChannelById(document.getString("channelId"))
-                                            .retrieveMessageById(document.getString("messageId")).complete()
-                                            .clearReactions().queue((message) ->
-                                    {
-                                        Map<String, String> map = Main.getScheduleManager()
-                                                .getRSVPOptions(document.getString("channelId"));
-                                        ScheduleEntry se = new ScheduleEntry(document);
-
-                                        // add reaction options
-                                        event.getGuild()
-                                                .getTextChannelById(document.getString("channelId"))
-                                                .retrieveMessageById(document.getString("messageId"))
-                                                .queue(msg -> EntryManager.addRSVPReactions(map, clearEmoji, msg, se));
-                                    });
-
-                                    Main.getEntryManager().reloadEntry(document.getInteger("_id"));
-                                });
+                        Main.getScheduleManager().rework(cId,
+                                EnumSet.of(ScheduleJob.Step.RESET_REACTIONS, ScheduleJob.Step.RENDER), event.getChannel());
                     }
                     // otherwise, if the rsvp setting was changes
                     else if(enabled != new_enabled)
                     {   // set schedule settings
                         Main.getScheduleManager().setRSVPEnable(cId, new_enabled);
 
-                        if(new_enabled)
-                        {   // for each entry on the schedule
-                            Main.getDBDriver().getEventCollection()
-                                    .find(eq("channelId", scheduleChan.getId()))
-                                    .forEach((Consumer<? super Document>) document ->
-                                    {
-                                        Map<String, String> map = Main.getScheduleManager()
-                                                .getRSVPOptions(document.getString("channelId"));
-                                        ScheduleEntry se = new ScheduleEntry(document);
-
-                                        // add reaction options
-                                        event.getGuild()
-                                                .getTextChannelById(document.getString("channelId"))
-                                                .retrieveMessageById(document.getString("messageId"))
-                                                .queue(msg -> EntryManager.addRSVPReactions(map, clearEmoji, msg, se));
-
-                                        Main.getEntryManager().reloadEntry(document.getInteger("_id"));
-                                    });
-                        }
-                        else
-                        {   // for each entry on the schedule
-                            Main.getDBDriver().getEventCollection()
-                                    .find(eq("channelId", scheduleChan.getId()))
-                                    .forEach((Consumer<? super Document>) document ->
-                                    {
-                                        // clear reactions
-                                        event.getGuild().getTextChannelById(document.getString("channelId"))
-                                                .retrieveMessageById(document.getString("messageId")).complete()
-                                                .clearReactions().queue();
-
-                                        Main.getEntryManager().reloadEntry(document.getInteger("_id"));
-                                    });
-                        }
+                        // add or remove the reaction options on each entry of the schedule
+                        ScheduleJob.Step reactions = new_enabled ?
+                                ScheduleJob.Step.RESET_REACTIONS : ScheduleJob.Step.CLEAR_REACTIONS;
+                        Main.getScheduleManager().rework(cId,
+                                EnumSet.of(reactions, ScheduleJob.Step.RENDER), event.getChannel());
                     }
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.RSVP, event.getJDA()), event.getChannel(), null);
                     break;
@@ -964,14 +898,7 @@ public class ConfigCommand implements Command
                     Main.getScheduleManager().setRSVPClear(cId, emoji);
 
                     // update reactions on all event messages in channel
-                    String finalEmoji = emoji;
-                    Map<String, String> rsvpOptions = Main.getScheduleManager().getRSVPOptions(cId);
-                    Main.getEntryManager().getEntriesFromChannel(cId).forEach(se->
-                    {
-                        Message message = se.getMessageObject();
-                        message.clearReactions().complete();
-                        EntryManager.addRSVPReactions(rsvpOptions, finalEmoji, message, se);
-                    });
+                    Main.getScheduleManager().rework(cId, EnumSet.of(ScheduleJob.Step.RESET_REACTIONS), event.getChannel());
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.RSVP, event.getJDA()), event.getChannel(), null);
                     break;
 
@@ -1033,13 +960,10 @@ public class ConfigCommand implements Command
                     String style = args[index].toLowerCase();
                     if(style.equals("full")) Main.getScheduleManager().setStyle(cId, style);
                     else if(style.equals("narrow")) Main.getScheduleManager().setStyle(cId, style);
+                    else if(style.equals("timestamp")) Main.getScheduleManager().setStyle(cId, style);
 
                     // for each entry on the schedule
-                    Main.getDBDriver().getEventCollection()
-                            .find(eq("channelId", scheduleChan.getId()))
-                            .forEach((Consumer<? super Document>) document ->
-                                    Main.getEntryManager().reloadEntry(document.getInteger("_id"))
-                            );
+                    Main.getScheduleManager().rework(cId, EnumSet.of(ScheduleJob.Step.RENDER), event.getChannel());
                     MessageUtilities.sendMsg(this.genMsgStr(cId, Mode.MISC, event.getJDA()), event.getChannel(), null);
                     break;
 
@@ -4,6 +4,7 @@ import net.dv8tion.jda.api.entities.Message;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -46,7 +47,7 @@ public class DeleteCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
 
@@ -74,6 +75,7 @@ public class DeleteCommand implements Command
             {
                 return "The requested entry does not exist!";
             }
+            context.setEntry(entry);
             return "";
         }
         else // arg should be a schedule id
@@ -87,7 +89,7 @@ public class DeleteCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         if(args[0].toLowerCase().equals("all"))
         {
@@ -100,9 +102,8 @@ public class DeleteCommand implements Command
         else if(VerifyUtilities.verifyEntryID(args[0]))
         {
             // delete single event
-            Integer entryId = ParsingUtilities.encodeIDToInt(args[0]);
-            ScheduleEntry entry = Main.getEntryManager().getEntry(entryId);
-            Message msg = entry.getMessageObject();
+            Integer entryId = context.getEntry().getId();
+            Message msg = context.getMessage();
             if( msg==null )
                 return;
 
@@ -7,6 +7,7 @@ import org.bson.Document;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -44,7 +45,7 @@ public class DiagnoseCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         if (args.length > 0)
         {
@@ -57,7 +58,7 @@ public class DiagnoseCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         Member saber = event.getGuild().getMember(event.getJDA().getSelfUser());
         StringBuilder builder = new StringBuilder("```diff\n");
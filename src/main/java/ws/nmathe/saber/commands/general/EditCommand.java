@@ -7,6 +7,7 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.schedule.EntryManager;
 import ws.nmathe.saber.core.schedule.EventRecurrence;
@@ -98,7 +99,7 @@ public class EditCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
         int index = 0;
@@ -130,6 +131,7 @@ public class EditCommand implements Command
         {
             return "The bot must have the \"Read Message History\" permission on channel for which that event exists!";
         }
+        context.setEntry(entry).setChannel(channel);
 
         // if only one argument, command is valid
         if(args.length == 1) return "";
@@ -489,14 +491,13 @@ public class EditCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, EventCompat event)
+    public void action(String head, String[] args, EventCompat event, CommandContext context)
     {
         int index = 0;
 
-        Integer entryId  = ParsingUtilities.encodeIDToInt(args[index]);
-        ScheduleEntry se = Main.getEntryManager().getEntry( entryId );
+        ScheduleEntry se = context.getEntry();
 
-        Message msg = se.getMessageObject();
+        Message msg = context.getMessage();
         if (msg==null) return;
 
         //
@@ -903,11 +904,11 @@ public class EditCommand implements Command
             Main.getEntryManager().updateEntry(se, true);
             if (limitsChanged) // if the limits on the event was changed, reload the reactions
             {
-                se.getMessageObject().clearReactions().queue(message->
+                msg.clearReactions().queue(message->
                 {
                     Map<String, String> options = Main.getScheduleManager().getRSVPOptions(se.getChannelId());
                     String clearEmoji = Main.getScheduleManager().getRSVPClear(se.getChannelId());
-                    EntryManager.addRSVPReactions(options, clearEmoji, se.getMessageObject(), se);
+                    EntryManager.addRSVPReactions(options, clearEmoji, msg, se);
                 }, failure-> Logging.exception(this.getClass(), failure));
             }
         }
@@ -1,26 +1,39 @@
 package ws.nmathe.saber.commands.general;
 
+import com.mongodb.client.AggregateIterable;
 import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
-import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
 import ws.nmathe.saber.utils.ParsingUtilities;
 
-import java.time.ZonedDateTime;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static com.mongodb.client.model.Aggregates.match;
+import static com.mongodb.client.model.Aggregates.project;
+import static com.mongodb.client.model.Aggregates.sort;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.computed;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
+
 /**
  * command which summarizes all events currently scheduled
  * for the guild in which the command is called
@@ -54,7 +67,7 @@ public class EventsCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         /*
         * this command is non-destructive, so it is allowable that verify never fails
@@ -65,7 +78,7 @@ public class EventsCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         // process any optional channel arguments
         List<String> channelIds = new ArrayList<>();
@@ -90,16 +103,29 @@ public class EventsCommand implements Command
 
         // get the caller's guild member information
         Member caller = event.getGuild().getMember(event.getAuthor());
-        if (caller != null) // hide all events if null
+        if (caller != null && !scheduleIds.isEmpty()) // hide all events if null
         {
-            // list events by their schedule
-            for(String sId : scheduleIds)
+            // a single query retrieves only the fields needed for the listing, grouped by schedule in the order
+            // the schedules are listed (by each event's position in that list) and ordered by start time
+            Bson query = and(eq("guildId", guild.getId()), in("channelId", scheduleIds));
+            Bson order = computed("order", new Document("$indexOfArray", Arrays.asList(scheduleIds, "$channelId")));
+            AggregateIterable<Document> documents = Main.getDBDriver().getEventCollection().aggregate(Arrays.asList(
+                    match(query),
+                    project(fields(include("_id", "title", "start", "end", "channelId"), order)),
+                    sort(ascending("order", "start"))));
+
+            String sId = null;
+            for (Document document : documents)
             {
-                // only show users events that are on schedules they can view
-                TextChannel sChannel = event.getGuild().getTextChannelById(sId);
-                Collection<Permission> permissions = sChannel!=null ? caller.getPermissions(sChannel) : new ArrayList();
-                if (true || (sChannel!=null && permissions!=null && permissions.contains(Permission.MESSAGE_HISTORY)))
+                // start a new schedule list
+                if (!document.getString("channelId").equals(sId))
                 {
+                    if (sId != null)
+                    {
+                        content.append("\n"); // end a schedule list
+                    }
+                    sId = document.getString("channelId");
+
                     if (content.length() > 1400)
                     {
                         sendEventsMessage(footer, title, content, event.getChannel());
@@ -109,50 +135,39 @@ public class EventsCommand implements Command
                         footer = "(events list continued on next page)";
                         content = new StringBuilder();
                     }
-                    // for each schedule, generate a list of events scheduled
-                    Collection<ScheduleEntry> entries = Main.getEntryManager().getEntriesFromChannel(sId);
-                    if(!entries.isEmpty())
-                    {
-                        content.append("<#").append(sId).append("> ...\n");  // start a new schedule list
-                        while(!entries.isEmpty())
-                        {
-                            if (content.length() > 1800)
-                            {
-                                sendEventsMessage(footer, title, content, event.getChannel());
-
-                                // adjust title and footer to reflect future messages are a continuation
-                                title = "Events on " + guild.getName() + " (continued)";
-                                footer = "(events list continued on next page)";
-                                content = new StringBuilder();
-                            }
-
-                            // find and remove the next earliest occurring event
-                            ScheduleEntry top = entries.toArray(new ScheduleEntry[entries.size()])[0];
-                            for(ScheduleEntry se : entries)
-                            {
-                                if(se.getStart().isBefore(top.getStart())) top = se;
-                            }
-                            entries.remove(top);
-
-                            // determine time until the event begins/ends
-                            long timeTil = ZonedDateTime.now().until(top.getStart(), ChronoUnit.MINUTES);
-                            String status = "begins";
-                            if (timeTil < 0)    // adjust if event is ending
-                            {
-                                timeTil = ZonedDateTime.now().until(top.getEnd(), ChronoUnit.MINUTES);
-                                status = "ends";
-                            }
-
-                            // add the event as a single line in the content
-                            content.append(":id:``").append(ParsingUtilities.intToEncodedID(top.getId()))
-                                    .append("`` ~ **").append(top.getTitle()).append("** ").append(status).append(" in *");
-                            ParsingUtilities.addTimeGap(content, timeTil, false, 3);
-                            content.append("*\n");
-                            count++;     // iterate event counter
-                        }
-                        content.append("\n"); // end a schedule list
-                    }
+                    content.append("<#").append(sId).append("> ...\n");
+                }
+
+                if (content.length() > 1800)
+                {
+                    sendEventsMessage(footer, title, content, event.getChannel());
+
+                    // adjust title and footer to reflect future messages are a continuation
+                    title = "Events on " + guild.getName() + " (continued)";
+                    footer = "(events list continued on next page)";
+                    content = new StringBuilder();
                 }
+
+                // determine time until the event begins/ends
+                Instant now = Instant.now();
+                long timeTil = now.until(document.getDate("start").toInstant(), ChronoUnit.MINUTES);
+                String status = "begins";
+                if (timeTil < 0)    // adjust if event is ending
+                {
+                    timeTil = now.until(document.getDate("end").toInstant(), ChronoUnit.MINUTES);
+                    status = "ends";
+                }
+
+                // add the event as a single line in the content
+                content.append(":id:``").append(ParsingUtilities.intToEncodedID(document.getInteger("_id")))
+                        .append("`` ~ **").append(document.getString("title")).append("** ").append(status).append(" in *");
+                ParsingUtilities.addTimeGap(content, timeTil, false, 3);
+                content.append("*\n");
+                count++;     // iterate event counter
+            }
+            if (sId != null)
+            {
+                content.append("\n"); // end a schedule list
             }
         }
 
@@ -6,6 +6,7 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.settings.GuildSettingsManager.GuildSettings;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -52,7 +53,7 @@ public class GuildCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
         if(args.length > 0)
@@ -174,7 +175,7 @@ public class GuildCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, EventCompat event)
+    public void action(String head, String[] args, EventCompat event, CommandContext context)
     {
         GuildSettings guildSettings = Main.getGuildSettingsManager().getGuildSettings(event.getGuild().getId());
         if(args.length > 0)
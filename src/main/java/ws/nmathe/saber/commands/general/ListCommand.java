@@ -1,9 +1,8 @@
 package ws.nmathe.saber.commands.general;
 
 import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.entities.ISnowflake;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
-import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
@@ -12,6 +11,8 @@ import org.apache.commons.lang3.StringUtils;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.MemberIndex;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -19,7 +20,6 @@ import ws.nmathe.saber.utils.ParsingUtilities;
 import ws.nmathe.saber.utils.VerifyUtilities;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * retrieves the list of RSVP'ed members to an event
@@ -65,7 +65,7 @@ public class ListCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
         if (args.length==0)
@@ -87,6 +87,7 @@ public class ListCommand implements Command
             {
                 return "The schedule that the entry is on is not rsvp enabled!";
             }
+            context.setEntry(entry);
         }
         else
         {
@@ -159,11 +160,11 @@ public class ListCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
-        int index = 0;
-        Integer entryId = ParsingUtilities.encodeIDToInt(args[index++]);
-        ScheduleEntry se = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+        int index = 1;
+        ScheduleEntry se = context.getEntry();
+        Integer entryId = se.getId();
 
         String titleUrl = se.getTitleUrl()==null ? "https://upload.wikimedia.org/wikipedia/commons/thumb/3/3a/Cat03.jpg/1200px-Cat03.jpg": se.getTitleUrl();
         String title = se.getTitle()+" ["+ParsingUtilities.intToEncodedID(entryId)+"]";
@@ -219,13 +220,22 @@ public class ListCommand implements Command
         int lengthCap = 1900;   // maximum number of characters before creating a new message
         int mobileLineCap = 25; // maximum number of lines until new message, in mobile mode
         Set<String> uniqueMembers = new HashSet<>();
+
+        // resolve the filters once against the guild's member index
+        Guild guild = event.getGuild();
+        MemberIndex.GuildIndex memberIndex = Main.getMemberIndex().get(guild);
+        BitSet filtered = memberIndex.matching(guild, userFilters, roleFilters);
+        BitSet rsvped = new BitSet(memberIndex.size());
+        Map<String, List<String>> departed = new HashMap<>();
+
         Map<String, String> options = Main.getScheduleManager().getRSVPOptions(se.getChannelId());
         for(String type : options.values())
         {
+            Set<String> members = se.getRsvpMembersOfType(type);
+            rsvped.or(memberIndex.of(members));
             if(!filterByType || typeFilters.contains(type))
             {
                 content += "**\"" + type + "\"\n======================**\n";
-                Set<String> members = se.getRsvpMembersOfType(type);
                 for(String id : members)
                 {
                     // if the message is nearing maximum length, or if in mobile mode and the max lines have been reached
@@ -244,18 +254,14 @@ public class ListCommand implements Command
 
                     if (id.matches("\\d+"))
                     {   // cases in which the id is most likely a valid discord user's ID
-                        Member member = event.getGuild().getMemberById(id);
-                        if(checkMember(member, userFilters, roleFilters))
-                        {   // if the user is still a member of the guild, add to the list
-                            uniqueMembers.add(member.getUser().getId());
-                            content += this.getNameDisplay(mobileFlag, IdFlag, member);
+                        if(!memberIndex.contains(id))
+                        {   // the user is no longer a member of the guild, remove them from the event
+                            departed.computeIfAbsent(type, key -> new ArrayList<>()).add(id);
                         }
-                        else // otherwise, remove the member from the event and update
-                        {
-                            Set<String> tmp = se.getRsvpMembersOfType(type);
-                            tmp.remove(id);
-                            se.getRsvpMembersOfType(type).remove(id);
-                            Main.getEntryManager().updateEntry(se, false);
+                        else if(memberIndex.includes(filtered, id))
+                        {   // the user is a member of the guild and passed the filters, add to the list
+                            uniqueMembers.add(id);
+                            content += this.getNameDisplay(mobileFlag, IdFlag, guild.getMemberById(id));
                         }
                     }
                     else
@@ -268,17 +274,18 @@ public class ListCommand implements Command
             content += "\n";
         }
 
-        if(!filterByType || typeFilters.contains("no-input"))
+        // remove all departed members from the event with a single update
+        if(!departed.isEmpty())
         {
-            // generate a list of all members of the guild who pass the filter and map to their ID
-            List<String> noInput = event.getGuild().getMembers().stream()
-                    .filter(member -> checkMember(member, userFilters, roleFilters))
-                    .map(member -> member.getUser().getId()).collect(Collectors.toList());
+            Main.getEntryManager().removeRsvpMembers(se, departed);
+        }
 
-            for(String type : options.values())
-            {
-                noInput.removeAll(se.getRsvpMembersOfType(type));
-            }
+        if(!filterByType || typeFilters.contains("no-input"))
+        {
+            // members of the guild who pass the filter, less those who have rsvp'ed
+            BitSet noInputSet = (BitSet) filtered.clone();
+            noInputSet.andNot(rsvped);
+            List<String> noInput = memberIndex.toIds(noInputSet);
 
             content += "**No input\n======================\n**";
             if(!filterByType & noInput.size() > 10)
@@ -299,8 +306,11 @@ public class ListCommand implements Command
                     // clear the content sting
                     content = "*continued. . .* \n";
                 }
-                Member member = event.getGuild().getMemberById(id);
-                content += this.getNameDisplay(mobileFlag, IdFlag, member);
+                Member member = guild.getMemberById(id);
+                if(member != null)
+                {
+                    content += this.getNameDisplay(mobileFlag, IdFlag, member);
+                }
             }
         }
 
@@ -315,47 +325,6 @@ public class ListCommand implements Command
         MessageUtilities.sendMsg(message, event.getChannel(), null);
     }
 
-    /**
-     * Determines if a user should be display based on the set filters
-     * @param member (Member) User to evaluate
-     * @param userFilters (List) list of user IDs to filter by
-     * @param roleFilters (List) list of role IDs to filter by
-     * @return (boolean) should the user be included in the list?
-     */
-    private boolean checkMember(Member member, List<String> userFilters, List<String> roleFilters)
-    {
-        if(member!=null)
-        {
-            if(userFilters.isEmpty() && roleFilters.isEmpty())
-            {   // filtering is disabled if both lists are empty
-                return true;
-            }
-            // check for filtered users
-            if(userFilters.contains(member.getUser().getId()) ||
-                    userFilters.contains(member.getEffectiveName()))
-            {
-                return true;
-            }
-            // check for filtered roles
-            List<String> memberRoleIDs = member.getRoles().stream()
-                    .map(ISnowflake::getId).collect(Collectors.toList());
-            List<String> memberRoleNames = member.getRoles().stream()
-                    .map(Role::getName).collect(Collectors.toList());
-            // include the user if a role filter matches either the
-            // name or ID of a role held by the user
-            for(String role : roleFilters)
-            {
-                if(memberRoleIDs.contains(role) || memberRoleNames.contains(role))
-                {
-                    return true;
-                }
-            }
-        }
-        // user matched no filters
-        return false;
-    }
-
-
     /**
      * produces the display style of the users who have rsvped for an event
      * @param mobileFlag (boolean) use mobile style?
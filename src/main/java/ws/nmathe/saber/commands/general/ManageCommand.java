@@ -4,6 +4,7 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -50,7 +51,7 @@ public class ManageCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
         int index = 0;
@@ -70,6 +71,7 @@ public class ManageCommand implements Command
             {
                 return "The requested entry does not exist!";
             }
+            context.setEntry(entry);
         }
         else
         {
@@ -123,11 +125,10 @@ public class ManageCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
-        int index = 0;
-        Integer entryId = ParsingUtilities.encodeIDToInt(args[index++]);
-        ScheduleEntry se = Main.getEntryManager().getEntryFromGuild(entryId, event.getGuild().getId());
+        int index = 1;
+        ScheduleEntry se = context.getEntry();
         String logging = Main.getScheduleManager().getRSVPLogging(se.getChannelId());
 
         String content="", group, user;
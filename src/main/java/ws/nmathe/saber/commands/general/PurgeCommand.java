@@ -1,20 +1,31 @@
 package ws.nmathe.saber.commands.general;
 
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageChannel;
+import net.dv8tion.jda.api.entities.MessageHistory;
 import net.dv8tion.jda.api.entities.TextChannel;
-import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-import org.bson.conversions.Bson;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.exceptions.PermissionException;
+import org.bson.Document;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
 import ws.nmathe.saber.core.RateLimiter;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
+import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
 
-import java.util.Map;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
-import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
 
 public class PurgeCommand implements Command
 {
@@ -22,6 +33,9 @@ public class PurgeCommand implements Command
     // rate limiter with a threshold of 1 minute
     private static RateLimiter limiter = new RateLimiter(60*1000);
 
+    // number of bot messages examined per usage
+    private static final int MAX_MESSAGES = 100;
+
     // set of guilds which have an ongoing purge
     private static Map<String, String> processing = new ConcurrentHashMap<>();
 
@@ -52,7 +66,7 @@ public class PurgeCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
         int index = 0;
@@ -93,33 +107,113 @@ public class PurgeCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         TextChannel channel = event.getGuild().getJDA().getTextChannelById(args[0].replaceAll("[^\\d]", ""));
-        Integer[] count = {100};                                // number of messages to remove
-        String botId = event.getJDA().getSelfUser().getId();    // ID of bot to check messages against
+        int remaining = MAX_MESSAGES;                           // number of bot messages to examine
+        long botId = event.getJDA().getSelfUser().getIdLong();  // ID of bot to check messages against
+        int deleted = 0;
 
         processing.put(event.getGuild().getId(), channel.getId());
-        channel.getIterableHistory().stream()
-                .filter(message -> message.getAuthor().getId().equals(botId) && (count[0]-- > 0))
-                .forEach((message ->
+        try
+        {
+            // history is paged in blocks of 100 messages
+            MessageHistory history = channel.getHistory();
+            while (remaining > 0)
+            {
+                List<Message> page = history.retrievePast(100).complete();
+                if (page.isEmpty()) break;
+
+                List<Message> candidates = new ArrayList<>();
+                for (Message message : page)
                 {
-                    message.getChannel().sendTyping().queue();
-
-                    // sleep for half a second before continuing
-                    try { Thread.sleep(500); }
-                    catch (InterruptedException ignored) {}
-
-                    Bson query = eq("messageId", message.getId());
-                    if (Main.getDBDriver().getEventCollection().count(query) == 0)
+                    if (message.getAuthor().getIdLong() == botId && remaining-- > 0)
                     {
-                        MessageUtilities.deleteMsg(message);
+                        candidates.add(message);
                     }
-                }));
-        processing.remove(event.getGuild().getId(), channel.getId());
+                }
+                if (!candidates.isEmpty())
+                {
+                    deleted += this.purge(channel, candidates);
+                }
+            }
+        }
+        finally
+        {
+            processing.remove(event.getGuild().getId(), channel.getId());
+        }
 
         // send success message
-        String content = "Finished purging old message.";
+        String content = "Finished purging " + deleted + " old message(s).";
         MessageUtilities.sendMsg(content, event.getChannel(), null);
     }
+
+    /**
+     * deletes the messages which do not belong to an event
+     * @return (int) number of messages deleted
+     */
+    private int purge(TextChannel channel, List<Message> candidates)
+    {
+        // one query resolves which of the messages are event messages
+        List<String> ids = new ArrayList<>();
+        for (Message message : candidates)
+        {
+            ids.add(message.getId());
+        }
+        Set<String> tracked = new HashSet<>();
+        for (Document document : Main.getDBDriver().getEventCollection()
+                .find(in("messageId", ids))
+                .projection(fields(include("messageId"))))
+        {
+            tracked.add(document.getString("messageId"));
+        }
+
+        // messages younger than two weeks may be bulk deleted, which requires the manage messages permission
+        boolean canBulk = channel.getGuild().getSelfMember().hasPermission(channel, Permission.MESSAGE_MANAGE);
+        OffsetDateTime bulkCutoff = OffsetDateTime.now().minusDays(14).plusMinutes(5);
+        List<String> bulk = new ArrayList<>();
+        List<String> single = new ArrayList<>();
+        for (Message message : candidates)
+        {
+            if (tracked.contains(message.getId())) continue;
+            if (canBulk && message.getTimeCreated().isAfter(bulkCutoff)) bulk.add(message.getId());
+            else single.add(message.getId());
+        }
+        if (bulk.size() == 1)
+        {   // bulk delete requires at least two messages
+            single.addAll(bulk);
+            bulk.clear();
+        }
+
+        int deleted = 0;
+        if (!bulk.isEmpty())
+        {
+            try
+            {
+                channel.deleteMessagesByIds(bulk).complete();
+                deleted += bulk.size();
+            }
+            catch (PermissionException | ErrorResponseException e)
+            {
+                Logging.warn(this.getClass(), "Bulk delete failed on " + channel.getId() + ": " + e.getMessage());
+            }
+        }
+
+        // older messages are deleted one at a time, queued requests are paced by the channel's rate limit bucket
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String id : single)
+        {
+            futures.add(channel.deleteMessageById(id).submit());
+        }
+        for (CompletableFuture<Void> future : futures)
+        {
+            try
+            {
+                future.join();
+                deleted++;
+            }
+            catch (CompletionException ignored) { }
+        }
+        return deleted;
+    }
 }
@@ -8,9 +8,11 @@ import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import org.bson.Document;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -18,7 +20,10 @@ import ws.nmathe.saber.utils.ParsingUtilities;
 import ws.nmathe.saber.utils.VerifyUtilities;
 
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
 
 /**
  * used for generating the list of valid timezone strings
@@ -50,30 +55,34 @@ public class SchedulesCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         return "";
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         Guild guild = event.getGuild();
-        List<String> scheduleIds = Main.getScheduleManager().getSchedulesForGuild(guild.getId());
 
         // build output main body
+        // the event counts are read from the counters kept on each schedule document
         StringBuilder content = new StringBuilder();
-        for(String sId : scheduleIds)
+        int count = 0;
+        for(Document schedule : Main.getDBDriver().getScheduleCollection()
+                .find(eq("guildId", guild.getId()))
+                .projection(fields(include("_id", "event_count"))))
         {
             content.append("<#")
-                    .append(sId)
+                    .append(schedule.getString("_id"))
                     .append("> - has ")
-                    .append(Main.getEntryManager().getEntriesFromChannel(sId).size())
+                    .append(Main.getScheduleManager().getEventCount(schedule))
                     .append(" events\n");
+            count++;
         }
 
         String title = "Schedules on " + guild.getName();           // title for embed
-        String footer = scheduleIds.size() + " schedule(s)";   // footer for embed
+        String footer = count + " schedule(s)";   // footer for embed
 
         // build embed
         MessageEmbed embed = new EmbedBuilder()
@@ -4,6 +4,7 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.utils.MessageUtilities;
 
@@ -42,7 +43,7 @@ public class SortCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
         int index = 0;
@@ -93,7 +94,7 @@ public class SortCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, EventCompat event)
+    public void action(String head, String[] args, EventCompat event, CommandContext context)
     {
         int index = 0;
         String cId = args[index].replaceAll("[^\\d]","");
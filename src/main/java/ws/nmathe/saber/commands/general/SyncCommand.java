@@ -7,6 +7,7 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.google.GoogleAuth;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -54,7 +55,7 @@ public class SyncCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
         int index = 0;
@@ -126,7 +127,7 @@ public class SyncCommand implements Command
     }
 
     @Override
-    public void action(String head, String[] args, EventCompat event)
+    public void action(String head, String[] args, EventCompat event, CommandContext context)
     {
         // get user Google credentials (if they exist)
         Credential credential = GoogleAuth.getCredential(event.getAuthor().getId());
@@ -167,6 +168,7 @@ public class SyncCommand implements Command
                     Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("sync_user", event.getAuthor().getId()));
                 else
                     Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("sync_user", null));
+                Main.getScheduleManager().invalidateSettings(cId);
             }
         }
 
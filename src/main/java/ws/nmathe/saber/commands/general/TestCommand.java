@@ -5,6 +5,7 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.Command;
 import ws.nmathe.saber.commands.CommandInfo;
+import ws.nmathe.saber.core.command.CommandContext;
 import ws.nmathe.saber.core.command.CommandParser.EventCompat;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -47,7 +48,7 @@ public class TestCommand implements Command
     }
 
     @Override
-    public String verify(String prefix, String[] args, EventCompat event)
+    public String verify(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         String head = prefix + this.name();
         int index = 0;
@@ -75,6 +76,7 @@ public class TestCommand implements Command
         {
             return "I could not find an entry with that ID!";
         }
+        context.setEntry(entry);
 
         index++; // next argument is optional
 
@@ -101,16 +103,15 @@ public class TestCommand implements Command
     }
 
     @Override
-    public void action(String prefix, String[] args, EventCompat event)
+    public void action(String prefix, String[] args, EventCompat event, CommandContext context)
     {
         int index = 0;
 
         // get entry object
-        Integer entryId = ParsingUtilities.encodeIDToInt(args[index]);
-        ScheduleEntry entry = Main.getEntryManager().getEntry( entryId );
+        ScheduleEntry entry = context.getEntry();
 
         // verify the entry's message exists
-        Message msg = entry.getMessageObject();
+        Message msg = context.getMessage();
         if(msg == null) return;
 
         index++;
@@ -0,0 +1,369 @@
+package ws.nmathe.saber.core;
+
+import com.mongodb.client.model.ReplaceOptions;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.exceptions.PermissionException;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+import ws.nmathe.saber.utils.MessageUtilities;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Sends an announcement to the command channel of every guild connected to this process.
+ * Each shard's guilds are visited in ID order, their command channels are loaded in bulk, and
+ * messages are sent through one paced queue per shard so that the broadcast stays under the global rate limit.
+ * The last guild reached on each shard is checkpointed to the database after every guild which was sent to,
+ * so an interrupted broadcast can be resumed without messaging the guilds it already reached. Only a guild
+ * which was being sent to when the process stopped (sent but not yet checkpointed) may be messaged twice.
+ */
+public class Broadcast
+{
+    private static final long PACE = 1000;          // minimum time between two messages sent by one shard
+    private static final int BATCH_SIZE = 500;      // guild IDs per settings query
+    private static final long CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toMillis(10);  // when only skipping guilds
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+    private static final AtomicReference<Broadcast> active = new AtomicReference<>();
+
+    private final String message;
+    private final Map<Integer, Progress> progress = new ConcurrentHashMap<>();
+    private final User author;
+
+    private Broadcast(String message, User author)
+    {
+        this.message = message;
+        this.author = author;
+    }
+
+    /**
+     * starts a new broadcast, discarding the checkpoint of any unfinished broadcast
+     * @param message (String) announcement content
+     * @param author (User) user to send the completion summary to
+     * @return (boolean) false if a broadcast is already running
+     */
+    public static boolean start(String message, User author)
+    {
+        Broadcast broadcast = new Broadcast(message, author);
+        if (!active.compareAndSet(null, broadcast)) return false;
+
+        Document checkpoint = new Document("_id", getProcessId())
+                .append("message", message)
+                .append("author", author.getId())
+                .append("started", new Date())
+                .append("finished", false)
+                .append("shards", new Document());
+        Main.getDBDriver().getBroadcastCollection()
+                .replaceOne(eq("_id", getProcessId()), checkpoint, new ReplaceOptions().upsert(true));
+
+        executor.execute(broadcast::run);
+        return true;
+    }
+
+    /**
+     * resumes the unfinished broadcast recorded in the database
+     * @param author (User) user to send the completion summary to
+     * @return (boolean) false if a broadcast is already running or there is nothing to resume
+     */
+    public static boolean resume(User author)
+    {
+        Document checkpoint = getCheckpoint();
+        if (checkpoint == null) return false;
+
+        Broadcast broadcast = new Broadcast(checkpoint.getString("message"), author);
+        Document shards = checkpoint.get("shards", new Document());
+        for (String shardId : shards.keySet())
+        {
+            broadcast.progress.put(Integer.valueOf(shardId), new Progress(shards.get(shardId, Document.class)));
+        }
+        if (!active.compareAndSet(null, broadcast)) return false;
+
+        executor.execute(broadcast::run);
+        return true;
+    }
+
+    /**
+     * @return (boolean) true if a broadcast is being sent by this process
+     */
+    public static boolean isRunning()
+    {
+        return active.get() != null;
+    }
+
+    /**
+     * @return (Document) the checkpoint of an unfinished broadcast, or null if there is none
+     */
+    public static Document getCheckpoint()
+    {
+        return Main.getDBDriver().getBroadcastCollection()
+                .find(and(eq("_id", getProcessId()), eq("finished", false))).first();
+    }
+
+    /**
+     * counts the channels a broadcast would be sent to, without sending anything
+     * @return (String) summary of the targets
+     */
+    public static String dryRun()
+    {
+        int guilds = 0, configured = 0, fallback = 0, missing = 0, muted = 0;
+        for (JDA shard : Main.getShardManager().getShards())
+        {
+            List<Guild> pending = pending(shard, 0);
+            for (int i = 0; i < pending.size(); i += BATCH_SIZE)
+            {
+                List<Guild> batch = pending.subList(i, Math.min(i + BATCH_SIZE, pending.size()));
+                Map<String, String> commandChannels = loadCommandChannels(batch);
+                for (Guild guild : batch)
+                {
+                    guilds++;
+                    List<TextChannel> channels = targets(guild, commandChannels);
+                    if (channels.isEmpty()) missing++;
+                    else if (commandChannels.get(guild.getId()) != null) configured++;
+                    else fallback++;
+                    for (TextChannel channel : channels)
+                    {
+                        if (!channel.canTalk()) muted++;
+                    }
+                }
+            }
+        }
+        return "A broadcast would reach **" + (configured + fallback) + "** of " + guilds + " guild(s): " +
+                configured + " through a configured command channel and " + fallback +
+                " through the default control channel.\n" + missing + " guild(s) have no channel to send to, and " +
+                muted + " channel(s) cannot be sent to due to missing permissions.";
+    }
+
+    /**
+     * sends to every shard concurrently and reports once all shards have finished
+     */
+    private void run()
+    {
+        long start = System.currentTimeMillis();
+        try
+        {
+            Logging.info(this.getClass(), "Starting broadcast to " + Main.getShardManager().getGuilds().size() + " guilds.");
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (JDA shard : Main.getShardManager().getShards())
+            {
+                tasks.add(() ->
+                {
+                    this.send(shard);
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks))
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException e)
+                {
+                    Logging.exception(this.getClass(), e.getCause());
+                }
+            }
+
+            int sent = 0, skipped = 0, failed = 0;
+            for (Progress shardProgress : this.progress.values())
+            {
+                sent += shardProgress.sent;
+                skipped += shardProgress.skipped;
+                failed += shardProgress.failed;
+            }
+            Main.getDBDriver().getBroadcastCollection()
+                    .updateOne(eq("_id", getProcessId()), set("finished", true));
+
+            String summary = "Finished sending announcements to guilds!\n" +
+                    "Sent to **" + sent + "** guild(s) in " +
+                    TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - start) + " second(s). " +
+                    skipped + " guild(s) had no channel to send to and " + failed + " guild(s) could not be sent to.";
+            Logging.info(this.getClass(), summary);
+            MessageUtilities.sendPrivateMsg(summary, this.author, null);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+        finally
+        {
+            active.set(null);
+        }
+    }
+
+    /**
+     * sends the broadcast to the guilds of a single shard which have not already been reached
+     */
+    private void send(JDA shard)
+    {
+        int shardId = shard.getShardInfo() == null ? 0 : shard.getShardInfo().getShardId();
+        Progress shardProgress = this.progress.computeIfAbsent(shardId, key -> new Progress());
+
+        long nextSlot = 0, lastCheckpoint = System.currentTimeMillis();
+        List<Guild> pending = pending(shard, shardProgress.last);
+        for (int i = 0; i < pending.size(); i += BATCH_SIZE)
+        {
+            List<Guild> batch = pending.subList(i, Math.min(i + BATCH_SIZE, pending.size()));
+            Map<String, String> commandChannels = loadCommandChannels(batch);
+            for (Guild guild : batch)
+            {
+                List<TextChannel> channels = targets(guild, commandChannels);
+                boolean attempted = false, delivered = false;
+                for (TextChannel channel : channels)
+                {
+                    if (!channel.canTalk()) continue;
+
+                    long now = System.currentTimeMillis();
+                    if (nextSlot > now)
+                    {
+                        try
+                        {
+                            Thread.sleep(nextSlot - now);
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                            this.checkpoint(shardId, shardProgress);
+                            return;
+                        }
+                    }
+                    nextSlot = System.currentTimeMillis() + PACE;
+                    attempted = true;
+
+                    try
+                    {
+                        channel.sendMessage(this.message).complete();
+                        delivered = true;
+                    }
+                    catch (PermissionException | ErrorResponseException ignored) { }
+                    catch (Exception e)
+                    {
+                        Logging.exception(this.getClass(), e);
+                    }
+                }
+
+                if (channels.isEmpty()) shardProgress.skipped++;
+                else if (delivered) shardProgress.sent++;
+                else shardProgress.failed++;
+                shardProgress.last = guild.getIdLong();
+
+                // sends are paced, so every guild which was sent to can be checkpointed
+                if (attempted || System.currentTimeMillis() - lastCheckpoint > CHECKPOINT_INTERVAL)
+                {
+                    this.checkpoint(shardId, shardProgress);
+                    lastCheckpoint = System.currentTimeMillis();
+                }
+            }
+        }
+        this.checkpoint(shardId, shardProgress);
+    }
+
+    private void checkpoint(int shardId, Progress shardProgress)
+    {
+        Main.getDBDriver().getBroadcastCollection()
+                .updateOne(eq("_id", getProcessId()), set("shards." + shardId, shardProgress.toDocument()));
+    }
+
+    /**
+     * @return the shard's guilds with IDs greater than the checkpoint, in ID order
+     */
+    private static List<Guild> pending(JDA shard, long after)
+    {
+        List<Guild> guilds = new ArrayList<>();
+        for (Guild guild : shard.getGuilds())
+        {
+            if (Long.compareUnsigned(guild.getIdLong(), after) > 0) guilds.add(guild);
+        }
+        guilds.sort((a, b) -> Long.compareUnsigned(a.getIdLong(), b.getIdLong()));
+        return guilds;
+    }
+
+    /**
+     * loads the configured command channel of each guild with a single query,
+     * guilds without settings are absent from the returned map
+     */
+    private static Map<String, String> loadCommandChannels(List<Guild> guilds)
+    {
+        List<String> ids = new ArrayList<>();
+        for (Guild guild : guilds)
+        {
+            ids.add(guild.getId());
+        }
+
+        Map<String, String> commandChannels = new HashMap<>();
+        for (Document document : Main.getDBDriver().getGuildCollection()
+                .find(in("_id", ids))
+                .projection(fields(include("_id", "command_channel"))))
+        {
+            commandChannels.put(document.getString("_id"), document.getString("command_channel"));
+        }
+        return commandChannels;
+    }
+
+    /**
+     * resolves the channels of a guild to send to, the configured command channel if there is one
+     * otherwise any channel with the default control channel name
+     */
+    private static List<TextChannel> targets(Guild guild, Map<String, String> commandChannels)
+    {
+        String channelId = commandChannels.get(guild.getId());
+        if (channelId == null)
+        {
+            return guild.getTextChannelsByName(Main.getBotSettingsManager().getControlChan(), true);
+        }
+        TextChannel channel = guild.getTextChannelById(channelId);
+        return channel == null ? Collections.emptyList() : Collections.singletonList(channel);
+    }
+
+    /**
+     * each process (shard subset) keeps its own checkpoint
+     */
+    private static String getProcessId()
+    {
+        return Main.getBotSettingsManager().getShards() + "/" + Main.getBotSettingsManager().getShardTotal();
+    }
+
+    /**
+     * checkpointed state of one shard, only modified by the shard's sending thread
+     */
+    private static class Progress
+    {
+        volatile long last = 0;     // ID of the last guild reached
+        volatile int sent = 0, skipped = 0, failed = 0;
+
+        Progress() {}
+
+        Progress(Document document)
+        {
+            this.last = document.get("last", 0L);
+            this.sent = document.get("sent", 0);
+            this.skipped = document.get("skipped", 0);
+            this.failed = document.get("failed", 0);
+        }
+
+        Document toDocument()
+        {
+            return new Document("last", this.last)
+                    .append("sent", this.sent)
+                    .append("skipped", this.skipped)
+                    .append("failed", this.failed);
+        }
+    }
+}
@@ -1,10 +1,20 @@
 package ws.nmathe.saber.core;
 
+import com.mongodb.client.model.FindOneAndDeleteOptions;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.events.ReadyEvent;
+import net.dv8tion.jda.api.events.channel.ChannelCreateEvent;
 import net.dv8tion.jda.api.events.channel.ChannelDeleteEvent;
+import net.dv8tion.jda.api.events.channel.update.ChannelUpdateNameEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.events.guild.override.GenericPermissionOverrideEvent;
 import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
+import net.dv8tion.jda.api.events.role.update.RoleUpdatePermissionsEvent;
 import net.dv8tion.jda.api.exceptions.PermissionException;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
@@ -25,6 +35,8 @@ import java.util.Set;
 import java.util.function.Consumer;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
 
 /**
  * Executes actions for all events received by the JDA shards
@@ -40,6 +52,11 @@ public class EventListener extends ListenerAdapter
         {
             Logging.info(this.getClass(), "Shard " + event.getJDA().getShardInfo().getShardId() + " ready!");
         }
+
+        // catch up on events which were missed while the shard was unavailable
+        Main.getEntryManager().recover(event.getJDA());
+
+        HttpUtilities.shardReady(event.getJDA());
     }
 
     @Override
@@ -281,8 +298,7 @@ public class EventListener extends ListenerAdapter
         );
 
         // update web stats
-        JDA.ShardInfo info = event.getJDA().getShardInfo();
-        HttpUtilities.updateStats(info==null ? null : info.getShardId());
+        HttpUtilities.guildsChanged(event.getJDA(), 1);
     }
 
     @Override
@@ -299,27 +315,105 @@ public class EventListener extends ListenerAdapter
         Main.getDBDriver().getGuildCollection().deleteOne(eq("_id", event.getGuild().getId()));
         */
 
-        JDA.ShardInfo info = event.getJDA().getShardInfo();
-        HttpUtilities.updateStats(info==null ? null : info.getShardId());
+        Main.getMemberIndex().invalidate(event.getGuild().getIdLong());
+
+        HttpUtilities.guildsChanged(event.getJDA(), -1);
+    }
+
+    /*
+     * member and role changes invalidate the guild's member index
+     */
+
+    @Override
+    public void onGuildMemberJoin(GuildMemberJoinEvent event)
+    {
+        Main.getMemberIndex().invalidate(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGuildMemberRemove(GuildMemberRemoveEvent event)
+    {
+        Main.getMemberIndex().invalidate(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(GuildMemberRoleAddEvent event)
+    {
+        Main.getMemberIndex().invalidate(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(GuildMemberRoleRemoveEvent event)
+    {
+        Main.getMemberIndex().invalidate(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onRoleDelete(RoleDeleteEvent event)
+    {
+        Main.getMemberIndex().invalidate(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onRoleUpdatePermissions(RoleUpdatePermissionsEvent event)
+    {
+        Main.getMemberIndex().invalidate(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGenericPermissionOverride(GenericPermissionOverrideEvent event)
+    {
+        Main.getMemberIndex().invalidate(event.getGuild().getIdLong());
     }
 
     @Override
     public void onMessageDelete( MessageDeleteEvent event )
     {
         // delete the event if the delete message was an event message
-        Main.getDBDriver().getEventCollection().findOneAndDelete(eq("messageId", event.getMessageId()));
+        Document document = Main.getDBDriver().getEventCollection()
+                .findOneAndDelete(eq("messageId", event.getMessageId()),
+                        new FindOneAndDeleteOptions().projection(fields(include("guildId", "channelId"))));
+        if (document != null)
+        {
+            Main.getEntryManager().adjustEventCount(document.getString("guildId"), document.getString("channelId"), -1);
+        }
+    }
+
+    /*
+     * channel changes invalidate the guild's announcement routes
+     */
+
+    @Override
+    public void onChannelCreate(ChannelCreateEvent event)
+    {
+        if (event.isFromGuild())
+        {
+            Main.getAnnouncementRouter().invalidateGuild(event.getGuild().getIdLong());
+        }
+    }
+
+    @Override
+    public void onChannelUpdateName(ChannelUpdateNameEvent event)
+    {
+        if (event.isFromGuild())
+        {
+            Main.getAnnouncementRouter().invalidateGuild(event.getGuild().getIdLong());
+        }
     }
 
     @Override
     public void onChannelDelete(ChannelDeleteEvent event)
     {
         String cId = event.getChannel().getId();
+        if (event.isFromGuild())
+        {
+            Main.getAnnouncementRouter().invalidateGuild(event.getGuild().getIdLong());
+        }
 
         // if the deleted channel was a schedule, clear the db entries
         if(Main.getScheduleManager().isSchedule(cId))
         {
-            Main.getDBDriver().getEventCollection().deleteMany(eq("channelId", cId));
-            Main.getDBDriver().getScheduleCollection().deleteOne(eq("_id", cId));
+            Main.getScheduleManager().removeSchedule(event.getGuild().getId(), cId);
         }
     }
 
@@ -373,12 +467,11 @@ public class EventListener extends ListenerAdapter
         // add the user to the appropriate rsvp list and remove the emoji
         try
         {
-            Document doc = Main.getDBDriver().getEventCollection()
-                    .find(eq("messageId", event.getMessageId())).first();
+            ScheduleEntry se = Main.getEntryManager()
+                    .getEntryFromMessage(event.getGuild().getId(), event.getMessageId());
 
-            if(doc != null)
+            if(se != null)
             {
-                ScheduleEntry se = new ScheduleEntry(doc);
                 boolean removeReaction = se.handleRSVPReaction(event);
                 if (removeReaction)
                 {
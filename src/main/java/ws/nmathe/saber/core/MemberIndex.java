@@ -0,0 +1,232 @@
+package ws.nmathe.saber.core;
+
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.GuildChannel;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a lazily built index of the cached members of each guild.
+ * Members are assigned an ordinal so that role membership, channel visibility and rsvp groups
+ * can be evaluated as bitmap operations rather than repeated scans of the guild's member list.
+ * A guild's index is dropped whenever its members or roles change and is rebuilt on next use.
+ */
+public class MemberIndex
+{
+    private final Map<Long, GuildIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * retrieves the index for a guild, building it if necessary
+     * @param guild (Guild) the guild to index
+     * @return (GuildIndex) member index
+     */
+    public GuildIndex get(Guild guild)
+    {
+        return indexes.computeIfAbsent(guild.getIdLong(), key -> new GuildIndex(guild));
+    }
+
+    /**
+     * drops the index of a guild, the next lookup will rebuild it
+     * @param guildId (long) ID of the guild
+     */
+    public void invalidate(long guildId)
+    {
+        indexes.remove(guildId);
+    }
+
+    /**
+     * index over the members of a single guild
+     */
+    public static class GuildIndex
+    {
+        private final long[] memberIds;                 // ordinal -> member ID
+        private final Map<Long, Integer> ordinals;      // member ID -> ordinal
+        private final Map<Long, BitSet> roleMembers;    // role ID -> members holding the role
+        private final Map<Long, BitSet> readers = new ConcurrentHashMap<>(); // channel ID -> members with history access
+
+        GuildIndex(Guild guild)
+        {
+            List<Member> members = guild.getMembers();
+            this.memberIds = new long[members.size()];
+            this.ordinals = new HashMap<>(members.size()*2);
+            this.roleMembers = new HashMap<>();
+            for (int i=0; i<members.size(); i++)
+            {
+                Member member = members.get(i);
+                this.memberIds[i] = member.getIdLong();
+                this.ordinals.put(member.getIdLong(), i);
+                for (Role role : member.getRoles())
+                {
+                    this.roleMembers.computeIfAbsent(role.getIdLong(), key -> new BitSet(members.size())).set(i);
+                }
+            }
+        }
+
+        /**
+         * @return (int) number of indexed members
+         */
+        public int size()
+        {
+            return memberIds.length;
+        }
+
+        /**
+         * @param id (String) user ID
+         * @return (boolean) true if the user is a member of the guild
+         */
+        public boolean contains(String id)
+        {
+            return ordinal(id) != null;
+        }
+
+        /**
+         * @param set (BitSet) set of members
+         * @param id (String) user ID
+         * @return (boolean) true if the user is a member of the guild and is in the set
+         */
+        public boolean includes(BitSet set, String id)
+        {
+            Integer ordinal = ordinal(id);
+            return ordinal != null && set.get(ordinal);
+        }
+
+        /**
+         * @return (BitSet) a new set containing every member of the guild
+         */
+        public BitSet all()
+        {
+            BitSet set = new BitSet(memberIds.length);
+            set.set(0, memberIds.length);
+            return set;
+        }
+
+        /**
+         * builds the set of members with the given IDs, IDs of non-members are ignored
+         * @param ids (Collection) user IDs
+         * @return (BitSet) new set of members
+         */
+        public BitSet of(Collection<String> ids)
+        {
+            BitSet set = new BitSet(memberIds.length);
+            for (String id : ids)
+            {
+                Integer ordinal = ordinal(id);
+                if (ordinal != null) set.set(ordinal);
+            }
+            return set;
+        }
+
+        /**
+         * builds the set of members which match at least one user or role filter,
+         * filters may either be IDs or names (effective names for users)
+         * @param guild (Guild) the indexed guild
+         * @param userFilters (Collection) user IDs or names
+         * @param roleFilters (Collection) role IDs or names
+         * @return (BitSet) new set of members, all members if no filters are provided
+         */
+        public BitSet matching(Guild guild, Collection<String> userFilters, Collection<String> roleFilters)
+        {
+            if (userFilters.isEmpty() && roleFilters.isEmpty())
+            {   // filtering is disabled if both lists are empty
+                return all();
+            }
+            BitSet set = new BitSet(memberIds.length);
+            for (String filter : userFilters)
+            {
+                Integer ordinal = ordinal(filter);
+                if (ordinal != null) set.set(ordinal);
+                for (Member member : guild.getMembersByEffectiveName(filter, false))
+                {
+                    ordinal = ordinals.get(member.getIdLong());
+                    if (ordinal != null) set.set(ordinal);
+                }
+            }
+            for (String filter : roleFilters)
+            {
+                Long roleId = parseId(filter);
+                if (roleId != null)
+                {
+                    set.or(withRole(roleId));
+                }
+                for (Role role : guild.getRolesByName(filter, false))
+                {
+                    set.or(withRole(role.getIdLong()));
+                }
+            }
+            return set;
+        }
+
+        /**
+         * builds the set of members able to read the message history of a channel,
+         * the set is computed once per channel and reused until the index is invalidated
+         * @param guild (Guild) the indexed guild
+         * @param channel (GuildChannel) channel
+         * @return (BitSet) new set of members
+         */
+        public BitSet readers(Guild guild, GuildChannel channel)
+        {
+            BitSet set = readers.computeIfAbsent(channel.getIdLong(), key ->
+            {
+                BitSet tmp = new BitSet(memberIds.length);
+                for (int i=0; i<memberIds.length; i++)
+                {
+                    Member member = guild.getMemberById(memberIds[i]);
+                    if (member != null && member.hasPermission(channel, Permission.MESSAGE_HISTORY))
+                    {
+                        tmp.set(i);
+                    }
+                }
+                return tmp;
+            });
+            return (BitSet) set.clone();
+        }
+
+        /**
+         * maps a set of members back to their user IDs
+         * @param set (BitSet) set of members
+         * @return (List) user IDs in index order
+         */
+        public List<String> toIds(BitSet set)
+        {
+            List<String> ids = new ArrayList<>(set.cardinality());
+            for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i+1))
+            {
+                ids.add(Long.toUnsignedString(memberIds[i]));
+            }
+            return ids;
+        }
+
+        private BitSet withRole(long roleId)
+        {
+            return roleMembers.getOrDefault(roleId, new BitSet());
+        }
+
+        private Integer ordinal(String id)
+        {
+            Long parsed = parseId(id);
+            return parsed == null ? null : ordinals.get(parsed);
+        }
+    }
+
+    /**
+     * parses a snowflake ID
+     * @param id (String) ID
+     * @return (Long) the ID, or null if the string is not a valid ID
+     */
+    private static Long parseId(String id)
+    {
+        if (id == null || !id.matches("\\d+")) return null;
+        try
+        {
+            return Long.parseUnsignedLong(id);
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+}
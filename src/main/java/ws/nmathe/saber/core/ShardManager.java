@@ -115,6 +115,7 @@ public class ShardManager
                 // core functionality can now be initialized
                 Main.getEntryManager().init();
                 Main.getCommandHandler().init();
+                Main.getCommandHandler().updateCommands(this.jdaShards.values().iterator().next());
 
                 // start additional shards
                 for (Integer shardId : shards)
@@ -124,7 +125,6 @@ public class ShardManager
                             .useSharding(shardId, shardTotal)
                             .build().awaitReady();
                     this.jdaShards.put(shardId, shard);
-                    Main.getCommandHandler().updateCommands(shard); // update per-shard necessary? I don't know
                 }
             }
             else // no sharding
@@ -136,7 +136,7 @@ public class ShardManager
 
                 Main.getEntryManager().init();
                 Main.getCommandHandler().init();
-                Main.getCommandHandler().updateCommands(jda); // update per-shard necessary? I don't know
+                Main.getCommandHandler().updateCommands(jda);
             }
 
             // executor service schedules shard-checking threads
@@ -0,0 +1,55 @@
+package ws.nmathe.saber.core.command;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import ws.nmathe.saber.core.schedule.ScheduleEntry;
+
+/**
+ * per-invocation state shared between a command's verify() and action()
+ * entities resolved while verifying are stored here so that the action does not need to load them again
+ */
+public class CommandContext
+{
+    private ScheduleEntry entry;    // the event the command operates on
+    private TextChannel channel;    // the schedule channel the command operates on
+    private Message message;        // the event's display message
+    private boolean messageLoaded = false;
+
+    public ScheduleEntry getEntry()
+    {
+        return this.entry;
+    }
+
+    public TextChannel getChannel()
+    {
+        return this.channel;
+    }
+
+    /**
+     * retrieves the display message of the context's event, the message is retrieved at most once
+     * @return (Message) the event's message, or null if it could not be retrieved
+     */
+    public Message getMessage()
+    {
+        if (!this.messageLoaded && this.entry != null)
+        {
+            this.message = this.entry.getMessageObject();
+            this.messageLoaded = true;
+        }
+        return this.message;
+    }
+
+    public CommandContext setEntry(ScheduleEntry entry)
+    {
+        this.entry = entry;
+        this.message = null;
+        this.messageLoaded = false;
+        return this;
+    }
+
+    public CommandContext setChannel(TextChannel channel)
+    {
+        this.channel = channel;
+        return this;
+    }
+}
@@ -1,6 +1,7 @@
 package ws.nmathe.saber.core.command;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.client.model.UpdateOptions;
 
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.ChannelType;
@@ -11,6 +12,7 @@ import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEve
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.SlashCommandInteraction;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.requests.restaction.interactions.ReplyCallbackAction;
 import ws.nmathe.saber.Main;
@@ -20,17 +22,25 @@ import ws.nmathe.saber.core.RateLimiter;
 import ws.nmathe.saber.utils.MessageUtilities;
 import ws.nmathe.saber.commands.general.*;
 import ws.nmathe.saber.utils.Logging;
+import org.bson.Document;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+
 /**
  * Handles MessageEvents which contain user commands
  */
 public class CommandHandler
 {
+    private static final String COMMANDS_ID = "application_commands";   // deployment document of the registered commands
+
     private final CommandParser commandParser = new CommandParser();      // parses command strings into containers
     private final ExecutorService executor = Executors.newCachedThreadPool(
             new ThreadFactoryBuilder().setNameFormat("CommandHandler-%d").build()
@@ -85,67 +95,109 @@ public class CommandHandler
         initialized = true;
     }
 
-    public void updateCommands(JDA jda)
+    /**
+     * the application (slash) commands of the bot
+     * @return (List) command definitions
+     */
+    private List<CommandData> commandData()
     {
-        jda.updateCommands()
-        .addCommands(Commands.slash("help", "DM the user bot info")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("init", "Create a schedule")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("create", "Add event to schedule")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("delete", "Delete an event")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("edit", "Modify an event")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("config", "Configure a schedule")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("timezones", "List valid timezones")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("test", "Test event announcement")
+        return Arrays.asList(
+                Commands.slash("help", "DM the user bot info")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("init", "Create a schedule")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("create", "Add event to schedule")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("delete", "Delete an event")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("edit", "Modify an event")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("config", "Configure a schedule")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("timezones", "List valid timezones")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("test", "Test event announcement")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("sort", "Sort events on schedule")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("sync", "Synchronize schedule with Google Calendar")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("events", "List all events")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("schedules", "List all schedules")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("announcements", "List upcoming announcements")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("guild", "Configure guild options")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("skip", "Skip an event")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("list", "Show member RSVPs")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("manage", "Manage member RSVPs")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("purge", "Bulk delete messages")
+                        .addOption(OptionType.STRING, this.argName, this.argString),
+                Commands.slash("diagnose", "Debug permision issues")
                         .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("sort", "Sort events on schedule")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("sync", "Synchronize schedule with Google Calendar")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("events", "List all events")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("schedules", "List all schedules")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("announcements", "List upcoming announcements")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("guild", "Configure guild options")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("skip", "Skip an event")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("list", "Show member RSVPs")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("manage", "Manage member RSVPs")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("purge", "Bulk delete messages")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .addCommands(Commands.slash("diagnose", "Debug permision issues")
-                        .addOption(OptionType.STRING, this.argName, this.argString)
-                    )
-        .queue();
+        );
+    }
+
+    /**
+     * Registers the application commands, if their definitions have changed since they were last registered.
+     * Application commands are global, so a single registration serves every shard. The fingerprint of the
+     * registered definitions is kept in the database so that restarts (and other processes of the same
+     * deployment) skip the registration, and its rate limit, when nothing has changed.
+     * Runs on the command executor, so it does not hold up startup.
+     * @param jda (JDA) any connected shard
+     */
+    public void updateCommands(JDA jda)
+    {
+        this.executor.execute(() ->
+        {
+            try
+            {
+                List<CommandData> commands = this.commandData();
+                String fingerprint = fingerprint(commands);
+                Document registered = Main.getDBDriver().getDeploymentCollection()
+                        .find(eq("_id", COMMANDS_ID)).first();
+                if (registered != null && fingerprint.equals(registered.getString("fingerprint")))
+                {
+                    Logging.info(this.getClass(), "Application commands are up to date.");
+                    return;
+                }
+
+                jda.updateCommands().addCommands(commands).complete();
+                Main.getDBDriver().getDeploymentCollection().updateOne(eq("_id", COMMANDS_ID),
+                        combine(set("fingerprint", fingerprint), set("registered", new Date())),
+                        new UpdateOptions().upsert(true));
+                Logging.info(this.getClass(), "Registered " + commands.size() + " application commands.");
+            }
+            catch (Exception e)
+            {
+                Logging.warn(this.getClass(), "Failed to register application commands.");
+                Logging.exception(this.getClass(), e);
+            }
+        });
+    }
+
+    /**
+     * @param commands (List) command definitions
+     * @return (String) hex SHA-256 hash of the definitions' serialized form
+     */
+    private static String fingerprint(List<CommandData> commands) throws NoSuchAlgorithmException
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (CommandData command : commands)
+        {
+            digest.update(command.toData().toJson());
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
     }
 
     /**
@@ -287,7 +339,7 @@ public class CommandHandler
         {
             try // catch any errors which occur while parsing user input
             {
-                String err = commands.get(cc.invoke).verify(cc.prefix, cc.args, cc.event);
+                String err = commands.get(cc.invoke).verify(cc.prefix, cc.args, cc.event, cc.context);
                 // do command action if valid arguments
                 if(err.isEmpty())
                 {
@@ -295,7 +347,7 @@ public class CommandHandler
                     {
                         try
                         {
-                            commands.get(cc.invoke).action(cc.prefix, cc.args, cc.event);
+                            commands.get(cc.invoke).action(cc.prefix, cc.args, cc.event, cc.context);
 
                             String info = "Executed command [" + cc.raw +
                                     "] by " + cc.event.getAuthor().getName() + " [" + cc.event.getAuthor().getId()+ "]";
@@ -348,7 +400,7 @@ public class CommandHandler
         {
             try // catch any errors which occur while parsing user input
             {
-                String err = adminCommands.get(cc.invoke).verify(cc.prefix + cc.invoke, cc.args, cc.event);
+                String err = adminCommands.get(cc.invoke).verify(cc.prefix + cc.invoke, cc.args, cc.event, cc.context);
 
                 // do command action if valid arguments
                 if (err.equals(""))
@@ -357,7 +409,7 @@ public class CommandHandler
                     {
                         try
                         {
-                            adminCommands.get(cc.invoke).action(cc.prefix + cc.invoke, cc.args, cc.event);
+                            adminCommands.get(cc.invoke).action(cc.prefix + cc.invoke, cc.args, cc.event, cc.context);
                         }
                         catch(Exception e)
                         {
@@ -95,6 +95,7 @@ public class CommandParser
         final String invoke;            // the first argument in the user's input
         final String[] args;            // all arguments after the initial argument
         final EventCompat event;    // the originating event
+        final CommandContext context = new CommandContext(); // state shared by verify() and action()
 
         // constructor for CommandContainer
         CommandContainer(String raw, String prefix, String invoke, String[] args, EventCompat e)
@@ -0,0 +1,216 @@
+package ws.nmathe.saber.core.database;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Aggregates.match;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Follows a change stream over the cached collections and publishes an invalidation for each change,
+ * so that caches stay correct when other processes (or admin tools) modify the database.
+ * The stream's resume token is periodically stored so that a restarted watcher continues where it left off.
+ * If change streams are unavailable (the database is not a replica set) the driver is left in TTL mode
+ * and the watcher retries periodically.
+ */
+class ChangeWatcher implements Runnable
+{
+    // fields which are only counters and do not invalidate cached settings
+    private static final Set<String> COUNTER_FIELDS = new HashSet<>(Arrays.asList("event_count", "schedule_count"));
+
+    private static final int STREAM_UNSUPPORTED = 40573;    // $changeStream on a standalone server
+    private static final int STREAM_FATAL = 280;            // stream cannot be resumed
+    private static final int HISTORY_LOST = 286;            // resume token no longer in the oplog
+    private static final long TOKEN_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(15);
+    private static final long UNSUPPORTED_RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+    private final Driver driver;
+    private final MongoDatabase db;
+    private final MongoCollection<Document> tokens;
+    private final String watcherId;
+
+    /**
+     * @param driver (Driver) driver to publish invalidations to
+     * @param db (MongoDatabase) database to watch
+     * @param watcherId (String) identifies this process' resume token
+     */
+    ChangeWatcher(Driver driver, MongoDatabase db, String watcherId)
+    {
+        this.driver = driver;
+        this.db = db;
+        this.tokens = db.getCollection("resume_tokens");
+        this.watcherId = watcherId;
+    }
+
+    @Override
+    public void run()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            long delay = RETRY_DELAY;
+            try
+            {
+                this.watch();
+            }
+            catch (MongoServerException e)
+            {
+                if (e.getCode() == STREAM_UNSUPPORTED)
+                {
+                    Logging.warn(this.getClass(), "Change streams are unavailable, falling back to cache expiry.");
+                    delay = UNSUPPORTED_RETRY_DELAY;
+                }
+                else if (e.getCode() == STREAM_FATAL || e.getCode() == HISTORY_LOST)
+                {
+                    Logging.warn(this.getClass(), "Stored resume token is no longer valid, restarting change stream.");
+                    this.tokens.deleteOne(eq("_id", this.watcherId));
+                    delay = 0;
+                }
+                else
+                {
+                    Logging.exception(this.getClass(), e);
+                }
+            }
+            catch (Exception e)
+            {
+                Logging.warn(this.getClass(), "Change stream closed: " + e.getMessage());
+            }
+
+            // changes may have been missed, so nothing that is cached can be trusted
+            this.driver.setWatching(false);
+            this.flush();
+            try
+            {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * opens the change stream and publishes invalidations until the stream fails
+     */
+    private void watch()
+    {
+        List<String> collections = new ArrayList<>();
+        for (Invalidation.Source source : Invalidation.Source.values())
+        {
+            collections.add(source.getCollection());
+        }
+        List<Bson> pipeline = Collections.singletonList(match(in("ns.coll", collections)));
+
+        Document stored = this.tokens.find(eq("_id", this.watcherId)).first();
+        BsonDocument token = stored == null ? null : stored.get("token", Document.class)
+                .toBsonDocument(BsonDocument.class, this.db.getCodecRegistry());
+
+        MongoCursor<ChangeStreamDocument<Document>> cursor = token == null ?
+                this.db.watch(pipeline).iterator() : this.db.watch(pipeline).resumeAfter(token).iterator();
+        try
+        {
+            // the stream is open, cached values may now be held for longer
+            this.driver.setWatching(true);
+            if (token == null)
+            {   // nothing is known about changes before the stream opened
+                this.flush();
+            }
+
+            long lastSaved = System.currentTimeMillis();
+            BsonDocument unsaved = null;
+            while (!Thread.currentThread().isInterrupted())
+            {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null)
+                {
+                    this.publish(change);
+                    unsaved = change.getResumeToken();
+                }
+                if (unsaved != null && System.currentTimeMillis() - lastSaved > TOKEN_INTERVAL)
+                {
+                    this.tokens.updateOne(eq("_id", this.watcherId), set("token", unsaved),
+                            new UpdateOptions().upsert(true));
+                    lastSaved = System.currentTimeMillis();
+                    unsaved = null;
+                }
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    /**
+     * converts a change stream event to an invalidation and publishes it
+     */
+    private void publish(ChangeStreamDocument<Document> change)
+    {
+        Invalidation.Source source = change.getNamespace() == null ? null :
+                Invalidation.Source.of(change.getNamespace().getCollectionName());
+        switch (change.getOperationType())
+        {
+            case INSERT:
+            case REPLACE:
+            case DELETE:
+                break;
+
+            case UPDATE:
+                UpdateDescription description = change.getUpdateDescription();
+                if (description != null && description.getRemovedFields().isEmpty()
+                        && COUNTER_FIELDS.containsAll(description.getUpdatedFields().keySet()))
+                {   // only counters were touched
+                    return;
+                }
+                break;
+
+            default:
+                // collection dropped/renamed or the stream was invalidated
+                if (source == null) this.flush();
+                else this.driver.publish(new Invalidation(source, null));
+                return;
+        }
+        if (source == null) return;
+
+        BsonValue id = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+        if (id != null && id.isString())
+        {
+            this.driver.publish(new Invalidation(source, id.asString().getValue()));
+        }
+        else if (id != null && id.isInt32())
+        {
+            this.driver.publish(new Invalidation(source, id.asInt32().getValue()));
+        }
+        else
+        {
+            this.driver.publish(new Invalidation(source, null));
+        }
+    }
+
+    /**
+     * drops everything cached from every source
+     */
+    private void flush()
+    {
+        for (Invalidation.Source source : Invalidation.Source.values())
+        {
+            this.driver.publish(new Invalidation(source, null));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ws.nmathe.saber.core.database;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.bson.Document;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Streams the documents of a query through a handler without blocking the caller.
+ * The cursor is read on a database I/O thread while the documents already read are handled on a stage
+ * executor, so fetching the next batch overlaps with handling (and the Discord requests made by) the last.
+ * At most a window of documents are in flight at once, the reader waits for handlers to finish before reading
+ * further, which keeps a slow stage from buffering a whole collection in memory.
+ */
+class CursorPipeline
+{
+    private final Iterable<Document> source;
+    private final Executor stage;
+    private final int window;
+    private final Consumer<Document> handler;
+    private final Semaphore inFlight;
+    private final AtomicLong handled = new AtomicLong();
+    private final CompletableFuture<Long> done = new CompletableFuture<>();
+
+    /**
+     * @param source (Iterable) query to read, a database query is read in batches of the window's size
+     * @param stage (Executor) runs the handler
+     * @param window (int) maximum number of documents being handled at once
+     * @param handler (Consumer) handles a document, exceptions are logged and do not stop the pipeline
+     */
+    CursorPipeline(Iterable<Document> source, Executor stage, int window, Consumer<Document> handler)
+    {
+        this.source = source;
+        this.stage = stage;
+        this.window = window;
+        this.handler = handler;
+        this.inFlight = new Semaphore(window);
+    }
+
+    /**
+     * @param io (Executor) reads the cursor
+     * @return (CompletableFuture) completes with the number of documents handled once every handler has finished
+     */
+    CompletableFuture<Long> start(Executor io)
+    {
+        io.execute(this::read);
+        return this.done;
+    }
+
+    private void read()
+    {
+        Iterator<Document> cursor = null;
+        try
+        {
+            cursor = this.source instanceof MongoIterable ?
+                    ((MongoIterable<Document>) this.source).batchSize(this.window).iterator() : this.source.iterator();
+            while (cursor.hasNext())
+            {
+                Document document = cursor.next();
+                this.inFlight.acquire();
+                this.stage.execute(() -> this.handle(document));
+            }
+
+            // wait for the last handlers
+            this.inFlight.acquire(this.window);
+            this.done.complete(this.handled.get());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            this.done.completeExceptionally(e);
+        }
+        catch (Exception e)
+        {
+            this.done.completeExceptionally(e);
+        }
+        finally
+        {
+            if (cursor instanceof MongoCursor) ((MongoCursor<Document>) cursor).close();
+        }
+    }
+
+    private void handle(Document document)
+    {
+        try
+        {
+            this.handler.accept(document);
+            this.handled.incrementAndGet();
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+        finally
+        {
+            this.inFlight.release();
+        }
+    }
+}
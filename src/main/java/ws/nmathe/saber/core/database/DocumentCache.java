@@ -0,0 +1,166 @@
+package ws.nmathe.saber.core.database;
+
+import ws.nmathe.saber.Main;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * in-process cache of values loaded from a database collection
+ * entries are dropped when the driver publishes an invalidation for the collection, and otherwise
+ * expire after the driver's cache TTL (which is short when change streams are unavailable)
+ * @param <K> document _id type
+ * @param <V> cached value type (null values are cached as well)
+ */
+public class DocumentCache<K, V>
+{
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Set<Priming> primings = ConcurrentHashMap.newKeySet();
+    private final Function<K, V> loader;
+
+    /**
+     * creates the cache and subscribes it to the source's invalidations
+     * @param source (Source) the collection the values are loaded from
+     * @param loader (Function) loads a value by document _id
+     */
+    public DocumentCache(Invalidation.Source source, Function<K, V> loader)
+    {
+        this.loader = loader;
+        Main.getDBDriver().subscribe(source, invalidation ->
+        {
+            if (invalidation.isFlush()) this.clear();
+            else this.invalidate(invalidation.getKey());
+        });
+    }
+
+    /**
+     * retrieves a value, loading it from the database if it is not cached or has expired
+     * @param key (K) document _id
+     * @return (V) value, possibly null
+     */
+    public V get(K key)
+    {
+        long now = System.currentTimeMillis();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && now - entry.loaded < Main.getDBDriver().getCacheTtl())
+        {
+            return entry.value;
+        }
+
+        // do not keep the loaded value if an invalidation arrived while loading
+        long gen = generation.get();
+        V value = loader.apply(key);
+        if (gen == generation.get())
+        {
+            entries.put(key, new Entry<>(value, now));
+        }
+        return value;
+    }
+
+    /**
+     * begins loading values in bulk, the session should be closed once the values are primed
+     * @return (Priming) session which records the keys invalidated while it is open
+     */
+    public Priming priming()
+    {
+        Priming priming = new Priming();
+        primings.add(priming);
+        return priming;
+    }
+
+    /**
+     * drops a single cached value
+     */
+    public void invalidate(Object key)
+    {
+        generation.incrementAndGet();
+        for (Priming priming : primings)
+        {
+            priming.invalidated(key);
+        }
+        entries.remove(key);
+    }
+
+    /**
+     * drops every cached value
+     */
+    public void clear()
+    {
+        generation.incrementAndGet();
+        for (Priming priming : primings)
+        {
+            priming.cleared = true;
+        }
+        entries.clear();
+    }
+
+    /**
+     * a bulk load of values, only values whose key was not invalidated since the load began are cached
+     */
+    public class Priming implements AutoCloseable
+    {
+        private final Set<Object> invalidated = ConcurrentHashMap.newKeySet();
+        private final Set<Object> written = ConcurrentHashMap.newKeySet();
+        private volatile boolean cleared = false;
+
+        private Priming()
+        {}
+
+        /**
+         * notes that the load itself wrote a key's document, so that the invalidation
+         * caused by that write is not mistaken for another writer's change
+         * @param key (K) document _id
+         */
+        public void written(K key)
+        {
+            written.add(key);
+        }
+
+        /**
+         * caches a value of the load, unless its key was invalidated since the load began
+         * @param key (K) document _id
+         * @param value (V) value, possibly null
+         * @return (boolean) true if the value was cached
+         */
+        public boolean prime(K key, V value)
+        {
+            if (cleared || invalidated.contains(key)) return false;
+            entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+            // an invalidation which arrived while caching could have been dropped with the old entry
+            if (cleared || invalidated.contains(key))
+            {
+                entries.remove(key);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+            primings.remove(this);
+        }
+
+        private void invalidated(Object key)
+        {
+            // the first invalidation of a key written by the load is that write's own
+            if (!written.remove(key)) invalidated.add(key);
+        }
+    }
+
+    private static class Entry<V>
+    {
+        final V value;
+        final long loaded;
+
+        Entry(V value, long loaded)
+        {
+            this.value = value;
+            this.loaded = loaded;
+        }
+    }
+}
@@ -1,17 +1,35 @@
 package ws.nmathe.saber.core.database;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
 
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 public class Driver
 {
     private MongoDatabase db;
+    private volatile EventRepository eventRepository;
+    private volatile ScheduleRepository scheduleRepository;
+    private volatile GuildRepository guildRepository;
+
+    // cached values are kept much longer when invalidations are being received through a change stream
+    private static final long WATCHED_TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long UNWATCHED_TTL = TimeUnit.SECONDS.toMillis(30);
+    private volatile boolean watching = false;
+    private final Map<Invalidation.Source, List<Consumer<Invalidation>>> subscribers = new ConcurrentHashMap<>();
+
+    // threads which block on the database for the asynchronous api
+    private final ExecutorService ioExecutor = Executors.newFixedThreadPool(8,
+            new ThreadFactoryBuilder().setNameFormat("mongo-io-%d").setDaemon(true).build());
 
     public void init()
     {
@@ -19,10 +37,18 @@ public class Driver
         // connection properties should be configured via the URI used in the bot toml file
         MongoClient mongoClient = new MongoClient(new MongoClientURI(Main.getBotSettingsManager().getMongoURI()));
         db = mongoClient.getDatabase("saberDB");
+        this.eventRepository = new MongoEventRepository(this.getEventCollection());
+        this.scheduleRepository = new MongoScheduleRepository(this.getScheduleCollection());
+        this.guildRepository = new MongoGuildRepository(this.getGuildCollection());
 
         // schedule a thread to prune disconnected guild, schedules, and events from the database
         ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
         executor.scheduleAtFixedRate(new Pruner(), 12, 12, TimeUnit.HOURS);
+
+        // follow changes made to cached collections by other processes
+        // each process (shard subset) keeps its own resume token
+        String watcherId = Main.getBotSettingsManager().getShards() + "/" + Main.getBotSettingsManager().getShardTotal();
+        Executors.newSingleThreadExecutor().execute(new ChangeWatcher(this, db, watcherId));
     }
 
     public MongoCollection<Document> getScheduleCollection()
@@ -39,4 +65,86 @@ public class Driver
     {
         return db.getCollection("guilds");
     }
+
+    public MongoCollection<Document> getBroadcastCollection()
+    {
+        return db.getCollection("broadcasts");
+    }
+
+    public MongoCollection<Document> getDeploymentCollection()
+    {
+        return db.getCollection("deployment");
+    }
+
+    public EventRepository getEventRepository()
+    {
+        return eventRepository;
+    }
+
+    public ScheduleRepository getScheduleRepository()
+    {
+        return scheduleRepository;
+    }
+
+    public GuildRepository getGuildRepository()
+    {
+        return guildRepository;
+    }
+
+    /**
+     * registers a consumer of invalidations for a cached collection
+     * @param source (Source) collection
+     * @param subscriber (Consumer) invalidation handler
+     */
+    public void subscribe(Invalidation.Source source, Consumer<Invalidation> subscriber)
+    {
+        subscribers.computeIfAbsent(source, key -> new CopyOnWriteArrayList<>()).add(subscriber);
+    }
+
+    /**
+     * delivers an invalidation to every subscriber of its collection
+     * @param invalidation (Invalidation) the invalidation
+     */
+    public void publish(Invalidation invalidation)
+    {
+        for (Consumer<Invalidation> subscriber : subscribers.getOrDefault(invalidation.getSource(), new CopyOnWriteArrayList<>()))
+        {
+            try
+            {
+                subscriber.accept(invalidation);
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+        }
+    }
+
+    /**
+     * streams the results of a query through a handler, reading the cursor on a database I/O thread
+     * while earlier documents are still being handled on the stage executor
+     * @param source (Iterable) the query, such as a find() or a repository query
+     * @param stage (Executor) executor to run the handler on
+     * @param window (int) maximum number of documents read but not yet handled
+     * @param handler (Consumer) document handler
+     * @return (CompletableFuture) completes with the number of documents handled, once all have been handled
+     */
+    public CompletableFuture<Long> stream(Iterable<Document> source, Executor stage, int window,
+                                          Consumer<Document> handler)
+    {
+        return new CursorPipeline(source, stage, window, handler).start(this.ioExecutor);
+    }
+
+    /**
+     * @return (long) milliseconds a cached value may be used before it must be reloaded
+     */
+    public long getCacheTtl()
+    {
+        return watching ? WATCHED_TTL : UNWATCHED_TTL;
+    }
+
+    void setWatching(boolean watching)
+    {
+        this.watching = watching;
+    }
 }
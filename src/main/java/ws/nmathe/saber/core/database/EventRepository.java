@@ -0,0 +1,41 @@
+package ws.nmathe.saber.core.database;
+
+import org.bson.Document;
+
+import java.util.Date;
+
+/**
+ * Storage of event documents.
+ * The queries used by the event processors are named operations, so that they can be served without a database.
+ */
+public interface EventRepository
+{
+    /**
+     * @param now (Date) current time
+     * @return (Iterable) events with an event-specific announcement due, read as the result is iterated
+     */
+    Iterable<Document> findAnnouncing(Date now);
+
+    /**
+     * @param now (Date) current time
+     * @return (Iterable) started events which are due to end, read as the result is iterated
+     */
+    Iterable<Document> findEnding(Date now);
+
+    /**
+     * @param now (Date) current time
+     * @return (Iterable) events which are due to start, read as the result is iterated
+     */
+    Iterable<Document> findStarting(Date now);
+
+    /**
+     * @param now (Date) current time
+     * @return (Iterable) events with a start or end reminder due, which have not yet passed the start or end, read as the result is iterated
+     */
+    Iterable<Document> findReminding(Date now);
+
+    /**
+     * @param guildId (String) guild whose events are removed
+     */
+    void deleteByGuild(String guildId);
+}
@@ -0,0 +1,12 @@
+package ws.nmathe.saber.core.database;
+
+/**
+ * Storage of guild settings documents (keyed by guild ID)
+ */
+public interface GuildRepository
+{
+    /**
+     * @param id (String) guild ID
+     */
+    void delete(String id);
+}
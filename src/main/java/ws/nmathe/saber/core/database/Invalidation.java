@@ -0,0 +1,70 @@
+package ws.nmathe.saber.core.database;
+
+/**
+ * notice that a document (or an entire collection) may have changed in the database
+ * and that any locally cached copy should be dropped
+ */
+public class Invalidation
+{
+    /** the collections which may be cached */
+    public enum Source
+    {
+        EVENTS("events"), SCHEDULES("schedules"), GUILDS("guilds");
+
+        private final String collection;
+
+        Source(String collection)
+        {
+            this.collection = collection;
+        }
+
+        public String getCollection()
+        {
+            return this.collection;
+        }
+
+        /**
+         * @param collection (String) collection name
+         * @return (Source) the matching source, or null if the collection is not cached
+         */
+        public static Source of(String collection)
+        {
+            for (Source source : values())
+            {
+                if (source.collection.equals(collection)) return source;
+            }
+            return null;
+        }
+    }
+
+    private final Source source;
+    private final Object key;
+
+    /**
+     * @param source (Source) collection that was changed
+     * @param key (Object) _id of the changed document, null if the whole collection should be dropped
+     */
+    public Invalidation(Source source, Object key)
+    {
+        this.source = source;
+        this.key = key;
+    }
+
+    public Source getSource()
+    {
+        return this.source;
+    }
+
+    public Object getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @return (boolean) true if every cached document of the source should be dropped
+     */
+    public boolean isFlush()
+    {
+        return this.key == null;
+    }
+}
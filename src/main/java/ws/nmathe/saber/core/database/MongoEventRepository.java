@@ -0,0 +1,54 @@
+package ws.nmathe.saber.core.database;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+
+import java.util.Date;
+
+import static com.mongodb.client.model.Filters.*;
+
+/**
+ * Events stored in the database's event collection
+ */
+public class MongoEventRepository implements EventRepository
+{
+    private final MongoCollection<Document> collection;
+
+    MongoEventRepository(MongoCollection<Document> collection)
+    {
+        this.collection = collection;
+    }
+
+    @Override
+    public Iterable<Document> findAnnouncing(Date now)
+    {
+        return this.collection.find(lte("announcements", now));
+    }
+
+    @Override
+    public Iterable<Document> findEnding(Date now)
+    {
+        return this.collection.find(and(eq("hasStarted", true), lte("end", now)));
+    }
+
+    @Override
+    public Iterable<Document> findStarting(Date now)
+    {
+        return this.collection.find(and(eq("hasStarted", false), lte("start", now)));
+    }
+
+    @Override
+    public Iterable<Document> findReminding(Date now)
+    {
+        return this.collection.find(or(
+                and(eq("hasStarted", false), lte("reminders", now), gte("start", now)),
+                and(eq("hasStarted", true), lte("end_reminders", now), gte("end", now))));
+    }
+
+    @Override
+    public void deleteByGuild(String guildId)
+    {
+        this.collection.deleteMany(eq("guildId", guildId));
+    }
+
+}
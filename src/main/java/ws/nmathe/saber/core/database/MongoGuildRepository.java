@@ -0,0 +1,25 @@
+package ws.nmathe.saber.core.database;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Guild settings stored in the database's guild collection
+ */
+public class MongoGuildRepository implements GuildRepository
+{
+    private final MongoCollection<Document> collection;
+
+    MongoGuildRepository(MongoCollection<Document> collection)
+    {
+        this.collection = collection;
+    }
+
+    @Override
+    public void delete(String id)
+    {
+        this.collection.deleteOne(eq("_id", id));
+    }
+}
@@ -0,0 +1,40 @@
+package ws.nmathe.saber.core.database;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+
+import java.util.Date;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Schedules stored in the database's schedule collection
+ */
+public class MongoScheduleRepository implements ScheduleRepository
+{
+    private final MongoCollection<Document> collection;
+
+    MongoScheduleRepository(MongoCollection<Document> collection)
+    {
+        this.collection = collection;
+    }
+
+    @Override
+    public Document find(String id)
+    {
+        return this.collection.find(eq("_id", id)).first();
+    }
+
+    @Override
+    public void setSyncTime(String id, Date syncTime)
+    {
+        this.collection.updateOne(eq("_id", id), set("sync_time", syncTime));
+    }
+
+    @Override
+    public void deleteByGuild(String guildId)
+    {
+        this.collection.deleteMany(eq("guildId", guildId));
+    }
+}
@@ -1,5 +1,7 @@
 package ws.nmathe.saber.core.database;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.client.MongoCollection;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Guild;
@@ -11,19 +13,33 @@ import ws.nmathe.saber.Main;
 import ws.nmathe.saber.utils.Logging;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.mongodb.client.model.Accumulators.sum;
+import static com.mongodb.client.model.Aggregates.group;
+import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.set;
 
 /**
  * Removes entries of guilds, schedules, and events that are unreachable
  */
 public class Pruner implements Runnable
 {
+    // documents are checked a few at a time while the next are read
+    private static final int WINDOW = 50;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4,
+            new ThreadFactoryBuilder().setNameFormat("Pruner-%d").build());
+
     @Override
     public void run()
     {
@@ -31,9 +47,8 @@ public class Pruner implements Runnable
 
         // purge guild setting entries for any guild not connected to the bot
         Bson query = new Document();
-        Main.getDBDriver().getGuildCollection().find(query)
-                .projection(fields(include("_id")))
-                .forEach((Consumer<? super Document>) document ->
+        Main.getDBDriver().stream(Main.getDBDriver().getGuildCollection().find(query)
+                .projection(fields(include("_id"))), this.executor, WINDOW, document ->
                 {
                     try
                     {
@@ -48,9 +63,10 @@ public class Pruner implements Runnable
                         Guild guild = jda.getGuildById(guildId);
                         if(guild == null)
                         {
-                            Main.getDBDriver().getGuildCollection().deleteOne(eq("_id", guildId));
-                            Main.getDBDriver().getEventCollection().deleteMany(eq("guildId", guildId));
-                            Main.getDBDriver().getScheduleCollection().deleteMany(eq("guildId", guildId));
+                            Main.getDBDriver().getGuildRepository().delete(guildId);
+                            Main.getDBDriver().getEventRepository().deleteByGuild(guildId);
+                            Main.getEntryManager().evictGuild(guildId);
+                            Main.getDBDriver().getScheduleRepository().deleteByGuild(guildId);
                             Logging.info(this.getClass(), "Pruned guild with ID: " + guildId);
                         }
                     }
@@ -58,13 +74,12 @@ public class Pruner implements Runnable
                     {
                         Logging.exception(this.getClass(), e);
                     }
-                });
+                }).join();
 
         // purge schedules that the bot cannot connect to
         query = new Document();
-        Main.getDBDriver().getScheduleCollection().find(query)
-                .projection(fields(include("_id", "guildId")))
-                .forEach((Consumer<? super Document>) document ->
+        Main.getDBDriver().stream(Main.getDBDriver().getScheduleCollection().find(query)
+                .projection(fields(include("_id", "guildId"))), this.executor, WINDOW, document ->
                 {
                     try
                     {
@@ -80,8 +95,7 @@ public class Pruner implements Runnable
                         MessageChannel channel = jda.getTextChannelById(chanId);
                         if(channel == null)
                         {
-                            Main.getDBDriver().getEventCollection().deleteMany(eq("channeldId", chanId));
-                            Main.getDBDriver().getScheduleCollection().deleteMany(eq("_id", chanId));
+                            Main.getScheduleManager().removeSchedule(guildId, chanId);
                             Logging.info(this.getClass(), "Pruned schedule with channel ID: " + chanId);
                         }
                     }
@@ -89,14 +103,13 @@ public class Pruner implements Runnable
                     {
                         Logging.exception(this.getClass(), e);
                     }
-                });
+                }).join();
 
 
         // purge events for which the bot cannot access the message
         query = new Document();
-        Main.getDBDriver().getEventCollection().find(query)
-                .projection(fields(include("_id", "messageId", "channelId", "guildId")))
-                .forEach((Consumer<? super Document>) document ->
+        Main.getDBDriver().stream(Main.getDBDriver().getEventCollection().find(query)
+                .projection(fields(include("_id", "messageId", "channelId", "guildId"))), this.executor, WINDOW, document ->
                 {
                     try
                     {
@@ -113,7 +126,7 @@ public class Pruner implements Runnable
                         String messageId = document.getString("messageId");
                         if(messageId == null)
                         {
-                            Main.getDBDriver().getEventCollection().deleteOne(eq("_id", eventId));
+                            Main.getEntryManager().removeEntry(eventId);
                             Logging.info(this.getClass(), "Pruned event with ID: " + eventId);
                             return;
                         }
@@ -132,13 +145,13 @@ public class Pruner implements Runnable
                                 {
                                     if(message == null)
                                     {
-                                        Main.getDBDriver().getEventCollection().deleteOne(eq("_id", eventId));
+                                        Main.getEntryManager().removeEntry(eventId);
                                         Logging.info(this.getClass(), "Pruned event with ID: " + eventId + " on channel with ID: " + channelId);
                                     }
                                 },
                                 throwable ->
                                 {
-                                    Main.getDBDriver().getEventCollection().deleteOne(eq("_id", eventId));
+                                    Main.getEntryManager().removeEntry(eventId);
                                     Logging.info(this.getClass(), "Pruned event with ID: " + eventId + " on channel with ID: " + channelId);
                                 });
                     }
@@ -146,6 +159,74 @@ public class Pruner implements Runnable
                     {
                         Logging.exception(this.getClass(), e);
                     }
-            });
+            }).join();
+
+        // reconcile the event and schedule counters kept on the schedule and guild documents
+        this.recount();
+    }
+
+    /**
+     * recomputes the event and schedule counters with one $group aggregation per counter,
+     * and corrects any counter which has drifted from the actual contents of the database
+     */
+    private void recount()
+    {
+        Logging.info(this.getClass(), "Reconciling event and schedule counters. . .");
+        try
+        {
+            Map<String, Long> eventsPerSchedule = this.countBy(Main.getDBDriver().getEventCollection(), "$channelId");
+            Map<String, Long> eventsPerGuild = this.countBy(Main.getDBDriver().getEventCollection(), "$guildId");
+            Map<String, Long> schedulesPerGuild = this.countBy(Main.getDBDriver().getScheduleCollection(), "$guildId");
+
+            Main.getDBDriver().getScheduleCollection().find()
+                    .projection(fields(include("_id", "event_count")))
+                    .forEach((Consumer<? super Document>) document ->
+                            this.correct(Main.getDBDriver().getScheduleCollection(), document,
+                                    "event_count", eventsPerSchedule.getOrDefault(document.getString("_id"), 0L)));
+
+            Main.getDBDriver().getGuildCollection().find()
+                    .projection(fields(include("_id", "event_count", "schedule_count")))
+                    .forEach((Consumer<? super Document>) document ->
+                    {
+                        String guildId = document.getString("_id");
+                        this.correct(Main.getDBDriver().getGuildCollection(), document,
+                                "event_count", eventsPerGuild.getOrDefault(guildId, 0L));
+                        this.correct(Main.getDBDriver().getGuildCollection(), document,
+                                "schedule_count", schedulesPerGuild.getOrDefault(guildId, 0L));
+                    });
+        }
+        catch(Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+
+    /**
+     * counts the documents of a collection grouped by a field
+     */
+    private Map<String, Long> countBy(MongoCollection<Document> collection, String field)
+    {
+        Map<String, Long> counts = new HashMap<>();
+        collection.aggregate(Collections.singletonList(group(field, sum("count", 1L))))
+                .forEach((Consumer<? super Document>) document ->
+                {
+                    if (document.get("_id") != null)
+                        counts.put(document.get("_id").toString(), ((Number) document.get("count")).longValue());
+                });
+        return counts;
+    }
+
+    /**
+     * overwrites a counter field of a document if it differs from the actual count
+     * the counter is only overwritten if it still holds the value which was read, so that
+     * concurrent adjustments are not lost (they are reconciled by the next prune instead)
+     */
+    private void correct(MongoCollection<Document> collection, Document document, String field, long actual)
+    {
+        Object counter = document.get(field);
+        if (counter == null || ((Number) counter).longValue() != actual)
+        {
+            collection.updateOne(and(eq("_id", document.get("_id")), eq(field, counter)), set(field, actual));
+        }
     }
 }
@@ -0,0 +1,28 @@
+package ws.nmathe.saber.core.database;
+
+import org.bson.Document;
+
+import java.util.Date;
+
+/**
+ * Storage of schedule documents (keyed by channel ID)
+ */
+public interface ScheduleRepository
+{
+    /**
+     * @param id (String) schedule ID
+     * @return (Document) the schedule, null if there is no such schedule
+     */
+    Document find(String id);
+
+    /**
+     * @param id (String) schedule ID
+     * @param syncTime (Date) time of the schedule's next sync
+     */
+    void setSyncTime(String id, Date syncTime);
+
+    /**
+     * @param guildId (String) guild whose schedules are removed
+     */
+    void deleteByGuild(String guildId);
+}
@@ -268,84 +268,16 @@ public class CalendarConverter
                         // process event description into event comments or other settings
                         if (event.getDescription() != null)
                         {
-                            // process the description line by line
-                            String description = HTMLStripper.cleanDescription(
-                                    event.getDescription().replace("\n", "<br>"));
-                            for (String comment : description.split("\n"))
-                            {
-                                comment = comment.trim();
-                                Logging.info(this.getClass(), comment);
-                                String lowerCase = comment.toLowerCase();
-
-                                // image
-                                if (lowerCase.startsWith("image:"))
-                                {
-                                    String[] tmp = comment.split(":",2); // split to limit:
-                                    if(tmp.length > 1)
-                                    {
-                                        imageUrl = tmp[1].trim().replaceAll(" ","");
-                                        if (!VerifyUtilities.verifyUrl(imageUrl)) imageUrl = null;
-                                    }
-                                }
-                                // thumbnail
-                                else if (lowerCase.startsWith("thumbnail:"))
-                                {
-                                    String[] tmp = comment.split(":",2);
-                                    if(tmp.length > 1)
-                                    {
-                                        thumbnailUrl = tmp[1].trim().trim().replaceAll(" ","");
-                                        if(!VerifyUtilities.verifyUrl(thumbnailUrl)) thumbnailUrl = null;
-                                    }
-                                }
-                                // limit
-                                else if (lowerCase.startsWith("limit:"))
-                                {
-                                    String[] tmp = comment.split(":",2); // split to limit:
-                                    if(tmp.length > 1)
-                                    {
-                                        String[] str = tmp[1].trim().split("[^\\S\n\r]+"); // split into white space separated segments
-                                        if(str.length >= 2)
-                                        {
-                                            // rebuild the rsvp group name
-                                            StringBuilder name = new StringBuilder();
-                                            for(int i=0; i<str.length-1; i++)
-                                            {
-                                                name.append(str[i]);
-                                                if(i != str.length-2) name.append(" ");
-                                            }
-
-                                            // parse the limit
-                                            Integer limit = -1;
-                                            if(VerifyUtilities.verifyInteger(str[str.length-1]))
-                                                limit = Integer.parseInt(str[str.length-1]);
-
-                                            rsvpLimits.put(name.toString(), limit);
-                                        }
-                                    }
-
-                                }
-                                // title url
-                                else if (lowerCase.startsWith("url:"))
-                                {
-                                    String[] tmp = comment.split(":",2);
-                                    if(tmp.length > 1 && VerifyUtilities.verifyUrl(tmp[1].trim().replaceAll(" ","")))
-                                        titleUrl = tmp[1].trim().replaceAll(" ","");
-                                }
-                                // deadline
-                                else if (lowerCase.startsWith("deadline:"))
-                                {
-                                    String tmp = lowerCase.replace("deadline:","")
-                                            .trim().replaceAll(" ","");
-                                    if(VerifyUtilities.verifyDate(tmp))
-                                        rsvpDeadline = ZonedDateTime.of(ParsingUtilities
-                                                .parseDate(tmp, zone), LocalTime.MAX, zone);
-                                }
-                                // plaintext comment
-                                else if(!comment.trim().isEmpty())
-                                {
-                                    comments.add(comment);
-                                }
-                            }
+                            DescriptionParser.Directives directives =
+                                    DescriptionParser.parse(address, event.getId(), event.getEtag(), event.getDescription());
+                            imageUrl = directives.getImageUrl();
+                            thumbnailUrl = directives.getThumbnailUrl();
+                            titleUrl = directives.getTitleUrl();
+                            rsvpLimits.putAll(directives.getRsvpLimits());
+                            comments.addAll(directives.getComments());
+                            if (directives.getDeadline() != null)
+                                rsvpDeadline = ZonedDateTime.of(ParsingUtilities
+                                        .parseDate(directives.getDeadline(), zone), LocalTime.MAX, zone);
                         }
 
                         // get the event recurrence information
@@ -0,0 +1,327 @@
+package ws.nmathe.saber.core.google;
+
+import org.jsoup.parser.Parser;
+import ws.nmathe.saber.utils.VerifyUtilities;
+
+import java.util.*;
+
+/**
+ * Reads the settings directives (image:, thumbnail:, limit:, url: and deadline:) and plain comments out of
+ * a google calendar event's description in a single pass.
+ * Descriptions are only treated as HTML when they contain markup, in which case tags are reduced to line breaks
+ * the same way {@link HTMLStripper} reduces them. Parsed descriptions are remembered by the calendar, event ID and
+ * etag of the event. The etag changes whenever the event is edited, so unchanged events are not parsed (or have their
+ * urls verified) again, but it is only an update timestamp and may be shared by different events.
+ */
+class DescriptionParser
+{
+    private static final int MAX_CACHED = 10000;
+
+    // tags which start a new line before or after their content, as in HTMLStripper
+    private static final Set<String> BREAK_BEFORE = new HashSet<>(Arrays.asList("p", "h1", "h2", "h3", "h4", "h5", "tr"));
+    private static final Set<String> BREAK_AFTER = new HashSet<>(Arrays.asList("br", "dd", "dt", "p", "h1", "h2", "h3", "h4", "h5"));
+
+    private static final Map<String, Directives> parsed = Collections.synchronizedMap(
+            new LinkedHashMap<String, Directives>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Directives> eldest)
+                {
+                    return this.size() > MAX_CACHED;
+                }
+            });
+
+    /**
+     * the directives of an event's description
+     * @param calendarId address of the event's calendar
+     * @param eventId the event's ID
+     * @param etag the event's etag, null to not remember the result
+     * @param description the event's description
+     * @return the directives and comments of the description
+     */
+    static Directives parse(String calendarId, String eventId, String etag, String description)
+    {
+        if (calendarId == null || eventId == null || etag == null) return new Directives(description);
+
+        String key = calendarId + "/" + eventId + "/" + etag;
+        Directives directives = parsed.get(key);
+        if (directives == null)
+        {
+            directives = new Directives(description);
+            parsed.put(key, directives);
+        }
+        return directives;
+    }
+
+    /**
+     * the settings found in a description, null where the description did not set them
+     */
+    static class Directives
+    {
+        private String imageUrl = null;
+        private String thumbnailUrl = null;
+        private String titleUrl = null;
+        private String deadline = null;
+        private final Map<String, Integer> rsvpLimits = new HashMap<>();
+        private final List<String> comments = new ArrayList<>();
+
+        private Directives(String description)
+        {
+            if (description.indexOf('<') >= 0 || description.indexOf('&') >= 0)
+            {
+                this.readMarkup(description);
+            }
+            else
+            {
+                this.readText(description);
+            }
+        }
+
+        String getImageUrl()
+        {
+            return this.imageUrl;
+        }
+
+        String getThumbnailUrl()
+        {
+            return this.thumbnailUrl;
+        }
+
+        String getTitleUrl()
+        {
+            return this.titleUrl;
+        }
+
+        /**
+         * @return the rsvp deadline date, as verified by VerifyUtilities.verifyDate()
+         */
+        String getDeadline()
+        {
+            return this.deadline;
+        }
+
+        Map<String, Integer> getRsvpLimits()
+        {
+            return Collections.unmodifiableMap(this.rsvpLimits);
+        }
+
+        List<String> getComments()
+        {
+            return Collections.unmodifiableList(this.comments);
+        }
+
+        /**
+         * plain text, each line with its runs of whitespace collapsed
+         */
+        private void readText(String description)
+        {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < description.length(); i++)
+            {
+                char c = description.charAt(i);
+                if (c == '\n')
+                {
+                    this.readLine(line);
+                }
+                else
+                {
+                    appendText(line, c);
+                }
+            }
+            this.readLine(line);
+        }
+
+        /**
+         * HTML, tags are dropped or replaced by line breaks and entities are decoded
+         */
+        private void readMarkup(String description)
+        {
+            StringBuilder line = new StringBuilder();
+            StringBuilder text = new StringBuilder();
+            int i = 0;
+            while (i < description.length())
+            {
+                char c = description.charAt(i);
+                if (c == '\n')
+                {   // line breaks are kept as breaks
+                    this.flushText(text, line);
+                    this.readLine(line);
+                    i++;
+                    continue;
+                }
+                if (c != '<')
+                {
+                    text.append(c);
+                    i++;
+                    continue;
+                }
+
+                // comments and content which is not text
+                if (description.startsWith("<!--", i))
+                {
+                    int close = description.indexOf("-->", i + 4);
+                    i = close < 0 ? description.length() : close + 3;
+                    continue;
+                }
+                int close = description.indexOf('>', i + 1);
+                if (close < 0)
+                {   // not a tag after all
+                    text.append(description, i, description.length());
+                    break;
+                }
+                boolean closing = description.charAt(i + 1) == '/';
+                int nameStart = closing ? i + 2 : i + 1;
+                int nameEnd = nameStart;
+                while (nameEnd < close && Character.isLetterOrDigit(description.charAt(nameEnd))) nameEnd++;
+                if (nameEnd == nameStart && !closing && description.charAt(nameStart) != '!')
+                {   // a '<' which does not start a tag
+                    text.append(c);
+                    i++;
+                    continue;
+                }
+                String name = description.substring(nameStart, nameEnd).toLowerCase();
+                i = close + 1;
+
+                if (!closing && (name.equals("script") || name.equals("style")))
+                {
+                    int end = description.toLowerCase().indexOf("</" + name, i);
+                    i = end < 0 ? description.length() : end;
+                    continue;
+                }
+
+                this.flushText(text, line);
+                boolean selfClosing = description.charAt(close - 1) == '/' || name.equals("br");
+                if (!closing)
+                {
+                    if (name.equals("li")) this.append(line, "\n * ");
+                    else if (name.equals("dt")) this.append(line, "  ");
+                    else if (BREAK_BEFORE.contains(name)) this.append(line, "\n");
+                }
+                if ((closing || selfClosing) && BREAK_AFTER.contains(name))
+                {
+                    this.append(line, "\n");
+                }
+            }
+            this.flushText(text, line);
+            this.readLine(line);
+        }
+
+        /**
+         * decodes a run of text between tags onto the current line
+         */
+        private void flushText(StringBuilder text, StringBuilder line)
+        {
+            if (text.length() == 0) return;
+            String decoded = Parser.unescapeEntities(text.toString(), false);
+            text.setLength(0);
+
+            StringBuilder normalized = new StringBuilder();
+            for (int i = 0; i < decoded.length(); i++)
+            {
+                appendText(normalized, decoded.charAt(i));
+            }
+            this.append(line, normalized.toString());
+        }
+
+        /**
+         * appends reduced markup to the current line, reading the line whenever a line break is appended
+         */
+        private void append(StringBuilder line, String text)
+        {
+            // don't accumulate long runs of empty spaces
+            if (text.equals(" ") && (line.length() == 0 || line.charAt(line.length() - 1) == ' ')) return;
+            for (int i = 0; i < text.length(); i++)
+            {
+                char c = text.charAt(i);
+                if (c == '\n') this.readLine(line);
+                else line.append(c);
+            }
+        }
+
+        /**
+         * appends a character of text, collapsing runs of whitespace into one space
+         */
+        private static void appendText(StringBuilder line, char c)
+        {
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\f')
+            {
+                if (line.length() == 0 || line.charAt(line.length() - 1) != ' ') line.append(' ');
+            }
+            else
+            {
+                line.append(c);
+            }
+        }
+
+        /**
+         * handles a complete line of the description and clears it
+         */
+        private void readLine(StringBuilder buffer)
+        {
+            String line = buffer.toString().trim();
+            buffer.setLength(0);
+            if (line.isEmpty()) return;
+
+            if (startsWith(line, "image:"))
+            {
+                this.imageUrl = url(line);
+            }
+            else if (startsWith(line, "thumbnail:"))
+            {
+                this.thumbnailUrl = url(line);
+            }
+            else if (startsWith(line, "limit:"))
+            {
+                String[] str = value(line).split("\\s+"); // split into white space separated segments
+                if (str.length >= 2)
+                {
+                    // rebuild the rsvp group name
+                    String name = String.join(" ", Arrays.asList(str).subList(0, str.length - 1));
+
+                    // parse the limit
+                    Integer limit = -1;
+                    if (VerifyUtilities.verifyInteger(str[str.length-1]))
+                        limit = Integer.parseInt(str[str.length-1]);
+
+                    this.rsvpLimits.put(name, limit);
+                }
+            }
+            else if (startsWith(line, "url:"))
+            {
+                String url = url(line);
+                if (url != null) this.titleUrl = url;
+            }
+            else if (startsWith(line, "deadline:"))
+            {
+                String date = line.toLowerCase().replace("deadline:", "").trim().replace(" ", "");
+                if (VerifyUtilities.verifyDate(date)) this.deadline = date;
+            }
+            else
+            {   // plaintext comment
+                this.comments.add(line);
+            }
+        }
+
+        private static boolean startsWith(String line, String directive)
+        {
+            return line.regionMatches(true, 0, directive, 0, directive.length());
+        }
+
+        /**
+         * @return the directive's value, the text after the first ':'
+         */
+        private static String value(String line)
+        {
+            return line.substring(line.indexOf(':') + 1).trim();
+        }
+
+        /**
+         * @return the directive's value as an url (with spaces removed), null if it is not a valid url
+         */
+        private static String url(String line)
+        {
+            String url = value(line).replace(" ", "");
+            return VerifyUtilities.verifyUrl(url) ? url : null;
+        }
+    }
+}
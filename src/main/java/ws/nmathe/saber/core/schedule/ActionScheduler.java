@@ -0,0 +1,342 @@
+package ws.nmathe.saber.core.schedule;
+
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs event actions on a bounded set of workers, with one FIFO queue per guild.
+ * Each queue runs at most one action at a time and goes to the back of the line after every action, so
+ * a guild with many simultaneous events (or a channel stuck in rate limit backoff) only holds up its own actions.
+ * Queues are not bound to a worker: whichever worker becomes idle first takes the next waiting queue.
+ * An event is never queued twice, a submission for an event which is already queued or running is ignored.
+ * Actions run with a deadline. A watchdog abandons actions which overrun it: the worker's stack trace is logged,
+ * the worker is interrupted and replaced, the guild's queue moves on, and the action is retried after a backoff.
+ * Actions cooperate by calling {@link #checkCancelled()} before doing anything which should not happen twice.
+ */
+class ActionScheduler
+{
+    private static final long WATCHDOG_PERIOD = 15;      // seconds between deadline checks
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY = 30;          // seconds before the first retry, doubled for each retry
+
+    // the action being run by the current thread
+    private static final ThreadLocal<Task> current = new ThreadLocal<>();
+
+    private final String name;
+    private final long deadline;
+    private final Map<String, KeyQueue> queues = new HashMap<>();                  // guarded by this
+    private final BlockingQueue<KeyQueue> waiting = new LinkedBlockingQueue<>();  // queues with work, not running
+    private final Set<Integer> pending = new HashSet<>();                         // guarded by this
+    private final Map<String, Integer> timeouts = new HashMap<>();                // guarded by this
+    private final ScheduledExecutorService watchdog;
+    private int workerCount = 0;                                                  // guarded by this
+
+    /**
+     * @param workers (int) number of worker threads
+     * @param name (String) worker thread name prefix
+     * @param deadline (long) milliseconds an action may run before it is abandoned
+     */
+    ActionScheduler(int workers, String name, long deadline)
+    {
+        this.name = name;
+        this.deadline = deadline;
+        for (int i = 0; i < workers; i++)
+        {
+            this.startWorker();
+        }
+
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, name + "-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog.scheduleWithFixedDelay(this::checkDeadlines, WATCHDOG_PERIOD, WATCHDOG_PERIOD, TimeUnit.SECONDS);
+    }
+
+    /**
+     * cooperative cancellation point for actions,
+     * throws if the action running on the current thread has been abandoned by the watchdog
+     * (does nothing when called from outside of an action)
+     */
+    static void checkCancelled()
+    {
+        Task task = current.get();
+        if (task != null && task.runner != Thread.currentThread())
+        {
+            throw new CancellationException("event action [" + task.eventId + "] was abandoned");
+        }
+    }
+
+    /**
+     * queues an action for an event
+     * @param key (String) queue to add the action to (guild ID)
+     * @param eventId (Integer) event the action is for
+     * @param action (Runnable) the action
+     * @return (CompletableFuture) completes once the action has run, null if the event already has an action queued
+     */
+    synchronized CompletableFuture<Void> submit(String key, Integer eventId, Runnable action)
+    {
+        if (!this.pending.add(eventId)) return null;
+
+        Task task = new Task(key, eventId, action);
+        this.enqueue(task);
+        return task.done;
+    }
+
+    /**
+     * @param eventId (Integer) event ID
+     * @return (boolean) true if an action for the event is queued or running
+     */
+    synchronized boolean isPending(Integer eventId)
+    {
+        return this.pending.contains(eventId);
+    }
+
+    /**
+     * @return (int) number of actions queued or running
+     */
+    synchronized int getPendingCount()
+    {
+        return this.pending.size();
+    }
+
+    /**
+     * the lag of each queue with work, the time its oldest action (queued or running) has been waiting
+     * @return (Map) queue key mapped to lag in milliseconds
+     */
+    synchronized Map<String, Long> getLag()
+    {
+        long now = System.currentTimeMillis();
+        Map<String, Long> lag = new HashMap<>();
+        for (KeyQueue queue : this.queues.values())
+        {
+            Task oldest = queue.running != null ? queue.running : queue.tasks.peek();
+            if (oldest != null) lag.put(queue.key, now - oldest.queued);
+        }
+        return lag;
+    }
+
+    /**
+     * retrieves and resets the number of actions abandoned by the watchdog
+     * @return (Map) queue key mapped to the number of actions which overran their deadline since the last call
+     */
+    synchronized Map<String, Integer> drainTimeouts()
+    {
+        Map<String, Integer> drained = new HashMap<>(this.timeouts);
+        this.timeouts.clear();
+        return drained;
+    }
+
+    private synchronized void enqueue(Task task)
+    {
+        task.state = State.QUEUED;
+        KeyQueue queue = this.queues.computeIfAbsent(task.key, KeyQueue::new);
+        queue.tasks.add(task);
+        if (queue.running == null && queue.tasks.size() == 1)
+        {
+            this.waiting.add(queue);
+        }
+    }
+
+    private synchronized void startWorker()
+    {
+        Thread worker = new Thread(this::work, this.name + "-" + this.workerCount++);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void work()
+    {
+        Thread self = Thread.currentThread();
+        while (!self.isInterrupted())
+        {
+            KeyQueue queue;
+            Task task;
+            try
+            {
+                queue = this.waiting.take();
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            synchronized (this)
+            {
+                task = queue.tasks.poll();
+                if (task == null)
+                {   // the queue's only action was withdrawn
+                    if (queue.running == null) this.queues.remove(queue.key, queue);
+                    continue;
+                }
+                queue.running = task;
+                task.runner = self;
+                task.state = State.RUNNING;
+                task.started = System.currentTimeMillis();
+            }
+
+            Throwable error = null;
+            current.set(task);
+            try
+            {
+                task.action.run();
+            }
+            catch (Throwable e)
+            {
+                error = e;
+            }
+            finally
+            {
+                current.remove();
+            }
+
+            synchronized (this)
+            {
+                if (task.runner != self)
+                {   // abandoned by the watchdog, which has already started a replacement worker
+                    if (error == null && (task.state == State.BACKOFF || task.state == State.QUEUED))
+                    {   // the action did finish after all, withdraw the retry
+                        KeyQueue retryQueue = this.queues.get(task.key);
+                        if (retryQueue != null) retryQueue.tasks.remove(task);
+                        this.finish(task, null);
+                        Logging.info(this.getClass(), "Abandoned action for event [" + task.eventId + "] finished late, retry withdrawn.");
+                    }
+                    return;
+                }
+
+                task.runner = null;
+                queue.running = null;
+                if (queue.tasks.isEmpty())
+                {
+                    this.queues.remove(queue.key, queue);
+                }
+                else
+                {   // back of the line
+                    this.waiting.add(queue);
+                }
+                if (error != null) Logging.exception(this.getClass(), error);
+                this.finish(task, error);
+            }
+        }
+    }
+
+    /**
+     * abandons running actions which have overrun their deadline
+     */
+    private synchronized void checkDeadlines()
+    {
+        try
+        {
+            long now = System.currentTimeMillis();
+            for (KeyQueue queue : new ArrayList<>(this.queues.values()))
+            {
+                Task task = queue.running;
+                if (task == null || now - task.started < this.deadline) continue;
+
+                // record where the worker is stuck, then interrupt it
+                Thread worker = task.runner;
+                StringBuilder trace = new StringBuilder();
+                for (StackTraceElement element : worker.getStackTrace())
+                {
+                    trace.append("\n\tat ").append(element);
+                }
+                Logging.warn(this.getClass(), "Action for event [" + task.eventId + "] (attempt " + task.attempt +
+                        ") exceeded its deadline on " + worker.getName() + ":" + trace);
+                worker.interrupt();
+                this.timeouts.merge(queue.key, 1, Integer::sum);
+
+                // release the guild's queue and replace the worker
+                task.runner = null;
+                queue.running = null;
+                if (queue.tasks.isEmpty())
+                {
+                    this.queues.remove(queue.key, queue);
+                }
+                else
+                {
+                    this.waiting.add(queue);
+                }
+                this.startWorker();
+
+                if (task.attempt < MAX_ATTEMPTS)
+                {
+                    long delay = RETRY_DELAY << (task.attempt - 1);
+                    task.state = State.BACKOFF;
+                    this.watchdog.schedule(() -> this.retry(task), delay, TimeUnit.SECONDS);
+                }
+                else
+                {
+                    Logging.warn(this.getClass(), "Gave up on action for event [" + task.eventId + "] after " +
+                            MAX_ATTEMPTS + " attempts.");
+                    this.finish(task, new TimeoutException("event action exceeded its deadline " + MAX_ATTEMPTS + " times"));
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+    }
+
+    private synchronized void retry(Task task)
+    {
+        if (task.state != State.BACKOFF) return;
+        task.attempt++;
+        this.enqueue(task);
+    }
+
+    /**
+     * releases the action's event and completes its future, must hold the lock
+     */
+    private void finish(Task task, Throwable error)
+    {
+        task.state = State.DONE;
+        this.pending.remove(task.eventId);
+        if (error == null) task.done.complete(null);
+        else task.done.completeExceptionally(error);
+    }
+
+    /**
+     * the actions of a single guild
+     */
+    private static class KeyQueue
+    {
+        final String key;
+        final Deque<Task> tasks = new ArrayDeque<>();
+        Task running = null;
+
+        KeyQueue(String key)
+        {
+            this.key = key;
+        }
+    }
+
+    private enum State {QUEUED, RUNNING, BACKOFF, DONE}
+
+    /**
+     * an event action, the same task is queued again when it is retried
+     */
+    private static class Task
+    {
+        final String key;
+        final Integer eventId;
+        final Runnable action;
+        final long queued = System.currentTimeMillis();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        // guarded by the scheduler
+        State state;
+        volatile Thread runner;     // worker running the current attempt, null once abandoned
+        long started;
+        int attempt = 1;
+
+        Task(String key, Integer eventId, Runnable action)
+        {
+            this.key = key;
+            this.eventId = eventId;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.TextChannel;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.database.Invalidation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves announcement targets (channel IDs or channel names) to the IDs of the channels to send to.
+ * Resolved routes are kept per schedule and announcement kind, and per free-form target for event specific
+ * announcements, so that sending an announcement does not need to scan the guild's channels.
+ * A guild's routes are dropped when its channels are created, renamed or deleted, and a schedule's
+ * routes are dropped when its announcement channel settings change.
+ */
+public class AnnouncementRouter
+{
+    /** the announcements which are routed using schedule settings */
+    public enum Kind
+    {
+        START, END, REMINDER
+    }
+
+    private static final long[] NONE = new long[0];
+    private static final Pattern SNOWFLAKE = Pattern.compile("\\d+");
+
+    private final Map<Long, GuildRoutes> guilds = new ConcurrentHashMap<>();
+    private final Map<String, Long> owners = new ConcurrentHashMap<>(); // schedule ID -> guild ID
+    private final AtomicLong generation = new AtomicLong();
+
+    public AnnouncementRouter()
+    {   // settings changed by other processes
+        Main.getDBDriver().subscribe(Invalidation.Source.SCHEDULES, invalidation ->
+        {
+            if (invalidation.isFlush()) this.clear();
+            else this.invalidateSchedule((String) invalidation.getKey());
+        });
+    }
+
+    /**
+     * retrieves the channels a schedule's announcement should be sent to
+     * @param guild (Guild) the schedule's guild
+     * @param cId (String) ID of the schedule
+     * @param kind (Kind) the announcement
+     * @return (long[]) channel IDs, empty if the announcement has no valid target
+     */
+    public long[] route(Guild guild, String cId, Kind kind)
+    {
+        GuildRoutes routes = this.guilds.computeIfAbsent(guild.getIdLong(), key -> new GuildRoutes());
+        long[][] table = routes.schedules.get(cId);
+        if (table == null)
+        {
+            long gen = this.generation.get();
+            table = new long[Kind.values().length][];
+            table[Kind.START.ordinal()] = this.resolve(guild, routes, Main.getScheduleManager().getStartAnnounceChan(cId));
+            table[Kind.END.ordinal()] = this.resolve(guild, routes, Main.getScheduleManager().getEndAnnounceChan(cId));
+            table[Kind.REMINDER.ordinal()] = this.resolve(guild, routes, Main.getScheduleManager().getReminderChan(cId));
+
+            // do not keep routes resolved from settings which were changed while resolving
+            if (gen == this.generation.get())
+            {
+                this.owners.put(cId, guild.getIdLong());
+                routes.schedules.put(cId, table);
+            }
+        }
+        return table[kind.ordinal()];
+    }
+
+    /**
+     * retrieves the channels an event specific announcement should be sent to
+     * @param guild (Guild) the event's guild
+     * @param target (String) channel ID or channel name
+     * @return (long[]) channel IDs, empty if the target is not valid
+     */
+    public long[] route(Guild guild, String target)
+    {
+        return this.resolve(guild, this.guilds.computeIfAbsent(guild.getIdLong(), key -> new GuildRoutes()), target);
+    }
+
+    /**
+     * drops the routes of a guild, should be used when the guild's channels change
+     * @param guildId (long) ID of the guild
+     */
+    public void invalidateGuild(long guildId)
+    {
+        this.generation.incrementAndGet();
+        this.guilds.remove(guildId);
+    }
+
+    /**
+     * drops the routes of a schedule, should be used when the schedule's announcement channels change
+     * @param cId (String) ID of the schedule
+     */
+    public void invalidateSchedule(String cId)
+    {
+        this.generation.incrementAndGet();
+        Long guildId = this.owners.remove(cId);
+        GuildRoutes routes = guildId == null ? null : this.guilds.get(guildId);
+        if (routes != null)
+        {
+            routes.schedules.remove(cId);
+        }
+    }
+
+    private void clear()
+    {
+        this.generation.incrementAndGet();
+        this.guilds.clear();
+        this.owners.clear();
+    }
+
+    /**
+     * resolves a target to channels, an all digit target is treated as a channel ID
+     * and otherwise (or if no such channel exists) as a channel name
+     */
+    private long[] resolve(Guild guild, GuildRoutes routes, String target)
+    {
+        if (target == null || target.isEmpty()) return NONE;
+
+        long[] channels = routes.targets.get(target);
+        if (channels != null) return channels;
+
+        long gen = this.generation.get();
+        channels = NONE;
+        if (SNOWFLAKE.matcher(target).matches())
+        {
+            TextChannel channel = null;
+            try
+            {
+                channel = guild.getTextChannelById(target);
+            }
+            catch (NumberFormatException ignored)
+            { /* too large to be a snowflake */ }
+            if (channel != null) channels = new long[]{channel.getIdLong()};
+        }
+        if (channels.length == 0)
+        {
+            List<TextChannel> named = guild.getTextChannelsByName(target, true);
+            channels = new long[named.size()];
+            for (int i=0; i<named.size(); i++)
+            {
+                channels[i] = named.get(i).getIdLong();
+            }
+        }
+
+        if (gen == this.generation.get())
+        {
+            routes.targets.put(target, channels);
+        }
+        return channels;
+    }
+
+    /**
+     * resolved routes of a single guild
+     */
+    private static class GuildRoutes
+    {
+        final Map<String, long[][]> schedules = new ConcurrentHashMap<>();  // schedule ID -> channels by kind
+        final Map<String, long[]> targets = new ConcurrentHashMap<>();      // target -> channels
+    }
+}
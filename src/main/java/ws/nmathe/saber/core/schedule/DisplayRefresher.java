@@ -0,0 +1,278 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.exceptions.PermissionException;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+
+/**
+ * Refreshes event displays at the moment their timer text changes.
+ * Every time an event is rendered the renderer reports when the rendered timers will next change, and the event's
+ * refresh is queued for exactly that instant, so displays are only edited when their text actually changes.
+ * When a shard becomes ready each of its events is refreshed once (spread over a few minutes), as displays may
+ * have gone stale while the shard was unavailable, after which the refreshes are self-scheduling.
+ * Events which are unchanged since the shard's last checkpoint (see {@link SchedulerCheckpoint}) and whose
+ * timers have not changed since are not refreshed, their next refresh is queued instead.
+ */
+class DisplayRefresher
+{
+    private static final int BATCH_SIZE = 500;                                  // guild IDs per query
+    private static final long INITIAL_SPREAD = TimeUnit.MINUTES.toMillis(10);   // time to refresh a ready shard over
+
+    private final TreeMap<Long, Set<Integer>> due = new TreeMap<>();    // guarded by this
+    private final Map<Integer, Long> scheduled = new HashMap<>();      // guarded by this
+    private final Map<Integer, long[]> rendered = new HashMap<>();     // guild ID and fingerprint, guarded by this
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2);
+
+    DisplayRefresher()
+    {
+        Thread dispatcher = new Thread(this::dispatch, "display-refresher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * queues the refresh of an event, replacing any refresh which was queued before
+     * @param id (Integer) event ID
+     * @param at (long) epoch millisecond to refresh at, Long.MAX_VALUE to not refresh
+     */
+    synchronized void schedule(Integer id, long at)
+    {
+        this.cancel(id);
+        if (at == Long.MAX_VALUE) return;
+
+        this.scheduled.put(id, at);
+        this.due.computeIfAbsent(at, key -> new HashSet<>()).add(id);
+        if (this.due.firstKey() == at) this.notifyAll();
+    }
+
+    /**
+     * records that an event has been rendered and queues its refresh for when its timers next change
+     * @param se (ScheduleEntry) the rendered event
+     */
+    synchronized void rendered(ScheduleEntry se)
+    {
+        List<Date> reminders = new ArrayList<>(se.getReminders());
+        reminders.addAll(se.getEndReminders());
+        long fingerprint = fingerprint(se.getId(), se.getMessageId(), se.hasStarted(),
+                se.getStart().toInstant().toEpochMilli(), se.getEnd().toInstant().toEpochMilli(), reminders,
+                Main.getScheduleManager().getStyle(se.getChannelId()));
+
+        this.rendered.put(se.getId(), new long[]{Long.parseLong(se.getGuildId()), fingerprint});
+        this.schedule(se.getId(), MessageGenerator.nextTimerChange(se));
+    }
+
+    /**
+     * @param id (Integer) ID of an event which has been removed
+     */
+    synchronized void remove(Integer id)
+    {
+        this.cancel(id);
+        this.rendered.remove(id);
+    }
+
+    /**
+     * @return (List) the refresh state of every rendered event, for checkpointing
+     */
+    synchronized List<SchedulerCheckpoint.Record> snapshot()
+    {
+        List<SchedulerCheckpoint.Record> records = new ArrayList<>(this.rendered.size());
+        this.rendered.forEach((id, state) ->
+                records.add(new SchedulerCheckpoint.Record(id, state[0],
+                        this.scheduled.getOrDefault(id, Long.MAX_VALUE), state[1])));
+        return records;
+    }
+
+    /**
+     * @param id (Integer) ID of an event which no longer needs refreshing
+     */
+    synchronized void cancel(Integer id)
+    {
+        Long at = this.scheduled.remove(id);
+        if (at == null) return;
+        Set<Integer> ids = this.due.get(at);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) this.due.remove(at);
+    }
+
+    /**
+     * queues a refresh for every event of a shard which has just become ready,
+     * or only the next refresh of events which are unchanged since the shard's last checkpoint
+     * @param shard (JDA) the shard
+     */
+    @SuppressWarnings("unchecked")
+    void plan(JDA shard)
+    {
+        int shardId = shard.getShardInfo() == null ? 0 : shard.getShardInfo().getShardId();
+        Map<Integer, SchedulerCheckpoint.Record> checkpoint = SchedulerCheckpoint.read(shardId);
+
+        long now = System.currentTimeMillis();
+        List<Guild> guilds = shard.getGuilds();
+        List<Integer> ids = new ArrayList<>();
+        List<Long> changes = new ArrayList<>();
+        int unchanged = 0;
+        for (int i = 0; i < guilds.size(); i += BATCH_SIZE)
+        {
+            List<String> guildIds = new ArrayList<>();
+            for (Guild guild : guilds.subList(i, Math.min(i + BATCH_SIZE, guilds.size())))
+            {
+                guildIds.add(guild.getId());
+            }
+            for (Document document : Main.getDBDriver().getEventCollection()
+                    .find(in("guildId", guildIds))
+                    .projection(fields(include("_id", "guildId", "channelId", "messageId", "start", "end",
+                            "hasStarted", "reminders", "end_reminders"))))
+            {
+                List<Date> reminders = new ArrayList<>();
+                if (document.get("reminders") != null) reminders.addAll((List<Date>) document.get("reminders"));
+                if (document.get("end_reminders") != null) reminders.addAll((List<Date>) document.get("end_reminders"));
+                // client rendered displays never go stale
+                String style = Main.getScheduleManager().getStyle(document.getString("channelId"));
+                if (style.equalsIgnoreCase("timestamp")) continue;
+
+                Integer id = document.getInteger("_id");
+                boolean started = document.getBoolean("hasStarted", false);
+                Date start = document.getDate("start");
+                Date end = document.getDate("end");
+                long change = MessageGenerator.nextTimerChange(style, started,
+                        ZonedDateTime.ofInstant(start.toInstant(), ZoneId.systemDefault()),
+                        ZonedDateTime.ofInstant(end.toInstant(), ZoneId.systemDefault()),
+                        reminders);
+
+                // the display is still current if the event is as it was last rendered
+                // and its timers were not due to change since the checkpoint was written
+                SchedulerCheckpoint.Record record = checkpoint.get(id);
+                long fingerprint = fingerprint(id, document.getString("messageId"), started,
+                        start.getTime(), end.getTime(), reminders, style);
+                if (record != null && record.fingerprint == fingerprint && record.nextRefresh > now)
+                {
+                    synchronized (this)
+                    {
+                        this.rendered.put(id, new long[]{record.guildId, fingerprint});
+                        this.schedule(id, change);
+                    }
+                    unchanged++;
+                    continue;
+                }
+
+                ids.add(id);
+                changes.add(change);
+            }
+        }
+
+        // refresh everything else once, evenly spread, unless the text changes sooner anyway
+        for (int i = 0; i < ids.size(); i++)
+        {
+            long spread = now + (INITIAL_SPREAD * i) / ids.size();
+            this.schedule(ids.get(i), Math.min(spread, changes.get(i)));
+        }
+        Logging.info(this.getClass(), "Queued display refreshes for " + ids.size() + " events of shard " +
+                shardId + " (" + unchanged + " unchanged since the last checkpoint).");
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the event state an event's display timers are rendered from
+     */
+    private static long fingerprint(Integer id, String messageId, boolean started, long start, long end,
+                                    List<Date> reminders, String style)
+    {
+        long[] times = new long[reminders.size()];
+        for (int i = 0; i < times.length; i++) times[i] = reminders.get(i).getTime();
+        Arrays.sort(times);
+
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, id);
+        hash = mix(hash, messageId == null ? 0 : messageId.hashCode());
+        hash = mix(hash, started ? 1 : 0);
+        hash = mix(hash, start);
+        hash = mix(hash, end);
+        for (long time : times) hash = mix(hash, time);
+        return mix(hash, style.toLowerCase().hashCode());
+    }
+
+    private static long mix(long hash, long value)
+    {
+        for (int i = 0; i < 8; i++)
+        {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void dispatch()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            List<Integer> ready = new ArrayList<>();
+            synchronized (this)
+            {
+                try
+                {
+                    long now = System.currentTimeMillis();
+                    while (this.due.isEmpty() || this.due.firstKey() > now)
+                    {
+                        this.wait(this.due.isEmpty() ? 0 : this.due.firstKey() - now);
+                        now = System.currentTimeMillis();
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+
+                long now = System.currentTimeMillis();
+                while (!this.due.isEmpty() && this.due.firstKey() <= now)
+                {
+                    for (Integer id : this.due.pollFirstEntry().getValue())
+                    {
+                        this.scheduled.remove(id);
+                        ready.add(id);
+                    }
+                }
+            }
+
+            for (Integer id : ready)
+            {
+                this.refreshExecutor.execute(() -> this.refresh(id));
+            }
+        }
+    }
+
+    /**
+     * re-renders an event's display, which queues its next refresh
+     */
+    private void refresh(Integer id)
+    {
+        try
+        {
+            ScheduleEntry se = Main.getEntryManager().getEntry(id);
+            if (se == null) return;
+
+            // events of disconnected shards are planned again when the shard is ready
+            JDA jda = Main.getShardManager().getJDA(se.getGuildId());
+            if (jda == null || !jda.getStatus().equals(JDA.Status.CONNECTED)) return;
+
+            se.reloadDisplay();
+        }
+        catch (PermissionException ignored)
+        {/* dont care */}
+        catch (Exception e)
+        {
+            Logging.warn(this.getClass(), "Error occurred while updating event timer.");
+            Logging.exception(this.getClass(), e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ws.nmathe.saber.core.schedule;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.*;
+
+import static com.mongodb.client.model.Updates.set;
+import static com.mongodb.client.model.Updates.unset;
+
+/**
+ * helpers for writing only the changed fields of an event document
+ * documents are compared as detached copies, maps are compared key by key so that changes to different
+ * keys of the same map (such as two rsvp groups) do not overwrite each other
+ */
+class EntryDiff
+{
+    private EntryDiff() {}
+
+    /**
+     * creates a deep copy of a document which shares no mutable state with the original,
+     * nested documents are copied as maps
+     * @param document (Document) document to copy
+     * @return (Document) detached copy
+     */
+    static Document copy(Document document)
+    {
+        Document copy = new Document();
+        for (Map.Entry<String, Object> entry : document.entrySet())
+        {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value)
+    {
+        if (value instanceof Map)
+        {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet())
+            {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Collection)
+        {
+            List<Object> copy = new ArrayList<>();
+            for (Object element : (Collection<Object>) value)
+            {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        }
+        if (value instanceof Date)
+        {
+            return new Date(((Date) value).getTime());
+        }
+        return value;
+    }
+
+    /**
+     * builds the $set/$unset updates which turn the base document into the current document,
+     * fields which only exist in the base document are left untouched
+     * @param base (Document) document as stored in the database
+     * @param current (Document) document as it should be stored
+     * @return (List) updates, empty if nothing has changed
+     */
+    static List<Bson> diff(Document base, Document current)
+    {
+        List<Bson> updates = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : current.entrySet())
+        {
+            if (entry.getKey().equals("_id")) continue;
+            diff(entry.getKey(), base.get(entry.getKey()), entry.getValue(), updates);
+        }
+        return updates;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void diff(String path, Object base, Object current, List<Bson> updates)
+    {
+        if (Objects.equals(base, current)) return;
+        if (base instanceof Map && current instanceof Map
+                && safeKeys((Map<String, Object>) base) && safeKeys((Map<String, Object>) current))
+        {
+            Set<String> keys = new LinkedHashSet<>(((Map<String, Object>) base).keySet());
+            keys.addAll(((Map<String, Object>) current).keySet());
+            for (String key : keys)
+            {
+                diff(path + "." + key, ((Map) base).get(key), ((Map) current).get(key), updates);
+            }
+        }
+        else if (current == null)
+        {
+            updates.add(unset(path));
+        }
+        else
+        {
+            updates.add(set(path, current));
+        }
+    }
+
+    /**
+     * three-way merges the fields of the current document with the latest stored document,
+     * changes made by either side since the base are kept, lists (such as rsvp members) are merged by element
+     * and where both sides changed the same value the current document wins
+     * @param base (Document) document both sides started from
+     * @param current (Document) this writer's document
+     * @param latest (Document) document as now stored in the database
+     * @return (Document) merged document
+     */
+    static Document merge(Document base, Document current, Document latest)
+    {
+        Document merged = new Document();
+        for (Map.Entry<String, Object> entry : current.entrySet())
+        {
+            String key = entry.getKey();
+            merged.put(key, merge(base.get(key), entry.getValue(), latest.get(key)));
+        }
+        return merged;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object merge(Object base, Object ours, Object theirs)
+    {
+        if (Objects.equals(ours, base)) return theirs;
+        if (Objects.equals(theirs, base)) return ours;
+
+        if (ours instanceof Map && theirs instanceof Map)
+        {
+            Map<String, Object> baseMap = base instanceof Map ? (Map<String, Object>) base : Collections.emptyMap();
+            Map<String, Object> merged = new LinkedHashMap<>();
+            Set<String> keys = new LinkedHashSet<>(((Map<String, Object>) theirs).keySet());
+            keys.addAll(((Map<String, Object>) ours).keySet());
+            for (String key : keys)
+            {
+                Object baseValue = baseMap.get(key);
+                Object ourValue = ((Map) ours).get(key);
+                Object theirValue = ((Map) theirs).get(key);
+                boolean ourRemoval = baseMap.containsKey(key) && !((Map) ours).containsKey(key);
+                boolean theirRemoval = baseMap.containsKey(key) && !((Map) theirs).containsKey(key);
+                if (ourRemoval || (theirRemoval && Objects.equals(ourValue, baseValue))) continue;
+                merged.put(key, merge(baseValue, ourValue, theirValue));
+            }
+            return merged;
+        }
+        if (ours instanceof List && theirs instanceof List)
+        {
+            List<Object> baseList = base instanceof List ? (List<Object>) base : Collections.emptyList();
+            List<Object> merged = new ArrayList<>((List<Object>) theirs);
+            for (Object element : baseList)
+            {
+                if (!((List) ours).contains(element)) merged.remove(element);
+            }
+            for (Object element : (List<Object>) ours)
+            {
+                if (!baseList.contains(element) && !merged.contains(element)) merged.add(element);
+            }
+            return merged;
+        }
+        return ours;
+    }
+
+    /**
+     * map keys are only used as field paths if they cannot be mistaken for path separators or operators
+     */
+    private static boolean safeKeys(Map<String, Object> map)
+    {
+        for (String key : map.keySet())
+        {
+            if (key.isEmpty() || key.contains(".") || key.startsWith("$")) return false;
+        }
+        return true;
+    }
+}
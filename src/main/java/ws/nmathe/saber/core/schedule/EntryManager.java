@@ -1,8 +1,7 @@
 package ws.nmathe.saber.core.schedule;
 
 import com.mongodb.MongoException;
-import com.mongodb.client.MongoIterable;
-import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
 import com.mongodb.client.result.UpdateResult;
 import com.vdurmont.emoji.EmojiManager;
 import net.dv8tion.jda.api.JDA;
@@ -17,11 +16,17 @@ import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.pullAll;
 import static com.mongodb.client.model.Updates.set;
 
 
@@ -34,7 +39,13 @@ import static com.mongodb.client.model.Updates.set;
 public class EntryManager
 {
     private Random generator;
-    public enum type { PROCESS, UPDATE1, UPDATE2, UPDATE3 }
+    private final EntryWriter writer = new EntryWriter();
+    private final EventCatalog catalog = new EventCatalog();
+    private final DisplayRefresher refresher = new DisplayRefresher();
+    public enum type { PROCESS, EXPIRE }
+
+    // plans the display refreshes of shards as they become ready
+    private static final ExecutorService planExecutor = Executors.newSingleThreadExecutor();
 
     /** construct EntryManager and seed random from OS random source */
     public EntryManager()
@@ -44,7 +55,7 @@ public class EntryManager
 
     /**
      * creates the scheduledExecutor thread pool and starts schedule timers which
-     * check for expired entry timers and adjust the message display timer
+     * check for expired entry timers and purge expiring events
      */
     public void init()
     {
@@ -54,20 +65,63 @@ public class EntryManager
                 new EntryProcessor(type.PROCESS),
                 15, 15, TimeUnit.SECONDS);
 
-        // scheduler for threads to adjust entry display timers
-        ScheduledExecutorService updateDisplayScheduler = Executors.newSingleThreadScheduledExecutor();
-        // updates events with times >24h
-        updateDisplayScheduler.scheduleWithFixedDelay(
-                new EntryProcessor(type.UPDATE3),
-                1, 1, TimeUnit.HOURS);
-        // updates events with times >1 hour (but <24h)
-        updateDisplayScheduler.scheduleWithFixedDelay(
-                new EntryProcessor(type.UPDATE2),
+        /* thread to purge expiring events */
+        ScheduledExecutorService expireScheduler = Executors.newSingleThreadScheduledExecutor();
+        expireScheduler.scheduleWithFixedDelay(
+                new EntryProcessor(type.EXPIRE),
                 2, 2, TimeUnit.MINUTES);
-        // update events with times <1 hour
-        updateDisplayScheduler.scheduleWithFixedDelay(
-                new EntryProcessor(type.UPDATE1),
-                1, 1, TimeUnit.MINUTES);
+
+        /* checkpoint the display refresh state for warm restarts */
+        SchedulerCheckpoint.start(this.refresher);
+    }
+
+    /**
+     * recovers the backlog of events which became overdue while a shard was unavailable,
+     * should be used when a shard becomes ready
+     * @param shard (JDA) the ready shard
+     */
+    public void recover(JDA shard)
+    {
+        RecoveryPlanner.recover(shard);
+    }
+
+    /**
+     * warms the caches of a shard which has just become ready, used by the recovery planner before it
+     * processes the shard's backlog, then plans the refresh of the shard's displays
+     * @param shard (JDA) the ready shard
+     */
+    void warm(JDA shard)
+    {
+        ShardWarmup.warm(shard, this.catalog);
+        planExecutor.execute(() -> this.refresher.plan(shard));
+    }
+
+    /**
+     * @param shardId (int) shard ID
+     * @return (String) summary of the shard's latest cache warm-up
+     */
+    public String getWarmup(int shardId)
+    {
+        ShardWarmup warmup = ShardWarmup.latest(shardId);
+        if (warmup == null) return "none";
+        return warmup.millis + "ms (" + warmup.guilds + " guilds, " + warmup.schedules + " schedules, " +
+                warmup.events + " events)";
+    }
+
+    /**
+     * @return (int) number of event actions which are queued or running
+     */
+    public int getPendingActions()
+    {
+        return EntryProcessor.getPendingCount();
+    }
+
+    /**
+     * @return (Map) guild ID mapped to the time (ms) the guild's oldest unfinished event action has been waiting
+     */
+    public Map<String, Long> getActionLag()
+    {
+        return EntryProcessor.getLag();
     }
 
     /**
@@ -156,9 +210,13 @@ public class EntryManager
                                 .append("guildId", se.getGuildId())
                                 .append("location", se.getLocation())
                                 .append("description", se.getDescription())
-                                .append("color", se.getColor());
+                                .append("color", se.getColor())
+                                .append("version", 0L);
 
                 Main.getDBDriver().getEventCollection().insertOne(entryDocument);
+                this.catalog.put(entryDocument);
+                this.refresher.rendered(se);
+                this.adjustEventCount(se.getGuildId(), se.getChannelId(), 1);
 
                 // auto-sort the schedule if configured
                 autoSort(sort, channelId);
@@ -180,6 +238,49 @@ public class EntryManager
      * @return true if successful, otherwise false
      */
     public boolean updateEntry(ScheduleEntry se, boolean sort)
+    {
+        try
+        {
+            // write the fields which have changed
+            EntryWriter.Result result = this.writer.write(se);
+            this.catalog.invalidate(se.getId());
+            if (result == EntryWriter.Result.FAILED)
+            {
+                Logging.warn(this.getClass(), "Attempt to update '"+se.getTitle()+"' failed!");
+                return false; // return false, might result in skipped announcement or other issues
+            }
+
+            // update the event message with the information changes (if any)
+            // this may (is) over-aggressive, however it is convenient and easier to manage
+            // (ie. avoid updating the display in other code sections)
+            if (result == EntryWriter.Result.MERGED)
+            {   // the entry object does not include the other writer's changes
+                this.reloadEntry(se.getId());
+            }
+            else
+            {
+                this.catalog.put(this.toDocument(se));
+                se.reloadDisplay();
+            }
+
+            // auto-sort the schedule if configured
+            // may be necessary if the start time was changed
+            autoSort(sort, se.getChannelId());
+            return true;
+        }
+        catch(Exception e)
+        {
+            Logging.exception(EntryManager.class, e);
+            return false;
+        }
+    }
+
+    /**
+     * builds the database document of an event
+     * @param se (ScheduleEntry) the event
+     * @return (Document) full event document
+     */
+    Document toDocument(ScheduleEntry se)
     {
         // process expiration date
         Date expire = null;
@@ -195,70 +296,71 @@ public class EntryManager
             deadline = Date.from(se.getDeadline().toInstant());
         }
 
-        // update message display
-        Date finalExpire = expire;
-        Date finalDeadline = deadline;
+        return new Document("_id", se.getId())
+                .append("title", se.getTitle())
+                .append("start", Date.from(se.getStart().toInstant()))
+                .append("end", Date.from(se.getEnd().toInstant()))
+                .append("comments", se.getComments())
+                .append("recurrence", se.getRepeat())
+                .append("reminders", se.getReminders())
+                .append("end_reminders", se.getEndReminders())
+                .append("url", se.getTitleUrl())
+                .append("hasStarted", se.hasStarted())
+                .append("messageId", se.getMessageId())
+                .append("channelId", se.getChannelId())
+                .append("googleId", se.getGoogleId())
+                .append("rsvp_members", se.getRsvpMembers())
+                .append("rsvp_limits", se.getRsvpLimits())
+                .append("start_disabled", se.isQuietStart())
+                .append("end_disabled", se.isQuietEnd())
+                .append("reminders_disabled", se.isQuietRemind())
+                .append("expire", expire)
+                .append("orig_start", Date.from(se.getRecurrence().getOriginalStart().toInstant()))
+                .append("count", se.getRecurrence().getCount())
+                .append("image", se.getImageUrl())
+                .append("thumbnail", se.getThumbnailUrl())
+                .append("deadline", deadline)
+                .append("guildId", se.getGuildId())
+                .append("announcements", new ArrayList<>(new TreeSet<>(se.getAnnouncements())))
+                .append("announcement_dates", se.getAnnouncementDates())
+                .append("announcement_times", se.getAnnouncementTimes())
+                .append("announcement_messages", se.getAnnouncementMessages())
+                .append("announcement_targets", se.getAnnouncementTargets())
+                .append("location", se.getLocation())
+                .append("description", se.getDescription())
+                .append("color", se.getColor());
+    }
 
-        try
+    /**
+     * removes members from the rsvp groups of an event using a single update,
+     * the entry object is updated to match and its display is reloaded
+     * @param se (ScheduleEntry) the event
+     * @param members (Map) rsvp group name mapped to the members to remove from that group
+     */
+    public void removeRsvpMembers(ScheduleEntry se, Map<String, ? extends Collection<String>> members)
+    {
+        List<Bson> updates = new ArrayList<>();
+        for (Map.Entry<String, ? extends Collection<String>> group : members.entrySet())
         {
-            // replace whole document
-            Document entryDocument =
-                    new Document("_id", se.getId())
-                            .append("title", se.getTitle())
-                            .append("start", Date.from(se.getStart().toInstant()))
-                            .append("end", Date.from(se.getEnd().toInstant()))
-                            .append("comments", se.getComments())
-                            .append("recurrence", se.getRepeat())
-                            .append("reminders", se.getReminders())
-                            .append("end_reminders", se.getEndReminders())
-                            .append("url", se.getTitleUrl())
-                            .append("hasStarted", se.hasStarted())
-                            .append("messageId", se.getMessageId())
-                            .append("channelId", se.getChannelId())
-                            .append("googleId", se.getGoogleId())
-                            .append("rsvp_members", se.getRsvpMembers())
-                            .append("rsvp_limits", se.getRsvpLimits())
-                            .append("start_disabled", se.isQuietStart())
-                            .append("end_disabled", se.isQuietEnd())
-                            .append("reminders_disabled", se.isQuietRemind())
-                            .append("expire", finalExpire)
-                            .append("orig_start", Date.from(se.getRecurrence().getOriginalStart().toInstant()))
-                            .append("count", se.getRecurrence().getCount())
-                            .append("image", se.getImageUrl())
-                            .append("thumbnail", se.getThumbnailUrl())
-                            .append("deadline", finalDeadline)
-                            .append("guildId", se.getGuildId())
-                            .append("announcements", new ArrayList<>(se.getAnnouncements()))
-                            .append("announcement_dates", se.getAnnouncementDates())
-                            .append("announcement_times", se.getAnnouncementTimes())
-                            .append("announcement_messages", se.getAnnouncementMessages())
-                            .append("announcement_targets", se.getAnnouncementTargets())
-                            .append("location", se.getLocation())
-                            .append("description", se.getDescription())
-                            .append("color", se.getColor());
+            if (group.getValue().isEmpty()) continue;
+            updates.add(pullAll("rsvp_members."+group.getKey(), new ArrayList<>(group.getValue())));
 
-            UpdateResult res = Main.getDBDriver().getEventCollection()
-                    .replaceOne(eq("_id", se.getId()), entryDocument);
-            if (!res.wasAcknowledged())
-            {
-                Logging.warn(this.getClass(), "Attempt to update '"+se.getTitle()+"' was unacknowledged!");
-                return false; // return false, might result in skipped announcement or other issues
-            }
+            Set<String> remaining = se.getRsvpMembersOfType(group.getKey());
+            remaining.removeAll(group.getValue());
+            se.setRsvpMembers(group.getKey(), remaining);
+        }
+        if (updates.isEmpty()) return;
 
-            // update the event message with the information changes (if any)
-            // this may (is) over-aggressive, however it is convenient and easier to manage
-            // (ie. avoid updating the display in other code sections)
+        try
+        {
+            updates.add(inc("version", 1));
+            Main.getDBDriver().getEventCollection().updateOne(eq("_id", se.getId()), combine(updates));
+            this.catalog.invalidate(se.getId());
             se.reloadDisplay();
-
-            // auto-sort the schedule if configured
-            // may be necessary if the start time was changed
-            autoSort(sort, se.getChannelId());
-            return true;
         }
         catch(Exception e)
         {
             Logging.exception(EntryManager.class, e);
-            return false;
         }
     }
 
@@ -273,12 +375,13 @@ public class EntryManager
         {
             UpdateResult res = Main.getDBDriver().getEventCollection()
                     // using the 'update many' call seems to work more effectively
-                    .updateMany(eq("_id", se.getId()), set("hasStarted", true));
+                    .updateMany(eq("_id", se.getId()), combine(set("hasStarted", true), inc("version", 1)));
             if (!res.wasAcknowledged())
             {
                 Logging.warn(this.getClass(), "Attempt to update '"+se.getTitle()+"' was unacknowledged!");
                 return false; // might result in skipped announcements or other issues
             }
+            this.catalog.put(this.toDocument(se));
             se.reloadDisplay();
             return true;
         }
@@ -298,29 +401,46 @@ public class EntryManager
      */
     public static void addRSVPReactions
     (Map<String, String> options, String clearEmoji, Message message, ScheduleEntry se)
-    {   // add all RSVP emoji's
+    {
+        for(Emoji emoji : getRSVPEmojis(options, clearEmoji, se))
+        {
+            message.addReaction(emoji).queue();
+        }
+    }
+
+    /**
+     * resolves the reactions which should be present on an event's message
+     * @param options rsvp options of the schedule (emoji -> group)
+     * @param clearEmoji the schedule's clear emoji, empty if none
+     * @param se the event
+     * @return list of emoji, in the order they should be added
+     */
+    static List<Emoji> getRSVPEmojis(Map<String, String> options, String clearEmoji, ScheduleEntry se)
+    {
+        List<Emoji> emojis = new ArrayList<>();
         for(String emoji : options.keySet())
         {   // don't add the reaction for categories with 0 limit
             if (se.getRsvpLimit(options.get(emoji)) != 0)
-                addRSVPReaction(emoji, message);
+                addRSVPEmoji(emoji, emojis);
         }
         // add clear emoji if configured
         if(!clearEmoji.isEmpty())
         {
-            addRSVPReaction(clearEmoji, message);
+            addRSVPEmoji(clearEmoji, emojis);
         }
+        return emojis;
     }
 
     /**
-     * helper to addRSVPReactions(..)
+     * helper to getRSVPEmojis(..)
      * @param emoji string emoticon, or emote ID
-     * @param message message object to react to
+     * @param emojis list to add the resolved emoji to
      */
-    private static void addRSVPReaction(String emoji, Message message)
+    private static void addRSVPEmoji(String emoji, List<Emoji> emojis)
     {
         if (EmojiManager.isEmoji(emoji))
         {
-            message.addReaction(Emoji.fromUnicode(emoji)).queue();
+            emojis.add(Emoji.fromUnicode(emoji));
         }
         else
         {
@@ -330,7 +450,7 @@ public class EntryManager
                 emote = shard.getEmojiById(emoji);
                 if(emote != null)
                 {
-                    message.addReaction(emote).queue();
+                    emojis.add(emote);
                     break;
                 }
             }
@@ -360,15 +480,59 @@ public class EntryManager
     }
 
     /**
-     * removes an entry by id from the db
+     * removes an entry by id from the db and updates the event counters
      * @param entryId (Integer) ID of event entry
      * @return true if the remove was acknowledged (safe), otherwise false
      */
     public boolean removeEntry(Integer entryId)
     {
-        DeleteResult res = Main.getDBDriver().getEventCollection()
-                .deleteMany(eq("_id", entryId));
-        return res.wasAcknowledged();
+        Document document = Main.getDBDriver().getEventCollection()
+                .findOneAndDelete(eq("_id", entryId),
+                        new FindOneAndDeleteOptions().projection(fields(include("guildId", "channelId"))));
+        this.catalog.remove(entryId);
+        this.refresher.remove(entryId);
+        if (document != null)
+        {
+            this.adjustEventCount(document.getString("guildId"), document.getString("channelId"), -1);
+        }
+        return true;
+    }
+
+    /**
+     * adjusts the event counters kept on the schedule and guild documents
+     * counters which have not yet been initialized are left untouched (they are counted on first read)
+     * @param guildId (String) guild ID
+     * @param channelId (String) schedule ID
+     * @param delta (int) number of events added (or removed, if negative)
+     */
+    public void adjustEventCount(String guildId, String channelId, int delta)
+    {
+        Main.getDBDriver().getScheduleCollection()
+                .updateOne(and(eq("_id", channelId), exists("event_count")), inc("event_count", delta));
+        Main.getDBDriver().getGuildCollection()
+                .updateOne(and(eq("_id", guildId), exists("event_count")), inc("event_count", delta));
+    }
+
+    /**
+     * retrieves the number of events on a guild from the guild document's counter
+     * the counter is initialized from the events collection if it does not yet exist
+     * @param gId (String) guild ID
+     * @return (long) number of events
+     */
+    public long getEventCount(String gId)
+    {
+        Document guildDoc = Main.getDBDriver().getGuildCollection()
+                .find(eq("_id", gId))
+                .projection(fields(include("event_count")))
+                .first();
+        if (guildDoc != null && guildDoc.get("event_count") != null)
+        {
+            return ((Number) guildDoc.get("event_count")).longValue();
+        }
+
+        long count = Main.getDBDriver().getEventCollection().count(eq("guildId", gId));
+        Main.getDBDriver().getGuildCollection().updateOne(eq("_id", gId), set("event_count", count));
+        return count;
     }
 
     /**
@@ -410,8 +574,7 @@ public class EntryManager
      */
     public ScheduleEntry getEntry(Integer entryId)
     {
-        Document entryDocument = Main.getDBDriver().getEventCollection()
-                .find(eq("_id", entryId)).first();
+        Document entryDocument = this.catalog.find(entryId);
         if (entryDocument != null)
         {
             return new ScheduleEntry(entryDocument);
@@ -430,8 +593,7 @@ public class EntryManager
      */
     public ScheduleEntry getEntryFromGuild(Integer entryId, String guildId)
     {
-        Document entryDocument = Main.getDBDriver().getEventCollection()
-                .find(and(eq("_id", entryId), eq("guildId",guildId))).first();
+        Document entryDocument = this.catalog.findInGuild(entryId, guildId);
         if (entryDocument != null)
         {
             return new ScheduleEntry(entryDocument);
@@ -442,6 +604,18 @@ public class EntryManager
         }
     }
 
+    /**
+     * Finds the event displayed by a message
+     * @param guildId (String) guild ID of the message
+     * @param messageId (String) message ID
+     * @return (EventEntry) if exists, otherwise null
+     */
+    public ScheduleEntry getEntryFromMessage(String guildId, String messageId)
+    {
+        Document entryDocument = this.catalog.findByMessage(guildId, messageId);
+        return entryDocument == null ? null : new ScheduleEntry(entryDocument);
+    }
+
     /**
      * Retrieves all entries associated with a guild
      * @param guildId snowflake ID of guild
@@ -449,9 +623,9 @@ public class EntryManager
      */
     public Collection<ScheduleEntry> getEntriesFromGuild(String guildId)
     {
-        MongoIterable<ScheduleEntry> entries = Main.getDBDriver().getEventCollection()
-                .find(eq("guildId", guildId)).map(ScheduleEntry::new);
-        return entries.into(new ArrayList<>());
+        Collection<ScheduleEntry> entries = new ArrayList<>();
+        this.catalog.findInGuild(guildId).forEach(document -> entries.add(new ScheduleEntry(document)));
+        return entries;
     }
 
     /**
@@ -461,9 +635,34 @@ public class EntryManager
      */
     public Collection<ScheduleEntry> getEntriesFromChannel(String channelId)
     {
-        MongoIterable<ScheduleEntry> entries = Main.getDBDriver().getEventCollection()
-                .find(eq("channelId", channelId)).map(ScheduleEntry::new);
-        return entries.into(new ArrayList<>());
+        Collection<ScheduleEntry> entries = new ArrayList<>();
+        this.catalog.findInChannel(channelId).forEach(document -> entries.add(new ScheduleEntry(document)));
+        return entries;
+    }
+
+    /**
+     * drops the cataloged events of a guild whose events were deleted
+     * @param guildId (String) guild ID
+     */
+    public void evictGuild(String guildId)
+    {
+        this.catalog.removeGuild(guildId);
+    }
+
+    /**
+     * @return (DisplayRefresher) scheduler of event display refreshes
+     */
+    DisplayRefresher getRefresher()
+    {
+        return this.refresher;
+    }
+
+    /**
+     * @return (EventCatalog) catalog of the events of this process' shards
+     */
+    EventCatalog getCatalog()
+    {
+        return this.catalog;
     }
 
     /**
@@ -473,7 +672,7 @@ public class EntryManager
      */
     public boolean isLimitReached(String gId)
     {
-        long count = Main.getDBDriver().getEventCollection().count(eq("guildId",gId));
+        long count = this.getEventCount(gId);
         return Main.getBotSettingsManager().getMaxEntries() < count;
     }
 }
@@ -5,43 +5,50 @@ import net.dv8tion.jda.api.exceptions.PermissionException;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.database.EventRepository;
 import ws.nmathe.saber.utils.Logging;
 import ws.nmathe.saber.utils.MessageUtilities;
 
-import java.time.Instant;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.*;
-import java.util.function.Consumer;
 
 import static com.mongodb.client.model.Filters.*;
 
 /**
- * Used by the Main scheduler timer, a new thread is executed every minute/5minutes/1hour/1day.
- * processes all entries referenced in the collection passed in, checking the start/end time and updating the
- * "time until" display timers.
- * a thread is spawned for each event operation to avoid one problematic event hanging-up the class
+ * Used by the Main scheduler timer, a new thread is executed every 15 seconds/2 minutes.
+ * processes all entries referenced in the collection passed in, checking the start/end time
+ * and purging expired events.
+ * event actions run on per-guild queues to avoid one problematic event hanging-up the class
  */
 class EntryProcessor implements Runnable
 {
-    // thread pool used to reload displays of events
-    private static ExecutorService timerExecutor = Executors.newCachedThreadPool();
-
-    // thread pool used to process event announcements
-    private static ExecutorService setExecutor = Executors.newFixedThreadPool(10);
+    // per-guild queues used to process event announcements
+    // an event is only ever queued once, which avoids conflicting database updates
+    // (ie. simultaneous remind() and announce() update)
+    private static ActionScheduler actions = new ActionScheduler(10, "event-action", TimeUnit.MINUTES.toMillis(2));
+
+    // a shard is unhealthy when many of its actions overrun their deadline,
+    // and is restarted once it has been unhealthy for several health checks in a row
+    private static final long HEALTH_PERIOD = TimeUnit.MINUTES.toMillis(1);
+    private static final int TIMEOUT_THRESHOLD = 10;
+    private static final int UNHEALTHY_CHECKS = 3;
+    private static final Map<Integer, Integer> unhealthy = new HashMap<>();
+    private static long lastHealthCheck = System.currentTimeMillis();
+
+    // event documents read ahead of those being queued or deleted
+    private static final int WINDOW = 100;
+    // due events are queued on their guild queues as they are read
+    private static final ExecutorService processExecutor = Executors.newSingleThreadExecutor();
+    // expiring events are deleted (from discord and the database) a few at a time
+    private static final ExecutorService expireExecutor = Executors.newFixedThreadPool(4);
 
     private enum ActionType {END, START, REMIND, SPECIAL}
     private EntryManager.type type;
 
-    // simple mechanism to avoid conflicting database updates
-    // (ie. simultaneous remind() and announce() update)
-    private static Set<Integer> processing = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private static Map<Integer, Date> timestamps = new ConcurrentHashMap<>();
-
     /** construct the entry processor with type */
     EntryProcessor(EntryManager.type type)
     {
@@ -59,157 +66,40 @@ class EntryProcessor implements Runnable
             if(type == EntryManager.type.PROCESS)
             {
                 Logging.info(this.getClass(), "Processing entries. . .");
-                Bson query;
-
-                /*
-                 * process any event-specific announcements
-                 */
-                query = lte("announcements", new Date());
-                processEvents(ActionType.SPECIAL, query);
-
-                /*
-                 * process events to end
-                 */
-                query = and(eq("hasStarted",true), lte("end", new Date()));
-                processEvents(ActionType.END, query);
-
-                /*
-                 * process events to start
-                 */
-                query = and(eq("hasStarted",false), lte("start", new Date()));
-                processEvents(ActionType.START, query);
-
-                /*
-                 * process events with reminders
-                 */
-                query = and(
-                            and(eq("hasStarted",false), lte("reminders", new Date())),
-                            gte("start", new Date()));
-                query = or(query,
-                            and(
-                                and(eq("hasStarted",true), lte("end_reminders", new Date())),
-                                gte("end", new Date())));
-                processEvents(ActionType.REMIND, query);
-
-                Logging.info(this.getClass(), "Currently processing "+processing.size()+" events.");
-
-                // exit the bot if any event takes more than a few minutes to process
-                int timeThreshold  = 3;
-                int countThreshold = 30;
-                int count = 0;
-                for (Date value : timestamps.values())
-                {
-                    boolean flagged = value.before(Date.from(Instant.now().minus(timeThreshold, ChronoUnit.MINUTES)));
-                    if (flagged) count += 1;
-                }
-                if (count > countThreshold)
-                {
-                    String txt = "[EXIT] There are "+count+" events that have been in processing for over "+timeThreshold+".";
-                    Logging.warn(this.getClass(), txt);
-                    System.exit(-100);
-                }
+                Date now = new Date();
+
+                // the due events are streamed one query at a time, in order of priority
+                // as an event is only queued once
+                EventRepository events = Main.getDBDriver().getEventRepository();
+                processEvents(ActionType.SPECIAL, events.findAnnouncing(now));
+                processEvents(ActionType.END, events.findEnding(now));
+                processEvents(ActionType.START, events.findStarting(now));
+                processEvents(ActionType.REMIND, events.findReminding(now));
+
+                Map<String, Long> lag = actions.getLag();
+                long maxLag = lag.isEmpty() ? 0 : Collections.max(lag.values());
+                Logging.info(this.getClass(), "Currently processing "+actions.getPendingCount()+" events in "+
+                        lag.size()+" guild queue(s), longest wait "+TimeUnit.MILLISECONDS.toSeconds(maxLag)+"s.");
+
+                // restart shards whose actions keep overrunning their deadline
+                checkHealth();
             }
 
             /*
-             * Updates the 'starts in x minutes' timer on events
+             * purge expiring events
+             * (display timers are refreshed by the display refresher when their text changes)
              */
-            else
+            else if (type == EntryManager.type.EXPIRE)
             {
-                // dummy document query will filter all events
-                // should an invalid level ever be passed in, all entries will be reloaded!
-                Bson query = new Document();
-
-                Logging.info(this.getClass(), "Processing entries: updating timers. . .");
-                if(type == EntryManager.type.UPDATE1)
-                {   // adjust timers for entries starting/ending within the next hour
-                    query = or(
-                            and(
-                                    eq("hasStarted",false),
-                                    and(
-                                            lte("start", Date.from(ZonedDateTime.now().plusHours(1).toInstant())),
-                                            gte("start", Date.from(ZonedDateTime.now().plusMinutes(4).toInstant()))
-                                    )
-                            ),
-                            and(
-                                    eq("hasStarted", true),
-                                    and(
-                                            lte("end", Date.from(ZonedDateTime.now().plusHours(1).toInstant())),
-                                            gte("end", Date.from(ZonedDateTime.now().plusMinutes(4).toInstant()))
-                                    )
-                            )
-                    );
-
-                }
-                if(type == EntryManager.type.UPDATE2)
-                {   // purge expiring events
-                    query = lte("expire", Date.from(ZonedDateTime.now().plusDays(1).toInstant()));
-
-                    //delete message objects
-                    Main.getDBDriver().getEventCollection().find(query)
-                            .forEach((Consumer<? super Document>) document ->
-                    {
-                        MessageUtilities.deleteMsg((new ScheduleEntry(document)).getMessageObject(), null);
-                    });
-
-                    // bulk delete entries from the database
-                    Main.getDBDriver().getEventCollection().deleteMany(query);
-
-                    // adjust timers
-                    query = or(and(
-                            eq("hasStarted",false),
-                            and(
-                                    lte("start", Date.from(ZonedDateTime.now().plusDays(1).toInstant())),
-                                    gte("start", Date.from(ZonedDateTime.now().plusHours(1).toInstant()))
-                            )),
-                            and(
-                                    eq("hasStarted", true),
-                                    and(
-                                            lte("end", Date.from(ZonedDateTime.now().plusDays(1).toInstant())),
-                                            gte("end", Date.from(ZonedDateTime.now().plusHours(1).toInstant()))
-                                    )));
+                Bson query = lte("expire", Date.from(ZonedDateTime.now().plusDays(1).toInstant()));
 
-                }
-                if(type == EntryManager.type.UPDATE3)
-                {   // adjust timers for entries that aren't starting/ending within the next day
-                    query = or(
-                            and(
-                                    eq("hasStarted", false),
-                                    gte("start", Date.from(ZonedDateTime.now().plusDays(1).toInstant()))),
-                            and(
-                                    eq("hasStarted", true),
-                                    gte("end", Date.from(ZonedDateTime.now().plusDays(1).toInstant()))));
-
-                }
-
-                // reload entries based on the appropriate query
-                Main.getDBDriver().getEventCollection().find(query)
-                        .forEach((Consumer<? super Document>) document ->
-                        {
-                            // identify which shard is responsible for the schedule
-                            String guildId = document.getString("guildId");
-                            JDA jda = Main.getShardManager().getJDA(guildId);
-
-                            // if the shard is not connected, do process the event
-                            if (jda == null) return;
-                            if (!jda.getStatus().equals(JDA.Status.CONNECTED)) return;
-
-                            timerExecutor.execute(() ->
-                            {
-                                try
-                                {   // convert to scheduleEntry object and update display
-                                    (new ScheduleEntry(document)).reloadDisplay();
-                                }
-                                catch (PermissionException ignored)
-                                {/* dont care */}
-                                catch(Exception e)
-                                {
-                                    Logging.warn(this.getClass(), "Error occurred while updating event timer.");
-                                    Logging.exception(this.getClass(), e);
-                                }
-                            });
-                        });
-
-                Logging.info(this.getClass(), "Finished updating timers. . .");
+                // delete message objects and remove the entries from the database
+                Main.getDBDriver().stream(Main.getDBDriver().getEventCollection().find(query), expireExecutor, WINDOW,
+                        document ->
+                {
+                    MessageUtilities.deleteMsg((new ScheduleEntry(document)).getMessageObject(), null);
+                    Main.getEntryManager().removeEntry(document.getInteger("_id"));
+                }).join();
             }
         }
         catch(Exception e)
@@ -219,14 +109,14 @@ class EntryProcessor implements Runnable
     }
 
     /**
-     * fills a ActionType given a proper query, helper function to run()
+     * fills a ActionType given the events due for it, helper function to run()
+     * the documents are queued as they are read, and the method returns once all have been queued
      * @param action which ActionType to ActionType the event for
-     * @param query the database query to use
+     * @param documents the event documents
      */
-    private void processEvents(ActionType action, Bson query)
+    private void processEvents(ActionType action, Iterable<Document> documents)
     {
-        Main.getDBDriver().getEventCollection().find(query)
-                .forEach((Consumer<? super Document>) document ->
+        Main.getDBDriver().stream(documents, processExecutor, WINDOW, document ->
                 {
                     // identify which shard is responsible for the schedule
                     String guildId = document.getString("guildId");
@@ -236,48 +126,130 @@ class EntryProcessor implements Runnable
                     if(jda == null) return;
                     if (!jda.getStatus().equals(JDA.Status.CONNECTED)) return;
 
+                    // events of recovering shards are handled by the recovery planner
+                    if (RecoveryPlanner.isRecovering(jda)) return;
+
                     ScheduleEntry se = (new ScheduleEntry(document));
-                    Integer id = se.getId();
-                    if (processing.add(id))
+                    actions.submit(guildId, se.getId(), () ->
                     {
-                        timestamps.put(id, new Date());
-                        setExecutor.submit(() ->
+                        try
                         {
-                            try
+                            switch(action)
                             {
-                                switch(action)
-                                {
-                                    case END:
-                                        se.end();
-                                        break;
-                                    case START:
-                                        se.start();
-                                        break;
-                                    case REMIND:
-                                        se.remind();
-                                        break;
-                                    case SPECIAL:
-                                        se.announce();
-                                        break;
-                                }
+                                case END:
+                                    se.end();
+                                    break;
+                                case START:
+                                    se.start();
+                                    break;
+                                case REMIND:
+                                    se.remind();
+                                    break;
+                                case SPECIAL:
+                                    se.announce();
+                                    break;
                             }
-                            catch (PermissionException e)
-                            {
-                                Logging.warn(this.getClass(),
-                                        "Permission error on '"+se.getTitle()+"' ["+se.getId()+"]: "+e.getMessage());
-                            }
-                            catch (Exception e)
-                            {
-                                Logging.warn(this.getClass(), "Error occurred when processing event action!");
-                                Logging.exception(this.getClass(), e);
-                            }
-                            finally
-                            {
-                                timestamps.remove(id);
-                                processing.remove(id);
-                            }
-                        });
-                    }
-                });
+                        }
+                        catch (CancellationException e)
+                        {
+                            Logging.warn(this.getClass(), "Stopped abandoned action on '"+se.getTitle()+"' ["+se.getId()+"]");
+                        }
+                        catch (PermissionException e)
+                        {
+                            Logging.warn(this.getClass(),
+                                    "Permission error on '"+se.getTitle()+"' ["+se.getId()+"]: "+e.getMessage());
+                        }
+                        catch (Exception e)
+                        {
+                            Logging.warn(this.getClass(), "Error occurred when processing event action!");
+                            Logging.exception(this.getClass(), e);
+                        }
+                    });
+                }).join();
+    }
+
+    /**
+     * counts the actions which overran their deadline on each shard since the last health check, and restarts
+     * a shard through the shard manager once it has been unhealthy for several consecutive checks
+     */
+    private static void checkHealth()
+    {
+        if (System.currentTimeMillis() - lastHealthCheck < HEALTH_PERIOD) return;
+        lastHealthCheck = System.currentTimeMillis();
+
+        Map<Integer, Integer> shardTimeouts = new HashMap<>();
+        actions.drainTimeouts().forEach((guildId, count) ->
+        {
+            JDA jda = Main.getShardManager().getJDA(guildId);
+            if (jda != null) shardTimeouts.merge(getShardId(jda), count, Integer::sum);
+        });
+
+        for (JDA shard : Main.getShardManager().getShards())
+        {
+            Integer shardId = getShardId(shard);
+            int count = shardTimeouts.getOrDefault(shardId, 0);
+            if (count < TIMEOUT_THRESHOLD)
+            {
+                unhealthy.remove(shardId);
+                continue;
+            }
+
+            int checks = unhealthy.merge(shardId, 1, Integer::sum);
+            Logging.warn(EntryProcessor.class, "Shard-" + shardId + " had " + count + " event actions overrun " +
+                    "their deadline [" + checks + "/" + UNHEALTHY_CHECKS + "]");
+            if (checks >= UNHEALTHY_CHECKS)
+            {
+                unhealthy.remove(shardId);
+                try
+                {
+                    Main.getShardManager().restartShard(shardId);
+                }
+                catch (Exception e)
+                {
+                    Logging.warn(EntryProcessor.class, "Failed to restart shard! ["+e.getMessage()+"]");
+                }
+            }
+        }
+    }
+
+    private static Integer getShardId(JDA shard)
+    {
+        return shard.getShardInfo() == null ? 0 : shard.getShardInfo().getShardId();
+    }
+
+    /**
+     * queues an action for an event on the event's guild queue
+     * @param se (ScheduleEntry) the event
+     * @param action (Runnable) the action
+     * @return (CompletableFuture) completes once the action has run, null if the event already has an action queued
+     */
+    static CompletableFuture<Void> submit(ScheduleEntry se, Runnable action)
+    {
+        return actions.submit(se.getGuildId(), se.getId(), action);
+    }
+
+    /**
+     * @param id (Integer) event ID
+     * @return (boolean) true if an action for the event is queued or running
+     */
+    static boolean isPending(Integer id)
+    {
+        return actions.isPending(id);
+    }
+
+    /**
+     * @return (int) number of event actions queued or running
+     */
+    static int getPendingCount()
+    {
+        return actions.getPendingCount();
+    }
+
+    /**
+     * @return (Map) guild ID mapped to the time (ms) the guild's oldest unfinished action has been waiting
+     */
+    static Map<String, Long> getLag()
+    {
+        return actions.getLag();
     }
 }
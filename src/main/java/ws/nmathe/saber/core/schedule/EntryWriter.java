@@ -0,0 +1,259 @@
+package ws.nmathe.saber.core.schedule;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Persists the changes made to events.
+ * Only fields which changed since the event was read are written, and each write is conditional on the event's
+ * version so that concurrent writers are detected; a writer which lost the race merges its changes with the
+ * latest document and tries again.
+ * Writes submitted at about the same time (such as by the actions of one processor tick) are grouped into a
+ * single unordered bulk write. Each update also sets a unique write token, as the outcome of an individual
+ * update cannot be told from the matched count of the bulk write.
+ */
+class EntryWriter
+{
+    /** outcome of a write */
+    enum Result
+    {
+        WRITTEN,    // the event's changes were written
+        MERGED,     // the changes were written after being merged with another writer's changes
+        FAILED      // the event no longer exists or could not be written
+    }
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_BATCH = 500;
+    private static final long LINGER = 20;  // ms to wait for more writes before flushing a batch
+    private static final String TOKEN = "write_token";
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    EntryWriter()
+    {
+        Thread flusher = new Thread(this::flushLoop, "entry-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * writes the changes made to an event since it was read
+     * @param se (ScheduleEntry) the event
+     * @return (Result) outcome
+     */
+    Result write(ScheduleEntry se) throws InterruptedException, ExecutionException
+    {
+        Document current = EntryDiff.copy(Main.getEntryManager().toDocument(se));
+        Document base = se.getPersisted();
+        long version = se.getVersion();
+        if (base == null)
+        {   // the event was not read from the database, write its differences from the stored document
+            Document stored = Main.getDBDriver().getEventCollection().find(eq("_id", se.getId())).first();
+            if (stored == null) return Result.FAILED;
+            base = EntryDiff.copy(stored);
+            version = getVersion(stored);
+        }
+
+        boolean merged = false;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++)
+        {
+            List<Bson> updates = EntryDiff.diff(base, current);
+            if (updates.isEmpty())
+            {   // nothing to write
+                se.setPersisted(current, version);
+                return merged ? Result.MERGED : Result.WRITTEN;
+            }
+
+            updates.add(inc("version", 1));
+            if (this.submit(se.getId(), version, combine(updates)).get())
+            {
+                se.setPersisted(current, version + 1);
+                return merged ? Result.MERGED : Result.WRITTEN;
+            }
+
+            // another writer changed the event since it was read
+            Document latest = Main.getDBDriver().getEventCollection().find(eq("_id", se.getId())).first();
+            if (latest == null) return Result.FAILED;
+            latest = EntryDiff.copy(latest);
+            current = EntryDiff.merge(base, current, latest);
+            base = latest;
+            version = getVersion(latest);
+            merged = true;
+        }
+        Logging.warn(this.getClass(), "Gave up writing event [" + se.getId() + "] after " + MAX_ATTEMPTS + " conflicting writes.");
+        return Result.FAILED;
+    }
+
+    /**
+     * @param id (Integer) event ID
+     * @param version (long) version the change was based on
+     * @return (Bson) filter which only matches the event if it is still at the version
+     */
+    static Bson versionFilter(Integer id, long version)
+    {
+        return version == 0 ?
+                and(eq("_id", id), or(exists("version", false), eq("version", 0))) :
+                and(eq("_id", id), eq("version", version));
+    }
+
+    /**
+     * @return (long) version of an event document, documents written before versioning are version 0
+     */
+    static long getVersion(Document document)
+    {
+        Object version = document.get("version");
+        return version instanceof Number ? ((Number) version).longValue() : 0;
+    }
+
+    private CompletableFuture<Boolean> submit(Integer id, long version, Bson update)
+    {
+        Pending pending = new Pending(id, version, update);
+        this.queue.add(pending);
+        return pending.result;
+    }
+
+    private void flushLoop()
+    {
+        List<Pending> deferred = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted())
+        {
+            List<Pending> batch = new ArrayList<>();
+            try
+            {
+                Set<Integer> ids = new HashSet<>();
+                List<Pending> candidates = new ArrayList<>(deferred);
+                deferred.clear();
+                if (candidates.isEmpty())
+                {
+                    candidates.add(this.queue.take());
+                }
+
+                // wait briefly so that writes made at the same moment share one bulk write
+                long deadline = System.currentTimeMillis() + LINGER;
+                while (candidates.size() < MAX_BATCH)
+                {
+                    Pending next = this.queue.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    candidates.add(next);
+                }
+
+                // a second write to the same event waits for the next batch, as its outcome depends on the first
+                for (Pending pending : candidates)
+                {
+                    if (ids.add(pending.id)) batch.add(pending);
+                    else deferred.add(pending);
+                }
+                this.flush(batch);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+                for (Pending pending : batch)
+                {
+                    pending.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch)
+    {
+        List<WriteModel<Document>> models = new ArrayList<>();
+        for (Pending pending : batch)
+        {
+            models.add(new UpdateOneModel<>(versionFilter(pending.id, pending.version), pending.update));
+        }
+
+        BulkWriteResult result;
+        Map<Integer, BulkWriteError> errors = new HashMap<>();
+        try
+        {
+            result = Main.getDBDriver().getEventCollection().bulkWrite(models, new BulkWriteOptions().ordered(false));
+        }
+        catch (MongoBulkWriteException e)
+        {
+            result = e.getWriteResult();
+            for (BulkWriteError error : e.getWriteErrors())
+            {
+                errors.put(error.getIndex(), error);
+            }
+        }
+
+        // when some updates did not match, the write tokens show which ones were applied
+        // (the version alone does not, another writer may have moved the event to the same version)
+        Map<Integer, Object> tokens = new HashMap<>();
+        boolean unmatched = result.getMatchedCount() + errors.size() < batch.size();
+        if (unmatched)
+        {
+            List<Integer> ids = new ArrayList<>();
+            for (Pending pending : batch)
+            {
+                ids.add(pending.id);
+            }
+            for (Document document : Main.getDBDriver().getEventCollection()
+                    .find(in("_id", ids)).projection(fields(include("_id", TOKEN))))
+            {
+                tokens.put(document.getInteger("_id"), document.get(TOKEN));
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++)
+        {
+            Pending pending = batch.get(i);
+            if (errors.containsKey(i))
+            {
+                pending.result.completeExceptionally(new IllegalStateException(errors.get(i).getMessage()));
+            }
+            else if (!unmatched)
+            {
+                pending.result.complete(true);
+            }
+            else
+            {   // a token overwritten by a later writer is reported as a conflict, and the merge re-applies the change
+                pending.result.complete(pending.token.equals(tokens.get(pending.id)));
+            }
+        }
+    }
+
+    /**
+     * a write waiting to be flushed
+     */
+    private static class Pending
+    {
+        final Integer id;
+        final long version;
+        final ObjectId token = new ObjectId();
+        final Bson update;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Pending(Integer id, long version, Bson update)
+        {
+            this.id = id;
+            this.version = version;
+            this.update = combine(update, set(TOKEN, this.token));
+        }
+    }
+}
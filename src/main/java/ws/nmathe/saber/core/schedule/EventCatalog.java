@@ -0,0 +1,761 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.TextChannel;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.database.Invalidation;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.*;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+
+/**
+ * In-process catalog of the events of the guilds on this process' shards.
+ * Events are kept as rows of primitive columns (IDs and epoch-second times) with hash indexes by event ID and
+ * message ID, and per channel and per guild row chains, which answers "which events" without the database.
+ * The full documents needed to build ScheduleEntry objects are loaded lazily and only a bounded number are kept.
+ * The catalog is maintained write-through by the entry manager (a shard's guilds are only written to by the process
+ * running that shard), and cached documents are dropped on invalidations of the events collection.
+ * Lookups for guilds whose shard has not been loaded fall back to the database.
+ */
+class EventCatalog
+{
+    private static final String[] COLUMNS = {"_id", "guildId", "channelId", "messageId", "start", "end", "hasStarted"};
+    private static final int LOAD_BATCH = 500;              // guild IDs per load query
+    private static final int DOCUMENT_CACHE_SIZE = 5000;    // full documents kept in memory
+    private static final int NONE = -1;
+
+    private static final byte STARTED = 1;
+    private static final byte STALE = 2;                    // the row may no longer match the database
+
+    // columns, indexed by row
+    private int[] ids = new int[1024];
+    private long[] guilds = new long[1024];
+    private long[] channels = new long[1024];
+    private long[] messages = new long[1024];
+    private long[] starts = new long[1024];
+    private long[] ends = new long[1024];
+    private byte[] flags = new byte[1024];
+    private int[] stamps = new int[1024];           // changed by every write, guards lazily loaded documents
+    private int[] nextInChannel = new int[1024];
+    private int[] nextInGuild = new int[1024];      // also links the free rows
+
+    private int rows = 0;               // rows in use or freed
+    private int freeRow = NONE;
+    private int count = 0;
+
+    // indexes
+    private final LongIntMap byId = new LongIntMap();
+    private final LongIntMap byMessage = new LongIntMap();
+    private final LongIntMap channelHeads = new LongIntMap();
+    private final LongIntMap guildHeads = new LongIntMap();
+
+    // shards whose events are fully loaded
+    private final Set<Integer> loadedShards = new HashSet<>();
+    private int loading = 0;
+    private final Set<Integer> removedWhileLoading = new HashSet<>();
+
+    // lazily loaded full documents, by event ID
+    private final Map<Integer, Loaded> documents = new LinkedHashMap<Integer, Loaded>(256, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Loaded> eldest)
+        {
+            return this.size() > DOCUMENT_CACHE_SIZE;
+        }
+    };
+
+    // lazily loaded schedule IDs, by guild
+    private final Map<Long, List<String>> schedules = new HashMap<>();
+
+    EventCatalog()
+    {
+        Main.getDBDriver().subscribe(Invalidation.Source.EVENTS, invalidation ->
+        {
+            if (invalidation.isFlush()) this.invalidateAll();
+            else if (invalidation.getKey() instanceof Integer) this.invalidate((Integer) invalidation.getKey());
+        });
+        Main.getDBDriver().subscribe(Invalidation.Source.SCHEDULES, invalidation -> this.invalidateSchedules());
+    }
+
+    /**
+     * loads the events of a shard's guilds, replacing any rows the shard's guilds already had
+     * @param shard (JDA) the shard
+     * @return (int) number of events loaded
+     */
+    int load(JDA shard)
+    {
+        int shardId = getShardId(shard);
+        List<Guild> shardGuilds = shard.getGuilds();
+        synchronized (this)
+        {
+            this.loadedShards.remove(shardId);
+            for (Guild guild : shardGuilds)
+            {
+                this.removeChain(guild.getIdLong(), true);
+            }
+            this.loading++;
+        }
+
+        long begin = System.currentTimeMillis();
+        int loaded = 0;
+        try
+        {
+            for (int i = 0; i < shardGuilds.size(); i += LOAD_BATCH)
+            {
+                List<String> ids = new ArrayList<>();
+                for (Guild guild : shardGuilds.subList(i, Math.min(i + LOAD_BATCH, shardGuilds.size())))
+                {
+                    ids.add(guild.getId());
+                }
+
+                List<Document> batch = Main.getDBDriver().getEventCollection()
+                        .find(in("guildId", ids))
+                        .projection(fields(include(COLUMNS)))
+                        .into(new ArrayList<>());
+                synchronized (this)
+                {
+                    for (Document document : batch)
+                    {   // rows written meanwhile are newer than the loaded columns
+                        Integer id = document.getInteger("_id");
+                        if (this.removedWhileLoading.contains(id) || this.byId.get(idKey(id)) != NONE) continue;
+                        this.write(document);
+                        loaded++;
+                    }
+                }
+            }
+            synchronized (this)
+            {
+                this.loadedShards.add(shardId);
+            }
+            Logging.info(this.getClass(), "Cataloged " + loaded + " events of shard " + shardId + " in " +
+                    (System.currentTimeMillis() - begin) + "ms.");
+        }
+        catch (Exception e)
+        {
+            Logging.warn(this.getClass(), "Failed to catalog the events of shard " + shardId + ": " + e.getMessage());
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                if (--this.loading == 0) this.removedWhileLoading.clear();
+            }
+        }
+        return loaded;
+    }
+
+    /*
+     * write-through
+     */
+
+    /**
+     * records the current state of an event
+     * @param document (Document) event document, at least the cataloged columns
+     */
+    synchronized void put(Document document)
+    {
+        // while shards are loading, rows written through take precedence over the loaded rows
+        if (this.loading == 0 && !this.isLoaded(document.getString("guildId"))) return;
+        this.write(document);
+        this.documents.remove(document.getInteger("_id"));
+    }
+
+    /**
+     * notes that an event was changed in a way the catalog cannot follow,
+     * the event's row is verified against the database when it is next read
+     * @param id (Integer) event ID
+     */
+    synchronized void invalidate(Integer id)
+    {
+        this.documents.remove(id);
+        int row = this.byId.get(idKey(id));
+        if (row != NONE)
+        {
+            this.flags[row] |= STALE;
+            this.stamps[row]++;
+        }
+    }
+
+    /**
+     * @param id (Integer) ID of a removed event
+     */
+    synchronized void remove(Integer id)
+    {
+        this.documents.remove(id);
+        if (this.loading > 0) this.removedWhileLoading.add(id);
+        int row = this.byId.get(idKey(id));
+        if (row != NONE) this.free(row);
+    }
+
+    /**
+     * @param channelId (String) ID of a schedule whose events were removed
+     */
+    synchronized void removeChannel(String channelId)
+    {
+        this.removeChain(Long.parseLong(channelId), false);
+    }
+
+    /**
+     * @param guildId (String) ID of a guild whose events were removed
+     */
+    synchronized void removeGuild(String guildId)
+    {
+        this.removeChain(Long.parseLong(guildId), true);
+        this.schedules.remove(Long.parseLong(guildId));
+    }
+
+    /**
+     * drops the cached schedule list of a guild
+     * @param guildId (String) ID of a guild whose schedules changed
+     */
+    synchronized void invalidateSchedules(String guildId)
+    {
+        this.schedules.remove(Long.parseLong(guildId));
+    }
+
+    /*
+     * reads
+     */
+
+    /**
+     * @param id (Integer) event ID
+     * @return (Document) detached copy of the event's document, null if no such event exists
+     */
+    Document find(Integer id)
+    {
+        int row;
+        synchronized (this)
+        {
+            row = this.byId.get(idKey(id));
+        }
+        if (row == NONE)
+        {   // the event may belong to a guild on another process
+            return this.adopt(Main.getDBDriver().getEventCollection().find(eq("_id", id)).first());
+        }
+        List<Document> found = this.documents(Collections.singletonList(id));
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * @param id (Integer) event ID
+     * @param guildId (String) guild ID
+     * @return (Document) detached copy of the event's document, null if the guild has no such event
+     */
+    Document findInGuild(Integer id, String guildId)
+    {
+        synchronized (this)
+        {
+            int row = this.byId.get(idKey(id));
+            if (row == NONE && this.isLoaded(guildId)) return null;
+            if (row != NONE && (this.flags[row] & STALE) == 0 && this.guilds[row] != Long.parseLong(guildId)) return null;
+        }
+        Document document = this.find(id);
+        return document != null && guildId.equals(document.getString("guildId")) ? document : null;
+    }
+
+    /**
+     * @param guildId (String) guild of the message
+     * @param messageId (String) ID of an event's display message
+     * @return (Document) detached copy of the event's document, null if the message is not an event's display
+     */
+    Document findByMessage(String guildId, String messageId)
+    {
+        int row;
+        synchronized (this)
+        {
+            row = this.byMessage.get(Long.parseLong(messageId));
+            if (row == NONE && this.isLoaded(guildId)) return null;
+        }
+        if (row != NONE)
+        {
+            Document document = this.find(this.idOf(row));
+            if (document != null && messageId.equals(document.getString("messageId"))) return document;
+        }
+        // the message index was out of date
+        return this.adopt(Main.getDBDriver().getEventCollection().find(eq("messageId", messageId)).first());
+    }
+
+    /**
+     * @param channelId (String) schedule ID
+     * @return (List) detached copies of the documents of the schedule's events
+     */
+    List<Document> findInChannel(String channelId)
+    {
+        long channel = Long.parseLong(channelId);
+        List<Integer> ids = new ArrayList<>();
+        synchronized (this)
+        {
+            int head = this.channelHeads.get(channel);
+            String guildId = head != NONE ? Long.toString(this.guilds[head]) : guildOfChannel(channelId);
+            if (guildId == null || !this.isLoaded(guildId))
+            {
+                ids = null;
+            }
+            else
+            {
+                for (int row = head; row != NONE; row = this.nextInChannel[row])
+                {
+                    ids.add(this.ids[row]);
+                }
+            }
+        }
+        if (ids == null)
+        {
+            return this.adoptAll(Main.getDBDriver().getEventCollection().find(eq("channelId", channelId)));
+        }
+
+        List<Document> found = this.documents(ids);
+        found.removeIf(document -> !channelId.equals(document.getString("channelId")));
+        return found;
+    }
+
+    /**
+     * @param guildId (String) guild ID
+     * @return (List) detached copies of the documents of the guild's events
+     */
+    List<Document> findInGuild(String guildId)
+    {
+        List<Integer> ids = new ArrayList<>();
+        synchronized (this)
+        {
+            if (!this.isLoaded(guildId))
+            {
+                ids = null;
+            }
+            else
+            {
+                for (int row = this.guildHeads.get(Long.parseLong(guildId)); row != NONE; row = this.nextInGuild[row])
+                {
+                    ids.add(this.ids[row]);
+                }
+            }
+        }
+        if (ids == null)
+        {
+            return this.adoptAll(Main.getDBDriver().getEventCollection().find(eq("guildId", guildId)));
+        }
+
+        List<Document> found = this.documents(ids);
+        found.removeIf(document -> !guildId.equals(document.getString("guildId")));
+        return found;
+    }
+
+    /**
+     * @param guildId (String) guild ID
+     * @return (List) IDs of the guild's schedules
+     */
+    List<String> findSchedules(String guildId)
+    {
+        Long guild = Long.parseLong(guildId);
+        synchronized (this)
+        {
+            List<String> cached = this.schedules.get(guild);
+            if (cached != null) return new ArrayList<>(cached);
+        }
+
+        List<String> list = new ArrayList<>();
+        for (Document document : Main.getDBDriver().getScheduleCollection()
+                .find(eq("guildId", guildId)).projection(fields(include("_id"))))
+        {
+            list.add(document.getString("_id"));
+        }
+        synchronized (this)
+        {
+            if (this.isLoaded(guildId)) this.schedules.put(guild, new ArrayList<>(list));
+        }
+        return list;
+    }
+
+    /**
+     * @return (int) number of cataloged events
+     */
+    synchronized int size()
+    {
+        return this.count;
+    }
+
+    /*
+     * internals
+     */
+
+    /**
+     * retrieves the documents of cataloged events, loading those which are not cached with a single query
+     * events which no longer exist are removed from the catalog
+     */
+    private List<Document> documents(List<Integer> ids)
+    {
+        Map<Integer, Document> found = new LinkedHashMap<>();
+        Map<Integer, Integer> missing = new HashMap<>();    // ID -> stamp
+        long now = System.currentTimeMillis();
+        synchronized (this)
+        {
+            for (Integer id : ids)
+            {
+                found.put(id, null);
+                Loaded loaded = this.documents.get(id);
+                int row = this.byId.get(idKey(id));
+                if (loaded != null && row != NONE && now - loaded.time < Main.getDBDriver().getCacheTtl())
+                {
+                    found.put(id, loaded.document);
+                }
+                else if (row != NONE)
+                {
+                    missing.put(id, this.stamps[row]);
+                }
+            }
+        }
+
+        if (!missing.isEmpty())
+        {
+            List<Document> loaded = Main.getDBDriver().getEventCollection()
+                    .find(in("_id", new ArrayList<>(missing.keySet()))).into(new ArrayList<>());
+            synchronized (this)
+            {
+                for (Document document : loaded)
+                {
+                    Integer id = document.getInteger("_id");
+                    Integer stamp = missing.remove(id);
+                    found.put(id, document);
+
+                    // only keep the document if the event was not written while it was loading
+                    int row = this.byId.get(idKey(id));
+                    if (row != NONE && stamp != null && this.stamps[row] == stamp)
+                    {
+                        this.write(document);
+                        this.documents.put(id, new Loaded(EntryDiff.copy(document), now));
+                    }
+                }
+                for (Integer id : missing.keySet())
+                {   // deleted by another process
+                    int row = this.byId.get(idKey(id));
+                    if (row != NONE) this.free(row);
+                }
+            }
+        }
+
+        List<Document> copies = new ArrayList<>();
+        for (Document document : found.values())
+        {
+            if (document != null) copies.add(EntryDiff.copy(document));
+        }
+        return copies;
+    }
+
+    /**
+     * catalogs an event which was read from the database by a fallback query
+     * @return (Document) the document
+     */
+    private Document adopt(Document document)
+    {
+        if (document == null) return null;
+        synchronized (this)
+        {
+            if (this.isLoaded(document.getString("guildId"))) this.write(document);
+        }
+        return document;
+    }
+
+    private List<Document> adoptAll(Iterable<Document> documents)
+    {
+        List<Document> list = new ArrayList<>();
+        for (Document document : documents)
+        {
+            list.add(this.adopt(document));
+        }
+        return list;
+    }
+
+    /**
+     * inserts or updates the row of an event from its document, must hold the lock
+     */
+    private void write(Document document)
+    {
+        Integer id = document.getInteger("_id");
+        long guild = parse(document.getString("guildId"));
+        long channel = parse(document.getString("channelId"));
+        long message = parse(document.getString("messageId"));
+
+        int row = this.byId.get(idKey(id));
+        if (row != NONE && (this.guilds[row] != guild || this.channels[row] != channel))
+        {   // moved, relink
+            this.free(row);
+            row = NONE;
+        }
+        if (row == NONE)
+        {
+            row = this.allocate();
+            this.ids[row] = id;
+            this.guilds[row] = guild;
+            this.channels[row] = channel;
+            this.nextInGuild[row] = this.guildHeads.get(guild);
+            this.guildHeads.put(guild, row);
+            this.nextInChannel[row] = this.channelHeads.get(channel);
+            this.channelHeads.put(channel, row);
+            this.byId.put(idKey(id), row);
+            this.count++;
+        }
+        else if (this.messages[row] != message && this.byMessage.get(this.messages[row]) == row)
+        {
+            this.byMessage.remove(this.messages[row]);
+        }
+
+        this.messages[row] = message;
+        if (message != 0) this.byMessage.put(message, row);
+        this.starts[row] = epochSecond(document.get("start"));
+        this.ends[row] = epochSecond(document.get("end"));
+        this.flags[row] = Boolean.TRUE.equals(document.getBoolean("hasStarted")) ? STARTED : 0;
+        this.stamps[row]++;
+    }
+
+    /**
+     * unlinks and releases a row, must hold the lock
+     */
+    private void free(int row)
+    {
+        int id = this.ids[row];
+        this.byId.remove(idKey(id));
+        if (this.byMessage.get(this.messages[row]) == row) this.byMessage.remove(this.messages[row]);
+        this.documents.remove(id);
+        this.unlink(this.channelHeads, this.nextInChannel, this.channels[row], row);
+        this.unlink(this.guildHeads, this.nextInGuild, this.guilds[row], row);
+
+        this.stamps[row]++;
+        this.nextInGuild[row] = this.freeRow;
+        this.freeRow = row;
+        this.count--;
+    }
+
+    /**
+     * frees every row of a guild (or channel), must hold the lock
+     */
+    private void removeChain(long key, boolean guild)
+    {
+        List<Integer> chain = new ArrayList<>();
+        int row = guild ? this.guildHeads.get(key) : this.channelHeads.get(key);
+        while (row != NONE)
+        {
+            chain.add(row);
+            row = guild ? this.nextInGuild[row] : this.nextInChannel[row];
+        }
+        for (Integer r : chain)
+        {
+            if (this.loading > 0) this.removedWhileLoading.add(this.ids[r]);
+            this.free(r);
+        }
+    }
+
+    private void unlink(LongIntMap heads, int[] next, long key, int row)
+    {
+        int head = heads.get(key);
+        if (head == row)
+        {
+            if (next[row] == NONE) heads.remove(key);
+            else heads.put(key, next[row]);
+            return;
+        }
+        for (int prev = head; prev != NONE; prev = next[prev])
+        {
+            if (next[prev] == row)
+            {
+                next[prev] = next[row];
+                return;
+            }
+        }
+    }
+
+    private int allocate()
+    {
+        if (this.freeRow != NONE)
+        {
+            int row = this.freeRow;
+            this.freeRow = this.nextInGuild[row];
+            return row;
+        }
+        if (this.rows == this.ids.length)
+        {
+            int capacity = this.ids.length * 2;
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.guilds = Arrays.copyOf(this.guilds, capacity);
+            this.channels = Arrays.copyOf(this.channels, capacity);
+            this.messages = Arrays.copyOf(this.messages, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.flags = Arrays.copyOf(this.flags, capacity);
+            this.stamps = Arrays.copyOf(this.stamps, capacity);
+            this.nextInChannel = Arrays.copyOf(this.nextInChannel, capacity);
+            this.nextInGuild = Arrays.copyOf(this.nextInGuild, capacity);
+        }
+        return this.rows++;
+    }
+
+    private synchronized int idOf(int row)
+    {
+        return this.ids[row];
+    }
+
+    private synchronized void invalidateAll()
+    {
+        this.documents.clear();
+        for (int row = 0; row < this.rows; row++)
+        {
+            this.flags[row] |= STALE;
+            this.stamps[row]++;
+        }
+    }
+
+    private synchronized void invalidateSchedules()
+    {
+        this.schedules.clear();
+    }
+
+    /**
+     * a guild's rows are complete once its shard has been loaded, must hold the lock
+     */
+    private boolean isLoaded(String guildId)
+    {
+        if (guildId == null || this.loadedShards.isEmpty()) return false;
+        JDA jda = Main.getShardManager().getJDA(guildId);
+        return jda != null && this.loadedShards.contains(getShardId(jda));
+    }
+
+    private static String guildOfChannel(String channelId)
+    {
+        for (JDA shard : Main.getShardManager().getShards())
+        {
+            TextChannel channel = shard.getTextChannelById(channelId);
+            if (channel != null) return channel.getGuild().getId();
+        }
+        return null;
+    }
+
+    private static int getShardId(JDA shard)
+    {
+        return shard.getShardInfo() == null ? 0 : shard.getShardInfo().getShardId();
+    }
+
+    /** event IDs may be zero or negative, keep them clear of the empty key */
+    private static long idKey(int id)
+    {
+        return (id & 0xffffffffL) | (1L << 32);
+    }
+
+    private static long parse(String snowflake)
+    {
+        try
+        {
+            return snowflake == null ? 0 : Long.parseLong(snowflake);
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    private static long epochSecond(Object date)
+    {
+        return date instanceof Date ? ((Date) date).getTime() / 1000 : 0;
+    }
+
+    /**
+     * a lazily loaded document
+     */
+    private static class Loaded
+    {
+        final Document document;
+        final long time;
+
+        Loaded(Document document, long time)
+        {
+            this.document = document;
+            this.time = time;
+        }
+    }
+
+    /**
+     * open addressing hash map of non-zero long keys to int values, absent keys map to NONE
+     */
+    private static class LongIntMap
+    {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size = 0;
+
+        int get(long key)
+        {
+            int mask = this.keys.length - 1;
+            for (int i = hash(key) & mask; this.keys[i] != 0; i = (i + 1) & mask)
+            {
+                if (this.keys[i] == key) return this.values[i];
+            }
+            return NONE;
+        }
+
+        void put(long key, int value)
+        {
+            if (key == 0) return;
+            if ((this.size + 1) * 2 > this.keys.length) this.resize();
+            int mask = this.keys.length - 1;
+            int i = hash(key) & mask;
+            while (this.keys[i] != 0 && this.keys[i] != key)
+            {
+                i = (i + 1) & mask;
+            }
+            if (this.keys[i] == 0) this.size++;
+            this.keys[i] = key;
+            this.values[i] = value;
+        }
+
+        void remove(long key)
+        {
+            int mask = this.keys.length - 1;
+            int i = hash(key) & mask;
+            while (this.keys[i] != key)
+            {
+                if (this.keys[i] == 0) return;
+                i = (i + 1) & mask;
+            }
+            this.size--;
+
+            // shift back the entries which probed past the removed slot
+            int gap = i;
+            for (int j = (gap + 1) & mask; this.keys[j] != 0; j = (j + 1) & mask)
+            {
+                int home = hash(this.keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask))
+                {
+                    this.keys[gap] = this.keys[j];
+                    this.values[gap] = this.values[j];
+                    gap = j;
+                }
+            }
+            this.keys[gap] = 0;
+        }
+
+        private void resize()
+        {
+            long[] oldKeys = this.keys;
+            int[] oldValues = this.values;
+            this.keys = new long[oldKeys.length * 2];
+            this.values = new int[oldValues.length * 2];
+            this.size = 0;
+            for (int i = 0; i < oldKeys.length; i++)
+            {
+                if (oldKeys[i] != 0) this.put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int hash(long key)
+        {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+}
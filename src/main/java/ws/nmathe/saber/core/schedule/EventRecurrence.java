@@ -8,11 +8,14 @@ import java.time.format.TextStyle;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NoSuchElementException;
 
 import static java.time.temporal.TemporalAdjusters.firstDayOfMonth;
 import static java.time.temporal.TemporalAdjusters.nextOrSame;
+import static java.time.temporal.TemporalAdjusters.previousOrSame;
 
 public class EventRecurrence
 {
@@ -454,39 +457,225 @@ public class EventRecurrence
                 return date.plusDays(count);
 
             // repeat on nth week day every mth month
+            // repeat on n day of every mth month
             case MONTH1_MODE:
-                DayOfWeek dayOfWeek = DayOfWeek.of(data&0b111);
-                int nth = (data>>3)&0b111;
-                date = date.with(firstDayOfMonth())
-                        .plusMonths((data>>6)>1 ? (data>>6) : 1)
-                        .with(nextOrSame(dayOfWeek));
-                while(nth>1)
+            case MONTH2_MODE:
+                return this.nextMonthly(date, 1);
+
+            // something went wrong
+            default:
+                Logging.warn(this.getClass(), "Encountered invalid repeat mode!");
+                return date;
+        }
+    }
+
+    /**
+     * determine the first occurrence of the event which falls strictly after an instant
+     * the occurrence is computed directly rather than by stepping through each missed occurrence, which
+     * gives the same result as repeatedly applying next(..) to the date except where a day of the month is
+     * clamped: the monthly modes (without a configured day) and the yearly mode clamp only the final month,
+     * whereas each step of next(..) clamps and keeps the shortened day, ie. monthly Jan 31 catches up to Mar 31
+     * but steps to Feb 28 then Mar 28, and yearly Feb 29 catches up to the next Feb 29 but steps to Feb 28.
+     * callers catching up on missed occurrences (such as ScheduleEntry.fastForward) may see the later day
+     * @param date the date of the previous start/end of the event
+     * @param after the instant which the returned occurrence must follow
+     * @return the new start of the event (based on the recurrence rule)
+     */
+    public ZonedDateTime next(ZonedDateTime date, ZonedDateTime after)
+    {
+        // the common case, the next occurrence has not yet passed
+        ZonedDateTime next = this.next(date);
+        if (this.recurrence == 0 || next.isAfter(after) || !next.isAfter(date))
+            return next;
+
+        after = after.withZoneSameInstant(date.getZone());
+        int mode = this.recurrence & 0b111;
+        int data = this.recurrence >>3;
+        switch(mode)
+        {
+            // interval repeat
+            case DAILY_MODE:
+                return skip(date, after, ChronoUnit.DAYS, data);
+            case MINUTE_MODE:
+                return skip(date, after, ChronoUnit.MINUTES, data);
+            case YEAR_MODE:
+                return skip(date, after, ChronoUnit.YEARS, data);
+
+            // repeat weekly by day of week
+            case WEEK_MODE:
+                int weeks = (data>>7)==0 ? 1:data>>7;
+                int days  = this.weekdays(date);
+
+                // jump to the latest active week which does not begin after the instant,
+                // at most two active weeks need to be examined from there
+                LocalDate week = date.toLocalDate().with(previousOrSame(DayOfWeek.MONDAY));
+                long elapsed = ChronoUnit.WEEKS.between(week, after.toLocalDate());
+                week = week.plusWeeks(elapsed - elapsed%weeks);
+                while (true)
                 {
-                   date = date.plusDays(1).with(nextOrSame(dayOfWeek));
-                   nth--;
+                    for (int j=0; j<7; j++)
+                    {
+                        if ((days & (1<<j)) == 0) continue;
+                        ZonedDateTime candidate = ZonedDateTime.of(week.plusDays(j), date.toLocalTime(), date.getZone());
+                        if (candidate.isAfter(after)) return candidate;
+                    }
+                    week = week.plusWeeks(weeks);
                 }
-                return date;
 
+            // repeat on nth week day every mth month
             // repeat on n day of every mth month
+            case MONTH1_MODE:
             case MONTH2_MODE:
-                int dayOfMonth    = data&0b11111;
-                int monthInterval = data>>5;
-                if (dayOfMonth > 0)
-                {   // dayOfMonth portion indicates the day of the month the event should repeat on
-                    return date.plusMonths(monthInterval).withDayOfMonth(dayOfMonth);
-                }
-                else
-                {   // if the monthInterval portion is zero, increment to onet
-                    return date.plusMonths(monthInterval == 0 ? 1 : monthInterval);
-                }
+                long k = Math.max(1, ChronoUnit.MONTHS.between(YearMonth.from(date), YearMonth.from(after))
+                        / this.monthInterval());
+                while (k > 1 && this.nextMonthly(date, k-1).isAfter(after)) k--;
+                next = this.nextMonthly(date, k);
+                while (!next.isAfter(after)) next = this.nextMonthly(date, ++k);
+                return next;
 
             // something went wrong
             default:
-                Logging.warn(this.getClass(), "Encountered invalid repeat mode!");
-                return date;
+                return next;
+        }
+    }
+
+    /**
+     * lazily iterates over the occurrences of the event which fall strictly after an instant
+     * occurrences past the expire date or beyond the occurrence count are not produced
+     * @param after the instant which all occurrences must follow
+     * @return iterator of occurrence start dates, in ascending order
+     */
+    public Iterator<ZonedDateTime> occurrencesAfter(ZonedDateTime after)
+    {
+        ZonedDateTime first = this.startDate.isAfter(after) ? this.startDate : this.next(this.startDate, after);
+        return new Iterator<ZonedDateTime>()
+        {
+            private ZonedDateTime current = first.isAfter(after) ? first : null;
+            private int remaining = (count == null) ? Integer.MAX_VALUE :
+                    (current == null || countRemaining(current) == null) ? 0 : countRemaining(current);
+
+            @Override
+            public boolean hasNext()
+            {
+                return current != null && remaining > 0 && (expire == null || !expire.isBefore(current));
+            }
+
+            @Override
+            public ZonedDateTime next()
+            {
+                if (!this.hasNext())
+                    throw new NoSuchElementException();
+
+                ZonedDateTime occurrence = this.current;
+                ZonedDateTime following = EventRecurrence.this.next(occurrence);
+                this.current = following.isAfter(occurrence) ? following : null;
+                this.remaining--;
+                return occurrence;
+            }
+        };
+    }
+
+    /**
+     * advances a date by whole intervals of a fixed unit until it is strictly after an instant
+     * helper to next(..)
+     */
+    private static ZonedDateTime skip(ZonedDateTime date, ZonedDateTime after, ChronoUnit unit, int interval)
+    {
+        interval = interval==0 ? 1 : interval;
+        long steps = date.until(after, unit)/interval;
+        ZonedDateTime next = date.plus(steps*interval, unit);
+        while (!next.isAfter(after))
+        {
+            next = next.plus(interval, unit);
+        }
+        return next;
+    }
+
+    /**
+     * determines the kth monthly occurrence which follows a date (k >= 1) for the two monthly modes
+     * the k intervals of months are added to the date in one step, then the configured day of the month
+     * (or nth weekday) is applied, with the day of the month clamped to the length of the target month.
+     * as only the target month is clamped this is not the same as applying next(..) k times when the date
+     * has no configured day of the month, ie. Jan 31 gives Mar 31 here but Feb 28 then Mar 28 by next(..)
+     */
+    private ZonedDateTime nextMonthly(ZonedDateTime date, long k)
+    {
+        int mode = this.recurrence & 0b111;
+        int data = this.recurrence >>3;
+        long months = k*this.monthInterval();
+        if (mode == MONTH1_MODE)
+        {
+            DayOfWeek dayOfWeek = DayOfWeek.of(data&0b111);
+            int nth = (data>>3)&0b111;
+            return date.with(firstDayOfMonth())
+                    .plusMonths(months)
+                    .with(nextOrSame(dayOfWeek))
+                    .plusWeeks(nth>1 ? nth-1 : 0);
+        }
+        else
+        {
+            int dayOfMonth = data&0b11111;
+            date = date.plusMonths(months);
+            if (dayOfMonth > 0)
+            {   // dayOfMonth portion indicates the day of the month the event should repeat on
+                return date.withDayOfMonth(Math.min(dayOfMonth, date.toLocalDate().lengthOfMonth()));
+            }
+            return date;
         }
     }
 
+    /**
+     * the number of months between occurrences for the monthly modes
+     */
+    private int monthInterval()
+    {
+        int mode = this.recurrence & 0b111;
+        int data = this.recurrence >>3;
+        int interval = (mode == MONTH1_MODE) ? data>>6 : data>>5;
+        return interval>1 ? interval : 1;
+    }
+
+    /**
+     * the weekdays (monday as the lowest bit) on which a weekly event occurs,
+     * an event with no weekdays set repeats on the weekday of the date
+     */
+    private int weekdays(ZonedDateTime date)
+    {
+        int days = (this.recurrence >> 3) & 0b1111111;
+        return days==0 ? 1<<(date.getDayOfWeek().getValue()-1) : days;
+    }
+
+    /**
+     * counts the weekly occurrence slots from the week of the original start up to (and including) an instant
+     * helper to countRemaining(..)
+     */
+    private long weeklySlots(ZonedDateTime instant)
+    {
+        int data  = this.recurrence >> 3;
+        int weeks = (data>>7)==0 ? 1:data>>7;
+        int days  = this.weekdays(this.startDate);
+
+        ZonedDateTime local = instant.withZoneSameInstant(this.startDate.getZone());
+        LocalDate first = this.startDate.toLocalDate().with(previousOrSame(DayOfWeek.MONDAY));
+        long elapsed = ChronoUnit.WEEKS.between(first, local.toLocalDate());
+
+        // every active week before the instant's week contributes all of it's weekdays
+        long slots = ((elapsed + weeks - 1) / weeks) * Integer.bitCount(days);
+
+        // count the slots of the instant's own week, if it is active
+        if (elapsed%weeks == 0)
+        {
+            LocalDate week = first.plusWeeks(elapsed);
+            for (int j=0; j<7; j++)
+            {
+                if ((days & (1<<j)) == 0) continue;
+                ZonedDateTime slot = ZonedDateTime.of(week.plusDays(j), this.startDate.toLocalTime(), this.startDate.getZone());
+                if (!slot.isAfter(instant)) slots++;
+            }
+        }
+        return slots;
+    }
+
     /**
      * generates a valid list of event recurrence rules as specified by RFC5545
      * NOTE: this follows Google Calendar's implementation of the ruleset
@@ -591,30 +780,14 @@ public class EventRecurrence
                 return count - ((int) years/(data==0?1:data));
 
             case WEEK_MODE:     // weekly
-                int weeks = (int) (startDate.until(now, ChronoUnit.WEEKS)/((data>>7)==0?1:(data>>7)));
-
-                // calculate the number of days of the week the event repeats on
-                int c = 0;                      // count of weekdays event repeats on
-                for (int tmp=(data&0b1111111); tmp>0; tmp>>=1) { if ((tmp&0b1)==1) c++; }
-                int rem = count - c*weeks;      // how many events have past
-
-                // process the remaining portion of the week
-                ZonedDateTime cur = startDate.plusWeeks(weeks);
-                for (int j=cur.getDayOfWeek().getValue(); j<=7 && now.isAfter(cur); j++)
-                {   // for each day of last remaining week
-                    // if day of week is set, decrement rem count
-                    if (((data&0b1111111) & (1<<(j-1))) == 1) rem--;
-                    cur = cur.plusDays(1);
-                }
-                return rem;
+                return count - (int) (this.weeklySlots(now) - this.weeklySlots(startDate));
 
             case MONTH1_MODE:     // mo by day
-                long months = startDate.until(now, ChronoUnit.MONTHS);
-                return count - ((int) months/((data>>6)==0?1:(data>>5)));
-
             case MONTH2_MODE:     // mo by date
-                months = startDate.until(now, ChronoUnit.MONTHS);
-                return count - ((int) months/((data>>5)==0?1:(data>>5)));
+                long months = ChronoUnit.MONTHS.between(YearMonth.from(startDate),
+                        YearMonth.from(now.withZoneSameInstant(startDate.getZone())))/this.monthInterval();
+                while (months > 0 && this.nextMonthly(startDate, months).isAfter(now)) months--;
+                return count - (int) months;
 
             default:    // something went wrong!
                 return null;
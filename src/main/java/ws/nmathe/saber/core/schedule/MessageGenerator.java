@@ -21,6 +21,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.time.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -31,6 +32,14 @@ public class MessageGenerator
     private static String DEFAULT_URL = "https://youtu.be/dQw4w9WgXcQ";
     private static String ICON_URL = "https://upload.wikimedia.org/wikipedia/en/8/8d/Calendar_Icon.png";
 
+    // bodies are written into a per thread buffer, which is dropped if an unusually long body grew it
+    private static final int MAX_RETAINED = 8 * 1024;
+    private static final ThreadLocal<StringBuilder> BODY = ThreadLocal.withInitial(() -> new StringBuilder(2048));
+
+    // urls which have been verified, so that each render does not connect to them again
+    private static final int MAX_VERIFIED_URLS = 10000;
+    private static final Map<String, Boolean> VERIFIED_URLS = new ConcurrentHashMap<>();
+
     /**
      * Primary method which generates a complete Discord message object for the event
      * @param se (ScheduleEntry) to generate a message display
@@ -77,74 +86,93 @@ public class MessageGenerator
 
     private static MessageEmbed generateEmbed(ScheduleEntry se)
     {
+        RenderContext ctx = RenderContext.of(se.getChannelId());
+
         // prepare title
-        String titleUrl = (se.getTitleUrl() != null && VerifyUtilities.verifyUrl(se.getTitleUrl())) ?
-                se.getTitleUrl() : DEFAULT_URL;
+        String titleUrl = isValidUrl(se.getTitleUrl()) ? se.getTitleUrl() : DEFAULT_URL;
         String titleImage = ICON_URL;
 
         // generate the footer
-        String footerStr = generateFooter(se);
+        String footerStr = generateFooter(se, !ctx.style.equals("timestamp"));
 
         // determine the embed color
         Color embedColor = generateColor(se);
 
         // generate the body of the embed
-        String bodyContent;
-        String style = Main.getScheduleManager().getStyle(se.getChannelId());
-        if(style.equalsIgnoreCase("narrow"))
+        StringBuilder body = BODY.get();
+        body.setLength(0);
+        if(ctx.style.equals("narrow"))
         {
-            bodyContent = generateBodyNarrow(se);
+            generateBodyNarrow(se, ctx, body);
+        }
+        else if(ctx.style.equals("timestamp"))
+        {
+            generateBodyTimestamp(se, ctx, body);
         }
         else
         {
-            bodyContent = generateBodyFull(se);
+            generateBodyFull(se, ctx, body);
         }
+        String bodyContent = body.substring(0, Math.min(body.length(), 2048));
+        if (body.capacity() > MAX_RETAINED) BODY.remove();
 
         // prepare the embed
         EmbedBuilder builder = new EmbedBuilder();
-        builder.setDescription(bodyContent.substring(0,Math.min(bodyContent.length(), 2048)))
+        builder.setDescription(bodyContent)
                 .setColor(embedColor)
                 .setAuthor(se.getTitle(), titleUrl)//, titleImage)
                 .setFooter(footerStr.substring(0,Math.min(footerStr.length(), 2048)), null);
 
         // add the image and thumbnail url links (if valid)
-        if(se.getImageUrl() != null && VerifyUtilities.verifyUrl(se.getImageUrl()))
+        if(isValidUrl(se.getImageUrl()))
         {
             builder.setImage(se.getImageUrl());
         }
-        if(se.getThumbnailUrl() != null && VerifyUtilities.verifyUrl(se.getThumbnailUrl()))
+        if(isValidUrl(se.getThumbnailUrl()))
         {
             builder.setThumbnail(se.getThumbnailUrl());
         }
         return builder.build();
     }
 
+    /**
+     * verifies an event's url, urls which have been verified once are not verified again
+     * @param url the url (may be null)
+     * @return true if the url is valid
+     */
+    private static boolean isValidUrl(String url)
+    {
+        if (url == null) return false;
+        if (VERIFIED_URLS.containsKey(url)) return true;
+        if (!VerifyUtilities.verifyUrl(url)) return false;
+
+        if (VERIFIED_URLS.size() >= MAX_VERIFIED_URLS) VERIFIED_URLS.clear();
+        VERIFIED_URLS.put(url, Boolean.TRUE);
+        return true;
+    }
+
 
     /**
      * Generates the body content of the discord message for events using the
      * "full" display style
      * @param se the ScheduleEntry Object represented by the display
-     * @return the body content as a string
+     * @param ctx the render context of the event's schedule
+     * @param msg the body content is appended to
      */
-    private static String generateBodyFull(ScheduleEntry se)
+    private static void generateBodyFull(ScheduleEntry se, RenderContext ctx, StringBuilder msg)
     {
-        StringBuilder msg = new StringBuilder();
-
         //
         // create the upper code block
         //
-        String timeLines = generateTimeLines(se);
-        String repeatLine = "> repeats " + se.getRecurrence().toString() + "\n";
-        String expirationLine = generateExpirationLine(se);
-        String locationLine = se.getLocation() == null ? "" : "<Location: " + se.getLocation() + ">\n";
-
-        // append block lines
-        msg.append("```Markdown\n\n")
-                .append(timeLines)
-                .append(repeatLine)
-                .append(expirationLine)
-                .append(locationLine)
-                .append("```\n");
+        msg.append("```Markdown\n\n");
+        generateTimeLines(se, ctx, msg);
+        msg.append("> repeats ").append(se.getRecurrence().toString()).append("\n");
+        generateExpirationLine(se, msg);
+        if (se.getLocation() != null)
+        {
+            msg.append("<Location: ").append(se.getLocation()).append(">\n");
+        }
+        msg.append("```\n");
 
         //
         // insert the event description
@@ -155,47 +183,41 @@ public class MessageGenerator
         //
         // generate the lower code block
         //
-        String timerLine = generateTimerLine(se);
+        msg.append("```Markdown\n\n");
+        generateTimerLine(se, ctx, msg);
 
         // if rsvp is enabled, show the number of rsvp
-        StringBuilder rsvpLine = new StringBuilder();
-        if (Main.getScheduleManager().isRSVPEnabled(se.getChannelId()))
+        if (ctx.rsvpEnabled)
         {
-            rsvpLine.append("- ");
-            Map<String, String> options = Main.getScheduleManager().getRSVPOptions(se.getChannelId());
-            for (String emoji : options.keySet()) // I iterate over the keys rather than the values to keep a order consistent with reactions
+            msg.append("- ");
+            for (Map.Entry<String, String> option : ctx.rsvpOptions.entrySet()) // keys order is consistent with reactions
             {
-                String type = options.get(emoji);
-                if (se.getRsvpLimit(type) != 0) // don't list the rsvp options on the event
+                String type = option.getValue();
+                int limit = se.getRsvpLimit(type);
+                if (limit != 0) // don't list the rsvp options on the event
                 {
-                    rsvpLine.append("<")
+                    msg.append("<")
                             .append(type)
                             .append(" ")
-                            .append(se.getRsvpMembersOfType(type).size())
-                            .append(se.getRsvpLimit(type) >= 0 ? "/" + se.getRsvpLimit(type) + "> " : "> ");
+                            .append(se.getRsvpMembersOfType(type).size());
+                    if (limit >= 0) msg.append("/").append(limit);
+                    msg.append("> ");
                 }
             }
             if (se.getDeadline() != null)
             {
-                rsvpLine.append("\n+ RSVP closes ")
+                msg.append("\n+ RSVP closes ")
                         .append(se.getDeadline().getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH))
                         .append(" ").append(se.getDeadline().getDayOfMonth())
                         .append(", ")
                         .append(se.getDeadline().getYear())
-                        .append(" @ ")
-                        .append(se.getDeadline().toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm")))
-                        .append(".");
+                        .append(" @ ");
+                RenderContext.DEADLINE.formatTo(se.getDeadline().toLocalTime(), msg);
+                msg.append(".");
             }
 
         }
-        // append block lines
-        msg.append("```Markdown\n\n")
-                .append(timerLine)
-                .append(rsvpLine)
-                .append("```");
-
-        // return full body string contents
-        return msg.toString();
+        msg.append("```");
     }
 
 
@@ -203,56 +225,175 @@ public class MessageGenerator
      * Generates the body content of the discord message for events using the
      * "narrow" display style
      * @param se the ScheduleEntry Object represented by the display
-     * @return the body content as a string
+     * @param ctx the render context of the event's schedule
+     * @param msg the body content is appended to
      */
-    private static String generateBodyNarrow(ScheduleEntry se)
+    private static void generateBodyNarrow(ScheduleEntry se, RenderContext ctx, StringBuilder msg)
     {
-        // create the first line of the body
-        String timeLines = generateTimeLines(se);
-        String newtimer = newtimer(se);
-        // timezone and repeat information
-        StringBuilder repeatLine = new StringBuilder()
-                .append("[⏰]")
-                .append(newtimer)
-                .append("\n")
+        msg.append("```Markdown\n\n");
+        generateTimeLines(se, ctx, msg);
+
+        // timer and repeat information
+        msg.append("[⏰]");
+        newtimer(se, msg);
+        msg.append("\n")
                 .append("> ")
                 .append(se.getRecurrence().toString())
                 .append("\n");
+
         // expiration information
-        String expirationLine = generateExpirationLine(se);
+        generateExpirationLine(se, msg);
 
         // if rsvp is enabled, show the number of rsvps
-        StringBuilder rsvpLine = new StringBuilder();
-        if(Main.getScheduleManager().isRSVPEnabled(se.getChannelId()))
+        if(ctx.rsvpEnabled)
         {
-            Map<String, String> options = Main.getScheduleManager().getRSVPOptions(se.getChannelId());
             // iterate over the keys rather than the values to keep
             // the order consistent with the order reactions are displayed
-            for(String emoji : options.keySet())
+            for(Map.Entry<String, String> option : ctx.rsvpOptions.entrySet())
             {
-                String type = options.get(emoji);
-                if (se.getRsvpLimit(type) != 0) // don't list the rsvp options on the event
+                String type = option.getValue();
+                int limit = se.getRsvpLimit(type);
+                if (limit != 0) // don't list the rsvp options on the event
                 {
-                    rsvpLine.append("<").append(type.charAt(0)).append(" ")
-                            .append(se.getRsvpMembersOfType(type).size())
-                            .append(se.getRsvpLimit(type) > 0 ? "/" + se.getRsvpLimit(type) + "> " : "> ");
+                    msg.append("<").append(type.charAt(0)).append(" ")
+                            .append(se.getRsvpMembersOfType(type).size());
+                    if (limit > 0) msg.append("/").append(limit);
+                    msg.append("> ");
                 }
             }
         }
-        return "```Markdown\n\n" + timeLines + repeatLine + expirationLine + rsvpLine + "```\n";
+        msg.append("```\n");
+    }
+
+
+    /**
+     * Generates the body content of the discord message for events using the
+     * "timestamp" display style, times and countdowns are rendered by the discord client
+     * so the display does not need to be edited as time passes
+     * @param se the ScheduleEntry Object represented by the display
+     * @param ctx the render context of the event's schedule
+     * @param msg the body content is appended to
+     */
+    private static void generateBodyTimestamp(ScheduleEntry se, RenderContext ctx, StringBuilder msg)
+    {
+        long start = se.getStart().toEpochSecond();
+        long end = se.getEnd().toEpochSecond();
+
+        // start and end in the reader's own time zone
+        msg.append("**");
+        timestamp(start, 'F', msg);
+        msg.append("**");
+        if (start != end)
+        {
+            char endFormat = se.getStart().toLocalDate().equals(se.getEnd().toLocalDate()) ? 't' : 'F';
+            msg.append(" \u2014 **");
+            timestamp(end, endFormat, msg);
+            msg.append("**");
+        }
+        msg.append("\n");
+        if (!se.hasStarted())
+        {
+            msg.append("begins ");
+            timestamp(start, 'R', msg);
+        }
+        else
+        {
+            msg.append("in progress, ends ");
+            timestamp(end, 'R', msg);
+        }
+        msg.append("\n");
+
+        // the schedule's zones, which do not change with time
+        if (ctx.altZones.length > 0)
+        {
+            msg.append("```Markdown\n\n");
+            generateTimeLines(se, ctx, msg);
+            msg.append("```");
+        }
+
+        // repeat, expiration and location information
+        msg.append("> repeats ").append(se.getRecurrence().toString()).append("\n");
+        if (se.getExpire() != null)
+        {
+            msg.append("> expires ");
+            timestamp(se.getExpire().toEpochSecond(), 'D', msg);
+            msg.append("\n");
+        }
+        else if (se.getRecurrence().getCount() != null)
+        {
+            msg.append("> occurs ").append(se.getRecurrence().countRemaining(se.getStart())).append(" more times\n");
+        }
+        if (se.getLocation() != null)
+        {
+            msg.append("> location: ").append(se.getLocation()).append("\n");
+        }
+
+        // event description
+        msg.append("\n").append(ParsingUtilities.processText(se.getDescription(), se, true)).append("\n");
+
+        // rsvp counts
+        if (ctx.rsvpEnabled)
+        {
+            StringBuilder rsvpLine = new StringBuilder();
+            for (Map.Entry<String, String> option : ctx.rsvpOptions.entrySet())
+            {
+                String type = option.getValue();
+                int limit = se.getRsvpLimit(type);
+                if (limit != 0)
+                {
+                    rsvpLine.append(option.getKey()).append(" ").append(type).append(" ")
+                            .append(se.getRsvpMembersOfType(type).size());
+                    if (limit >= 0) rsvpLine.append("/").append(limit);
+                    rsvpLine.append("  ");
+                }
+            }
+            msg.append("\n").append(rsvpLine.toString().trim()).append("\n");
+            if (se.getDeadline() != null)
+            {
+                msg.append("RSVP closes ");
+                timestamp(se.getDeadline().toEpochSecond(), 'f', msg);
+                msg.append("\n");
+            }
+        }
+
+        // upcoming reminders (embed footers cannot render timestamps)
+        List<Date> reminders = new ArrayList<>(se.getReminders());
+        reminders.addAll(se.getEndReminders());
+        if (!reminders.isEmpty())
+        {
+            Collections.sort(reminders);
+            msg.append("reminders ");
+            for (int i=0; i<reminders.size(); i++)
+            {
+                if (i != 0) msg.append(", ");
+                timestamp(reminders.get(i).toInstant().getEpochSecond(), 'R', msg);
+            }
+            msg.append("\n");
+        }
+    }
+
+    /**
+     * appends markup which the discord client renders in the reader's time zone and locale
+     * @param epochSecond the time
+     * @param format discord timestamp format (t, T, d, D, f, F or R)
+     * @param msg the markup is appended to
+     */
+    private static void timestamp(long epochSecond, char format, StringBuilder msg)
+    {
+        msg.append("<t:").append(epochSecond).append(":").append(format).append(">");
     }
 
 
     /**
+     * appends the display line containing the expiration information
      * @param se the ScheduleEntry
-     * @return display line containing the expiration information
+     * @param line the line is appended to
      */
-    private static String generateExpirationLine(ScheduleEntry se)
+    private static void generateExpirationLine(ScheduleEntry se, StringBuilder line)
     {
-        StringBuilder repeatLine = new StringBuilder();
         if(se.getExpire() != null)
         {   // expire information
-            repeatLine.append("> expires ")
+            line.append("> expires ")
                     .append(se.getExpire().getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH))
                     .append(" ")
                     .append(se.getExpire().getDayOfMonth())
@@ -262,68 +403,57 @@ public class MessageGenerator
         }
         else if(se.getRecurrence().getCount() != null)
         {   // remaining event occurrences
-            repeatLine.append("> occurs ")
+            line.append("> occurs ")
                     .append(se.getRecurrence().countRemaining(se.getStart()))
                     .append(" more times\n");
         }
-        return repeatLine.toString();
     }
 
 
     /**
+     * appends the display lines containing the start/end information
      * @param se the ScheduleEntry
-     * @return display lines containing the start/end information
+     * @param ctx the render context of the event's schedule
+     * @param timeLines the lines are appended to
      */
-    private static String generateTimeLines(ScheduleEntry se)
+    private static void generateTimeLines(ScheduleEntry se, RenderContext ctx, StringBuilder timeLines)
     {
-        StringBuilder timeLines = new StringBuilder();
-        List<ZoneId> altZones = Main.getScheduleManager().getAltZones(se.getChannelId());
-        if (!altZones.isEmpty())
-        {
-            altZones.add(se.getStart().getZone());  // add primary zone to list
-            altZones.sort((zoneId, t1) -> {         // sort list by zone offset
-                Instant now = Instant.now();
-                return t1.getRules().getOffset(now)
-                        .compareTo(zoneId.getRules().getOffset(now));
-            });
-            for (ZoneId zone : altZones)
+        if (ctx.altZones.length > 0)
+        {
+            for (ZoneId zone : ctx.zonesWith(se.getStart().getZone()))
             {
-                timeLines.append(generateTimeLine(se, zone));
+                generateTimeLine(se, zone, ctx.time, timeLines);
             }
         }
         else
         {
-            timeLines.append(generateTimeLine(se, null));
+            generateTimeLine(se, null, ctx.time, timeLines);
         }
-        return timeLines.toString();
     }
 
     /**
      * Generates the line of text which indicates the time the event begins and ends
      * Used by both generateBody...() methods
      * @param se the ScheduleEntry Object represented by the display
-     * @return the body content as a string
+     * @param zone the zone to display the times in, null for the event's own zone
+     * @param time the schedule's clock formatter
+     * @param timeLine the line is appended to
      */
-    private static String generateTimeLine(ScheduleEntry se, ZoneId zone)
+    private static void generateTimeLine(ScheduleEntry se, ZoneId zone, DateTimeFormatter time, StringBuilder timeLine)
     {
-        String timeFormatter;
-        if(Main.getScheduleManager().getClockFormat(se.getChannelId()).equals("24"))
-            timeFormatter = "H:mm";
-        else
-            timeFormatter = "h:mm a";
-
         // adjust start and end if necessary
         ZonedDateTime start = (zone == null) ? se.getStart() : se.getStart().withZoneSameInstant(zone);
         ZonedDateTime end   = (zone == null) ? se.getEnd() : se.getEnd().withZoneSameInstant(zone);
 
         String dash = "\u2014";
-        StringBuilder timeLine = new StringBuilder("< " + start.format(DateTimeFormatter.ofPattern("MMM d")));
+        timeLine.append("< ");
+        RenderContext.DATE.formatTo(start, timeLine);
 
         // event starts and ends at the same time
         if (start.until(end, ChronoUnit.SECONDS)==0)
         {
-            timeLine.append(", ")
-                    .append(start.format(DateTimeFormatter.ofPattern(timeFormatter)));
+            timeLine.append(", ");
+            time.formatTo(start, timeLine);
         }
         // time span is greater than 1 day
         else if (start.until(end, ChronoUnit.DAYS)>=1)
@@ -334,58 +464,55 @@ public class MessageGenerator
             {
                 timeLine.append(" ")
                         .append(dash)
-                        .append(" ")
-                        .append(end.format(DateTimeFormatter.ofPattern("MMM d")));
+                        .append(" ");
+                RenderContext.DATE.formatTo(end, timeLine);
             }
             else // all other events
             {
-                timeLine.append(", ")
-                        .append(start.format(DateTimeFormatter.ofPattern(timeFormatter)))
-                        .append(" ")
+                timeLine.append(", ");
+                time.formatTo(start, timeLine);
+                timeLine.append(" ")
                         .append(dash)
-                        .append(" ")
-                        .append(end.format(DateTimeFormatter.ofPattern("MMM d")))
-                        .append(", ")
-                        .append(end.format(DateTimeFormatter.ofPattern(timeFormatter)));
+                        .append(" ");
+                RenderContext.DATE.formatTo(end, timeLine);
+                timeLine.append(", ");
+                time.formatTo(end, timeLine);
             }
         }
         // time span is within 1 day
         else
         {
-            timeLine.append(", ")
-                    .append(start.format(DateTimeFormatter.ofPattern(timeFormatter)))
-                    .append(" ")
+            timeLine.append(", ");
+            time.formatTo(start, timeLine);
+            timeLine.append(" ")
                     .append(dash)
-                    .append(" ")
-                    .append(end.format(DateTimeFormatter.ofPattern(timeFormatter)));
+                    .append(" ");
+            time.formatTo(end, timeLine);
         }
         timeLine.append(" > ");
         // add zone information
         if (zone != null)
         {
-            timeLine.append("<")
-                    .append(se.getStart().withZoneSameInstant(zone).format(DateTimeFormatter.ofPattern("z")))
-                    .append(">");
+            timeLine.append("<");
+            RenderContext.ZONE.formatTo(start, timeLine);
+            timeLine.append(">");
         }
-        // append newline character & return full string
         timeLine.append("\n");
-        return timeLine.toString();
     }
 
 
     /**
+     * appends the line containing the time until the event begins or ends
      * @param se the ScheduleEntry object
-     * @return String representing the line containing the time until
+     * @param ctx the render context of the event's schedule
+     * @param line the line is appended to
      */
-    private static String generateTimerLine(ScheduleEntry se)
+    private static void generateTimerLine(ScheduleEntry se, RenderContext ctx, StringBuilder line)
     {
-        StringBuilder line = new StringBuilder();
-        List<ZoneId> altZones = Main.getScheduleManager().getAltZones(se.getChannelId());
-
-        if (altZones.isEmpty())
+        if (ctx.altZones.length == 0)
         {
             line.append("[")
-                    .append(se.getStart().getZone().getDisplayName(TextStyle.FULL, Locale.ENGLISH))
+                    .append(RenderContext.zoneName(se.getStart().getZone()))
                     .append("]");
             if (!se.hasStarted())
             {
@@ -417,7 +544,6 @@ public class MessageGenerator
             line.append(")");
         }
         line.append("\n");
-        return line.toString();
     }
 
     /**
@@ -485,12 +611,91 @@ public class MessageGenerator
     }
 
 
+    /**
+     * the instant at which the text genTimerHelper() renders for a time will next change
+     * @param time the start or end time of the event
+     * @param fineGrain whether minutes are rendered under an hour
+     * @param now the current time
+     * @return epoch millisecond, Long.MAX_VALUE if the text will not change again
+     */
+    private static long timerChange(ZonedDateTime time, boolean fineGrain, ZonedDateTime now)
+    {
+        long timeTil = now.until(time, ChronoUnit.SECONDS);
+        long at = time.toInstant().toEpochMilli();
+        if (fineGrain && timeTil < 60 * 60)
+        {   // next minute boundary, the text does not change once under a minute
+            long minutesTil = (long) Math.ceil((double) timeTil / 60);
+            return minutesTil <= 1 ? Long.MAX_VALUE : at - (minutesTil - 1) * 60 * 1000;
+        }
+        else if (timeTil < 24 * 60 * 60)
+        {   // next hour boundary, or the switch to minutes
+            long hoursTil = (long) Math.ceil((double) timeTil / (60 * 60));
+            if (hoursTil > 1) return at - (hoursTil - 1) * 60 * 60 * 1000;
+            return fineGrain ? at - (60 * 60 - 1) * 1000 : Long.MAX_VALUE;
+        }
+        else
+        {   // next midnight, or the switch to hours
+            long midnight = now.truncatedTo(ChronoUnit.DAYS).plusDays(1).toInstant().toEpochMilli();
+            return Math.min(midnight, at - (24 * 60 * 60 - 1) * 1000L);
+        }
+    }
+
+    /**
+     * determines when the timers displayed by an event's message (body and reminder footer) will next change
+     * @param se ScheduleEntry object
+     * @return epoch millisecond, Long.MAX_VALUE if the displayed timers will not change again
+     */
+    public static long nextTimerChange(ScheduleEntry se)
+    {
+        List<Date> reminders = new ArrayList<>(se.getReminders());
+        reminders.addAll(se.getEndReminders());
+        return nextTimerChange(Main.getScheduleManager().getStyle(se.getChannelId()),
+                se.hasStarted(), se.getStart(), se.getEnd(), reminders);
+    }
+
+    /**
+     * determines when the timers displayed by an event's message will next change,
+     * mirrors the timers rendered by generateEmbed()
+     * @param style display style of the event's schedule
+     * @param started whether the event has started
+     * @param start the event's start
+     * @param end the event's end
+     * @param reminders the event's reminders and end reminders
+     * @return epoch millisecond, Long.MAX_VALUE if the displayed timers will not change again
+     */
+    public static long nextTimerChange(String style, boolean started, ZonedDateTime start, ZonedDateTime end,
+                                       Collection<Date> reminders)
+    {
+        if (style.equalsIgnoreCase("timestamp"))
+        {   // rendered by the client
+            return Long.MAX_VALUE;
+        }
+
+        ZonedDateTime now = ZonedDateTime.now();
+        long next;
+        if (style.equalsIgnoreCase("narrow"))
+        {   // newtimer()
+            next = timerChange(start, true, now);
+        }
+        else
+        {   // generateTimerLine()
+            next = timerChange(started ? end : start, false, now);
+        }
+        for (Date reminder : reminders)
+        {   // generateFooter()
+            next = Math.min(next, timerChange(ZonedDateTime.ofInstant(reminder.toInstant(), ZoneId.systemDefault()), true, now));
+        }
+        return next;
+    }
+
+
     /**
      * creates the footer text to be added to the message embed
      * @param se ScheduleEntry object
+     * @param showReminders whether to include the time until each reminder
      * @return fully generated footer String
      */
-    private static String generateFooter(ScheduleEntry se)
+    private static String generateFooter(ScheduleEntry se, boolean showReminders)
     {
         // initialize footer with ID information
         StringBuilder footerStr = new StringBuilder("ID: " + ParsingUtilities.intToEncodedID(se.getId()));
@@ -508,7 +713,7 @@ public class MessageGenerator
         List<Date> reminders = new ArrayList<>();
         reminders.addAll(se.getReminders());
         reminders.addAll(se.getEndReminders());
-        if (!reminders.isEmpty())
+        if (showReminders && !reminders.isEmpty())
         {
             footerStr.append(" | remind in ");
             for (int i=0; i<reminders.size(); i++)
@@ -585,12 +790,10 @@ public class MessageGenerator
         return color;
     }
 
-        private static String newtimer(ScheduleEntry se)
+    private static void newtimer(ScheduleEntry se, StringBuilder line)
     {
-        StringBuilder line = new StringBuilder();
-                line.append("[Bắt đầu ");
-                genTimerHelper(se.getStart(), line, true, false);
-                line.append("]");
-                return line.toString();
+        line.append("[Bắt đầu ");
+        genTimerHelper(se.getStart(), line, true, false);
+        line.append("]");
     }
 }
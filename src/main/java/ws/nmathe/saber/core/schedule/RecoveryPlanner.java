@@ -0,0 +1,375 @@
+package ws.nmathe.saber.core.schedule;
+
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.exceptions.PermissionException;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.pullByFilter;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Works through the events which became overdue while a shard was unavailable (after a restart or shard outage).
+ * Actions which are still within their guild's late threshold are replayed in due-time order on the entry
+ * processor's per-guild queues, so that one guild's backlog does not hold up the others.
+ * Actions which are already too late to announce are resolved without messaging discord: started events are marked
+ * started, missed reminders are dropped, recurring events are fast-forwarded to their next occurrence and finished
+ * events are removed, all using bulk database writes.
+ * While a shard is recovering the regular entry processor leaves the shard's events alone.
+ */
+class RecoveryPlanner implements Runnable
+{
+    private static final int BATCH_SIZE = 500;      // guild IDs per query
+
+    private static final ExecutorService planExecutor = Executors.newCachedThreadPool();
+    private static final Set<Integer> recovering = ConcurrentHashMap.newKeySet();
+
+    private enum ActionType {START, END, REMIND, SPECIAL}
+
+    private final JDA shard;
+
+    // actions to replay, by guild
+    private final Map<String, List<Action>> replays = new HashMap<>();
+
+    // late actions, resolved in bulk
+    private final List<WriteModel<Document>> writes = new ArrayList<>();
+    private final List<Integer> written = new ArrayList<>();     // IDs of the events the writes change
+    private final List<ScheduleEntry> forwarded = new ArrayList<>();
+    private final List<ScheduleEntry> started = new ArrayList<>();
+    private final List<ScheduleEntry> removed = new ArrayList<>();
+    private int droppedReminders = 0;
+
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    private RecoveryPlanner(JDA shard)
+    {
+        this.shard = shard;
+    }
+
+    /**
+     * starts recovery for a shard which has just become ready,
+     * the shard's events are not processed by the entry processor until recovery has finished
+     * @param shard (JDA) the ready shard
+     */
+    static void recover(JDA shard)
+    {
+        if (recovering.add(getShardId(shard)))
+        {
+            planExecutor.execute(new RecoveryPlanner(shard));
+        }
+    }
+
+    /**
+     * @param shard (JDA) a shard
+     * @return (boolean) true if the shard's backlog is still being recovered
+     */
+    static boolean isRecovering(JDA shard)
+    {
+        return recovering.contains(getShardId(shard));
+    }
+
+    @Override
+    public void run()
+    {
+        long begin = System.currentTimeMillis();
+        try
+        {
+            // fill the caches the backlog is processed with
+            Main.getEntryManager().warm(this.shard);
+
+            // plan the backlog of each batch of guilds
+            List<Guild> guilds = this.shard.getGuilds();
+            for (int i = 0; i < guilds.size(); i += BATCH_SIZE)
+            {
+                List<String> ids = new ArrayList<>();
+                for (Guild guild : guilds.subList(i, Math.min(i + BATCH_SIZE, guilds.size())))
+                {
+                    ids.add(guild.getId());
+                }
+                this.plan(ids);
+            }
+
+            // resolve late actions, then replay the rest
+            this.resolveLate();
+            int replayed = this.replay();
+
+            Logging.info(this.getClass(), "Recovered shard " + getShardId(this.shard) + " in " +
+                    (System.currentTimeMillis() - begin) + "ms: " + replayed + " action(s) replayed (" +
+                    this.sent.get() + " on time, " + this.skipped.get() + " late), " +
+                    this.started.size() + " late start(s), " + this.droppedReminders + " missed reminder(s) dropped, " +
+                    this.forwarded.size() + " recurring event(s) fast-forwarded, " +
+                    this.removed.size() + " finished event(s) removed.");
+        }
+        catch (Exception e)
+        {
+            Logging.exception(this.getClass(), e);
+        }
+        finally
+        {
+            recovering.remove(getShardId(this.shard));
+        }
+    }
+
+    /**
+     * sorts each overdue event of the guilds into an action to replay or a late action to resolve
+     */
+    private void plan(List<String> guildIds)
+    {
+        Date now = new Date();
+        Bson overdue = or(
+                lte("announcements", now),
+                and(eq("hasStarted", true), lte("end", now)),
+                and(eq("hasStarted", false), lte("start", now)),
+                lte("reminders", now),
+                lte("end_reminders", now));
+
+        Map<String, ZonedDateTime> cutoffs = new HashMap<>();
+        for (Document document : Main.getDBDriver().getEventCollection().find(and(in("guildId", guildIds), overdue)))
+        {
+            ScheduleEntry se = new ScheduleEntry(document);
+            if (EntryProcessor.isPending(se.getId())) continue;  // already being handled
+
+            ZonedDateTime cutoff = cutoffs.computeIfAbsent(se.getGuildId(), guildId -> ZonedDateTime.now()
+                    .minusMinutes(Main.getGuildSettingsManager().getGuildSettings(guildId).getLateThreshold()));
+            ZonedDateTime current = ZonedDateTime.now();
+
+            if (se.hasStarted() ? !se.getEnd().isAfter(current) : !se.getStart().isAfter(current))
+            {   // the event is due to start or end
+                ZonedDateTime due = se.hasStarted() ? se.getEnd() : se.getStart();
+                if (!due.isBefore(cutoff))
+                {
+                    this.schedule(se, se.hasStarted() ? ActionType.END : ActionType.START, due.toInstant().toEpochMilli());
+                }
+                else if (!se.hasStarted() && se.getEnd().isAfter(current) && !se.getStart().isEqual(se.getEnd()))
+                {   // the event is still in progress, mark as started without an announcement
+                    this.writes.add(new UpdateOneModel<>(eq("_id", se.getId()),
+                            combine(set("hasStarted", true), pullByFilter(lte("reminders", now)), inc("version", 1))));
+                    this.written.add(se.getId());
+                    this.started.add(se);
+                }
+                else if (se.fastForward())
+                {   // the occurrence is over, skip ahead to the next occurrence
+                    List<Bson> updates = EntryDiff.diff(se.getPersisted(),
+                            EntryDiff.copy(Main.getEntryManager().toDocument(se)));
+                    updates.add(inc("version", 1));
+                    this.writes.add(new UpdateOneModel<>(EntryWriter.versionFilter(se.getId(), se.getVersion()),
+                            combine(updates)));
+                    this.written.add(se.getId());
+                    this.forwarded.add(se);
+                }
+                else
+                {   // the event is finished
+                    this.removed.add(se);
+                }
+                continue;
+            }
+
+            // the most recent reminder which has passed
+            Date reminder = null;
+            for (Date date : se.hasStarted() ? se.getEndReminders() : se.getReminders())
+            {
+                if (!date.after(now) && (reminder == null || date.after(reminder))) reminder = date;
+            }
+            if (reminder != null)
+            {
+                if (!reminder.toInstant().isBefore(cutoff.toInstant()))
+                {
+                    this.schedule(se, ActionType.REMIND, reminder.getTime());
+                }
+                else
+                {
+                    this.writes.add(new UpdateOneModel<>(eq("_id", se.getId()),
+                            combine(pullByFilter(lte("reminders", now)), pullByFilter(lte("end_reminders", now)),
+                                    inc("version", 1))));
+                    this.written.add(se.getId());
+                    this.droppedReminders++;
+                }
+            }
+            else if (!se.getAnnouncements().isEmpty())
+            {   // event specific announcements check their own lateness
+                Date earliest = Collections.min(se.getAnnouncements());
+                this.schedule(se, ActionType.SPECIAL, earliest.getTime());
+            }
+        }
+    }
+
+    private void schedule(ScheduleEntry se, ActionType type, long due)
+    {
+        this.replays.computeIfAbsent(se.getGuildId(), key -> new ArrayList<>()).add(new Action(se, type, due));
+    }
+
+    /**
+     * applies the late actions with bulk writes and cleans up discord afterwards
+     */
+    private void resolveLate()
+    {
+        if (!this.writes.isEmpty())
+        {
+            for (int i = 0; i < this.writes.size(); i += BATCH_SIZE)
+            {
+                Main.getDBDriver().getEventCollection()
+                        .bulkWrite(this.writes.subList(i, Math.min(i + BATCH_SIZE, this.writes.size())));
+            }
+            this.written.forEach(Main.getEntryManager().getCatalog()::invalidate);
+        }
+
+        // finished events are removed in one delete, counters are adjusted once per schedule
+        if (!this.removed.isEmpty())
+        {
+            List<Integer> ids = new ArrayList<>();
+            Map<String, Integer> perSchedule = new HashMap<>();
+            Map<String, String> scheduleGuild = new HashMap<>();
+            for (ScheduleEntry se : this.removed)
+            {
+                ids.add(se.getId());
+                perSchedule.merge(se.getChannelId(), 1, Integer::sum);
+                scheduleGuild.put(se.getChannelId(), se.getGuildId());
+            }
+            Main.getDBDriver().getEventCollection().deleteMany(in("_id", ids));
+            ids.forEach(Main.getEntryManager().getCatalog()::remove);
+            for (Map.Entry<String, Integer> entry : perSchedule.entrySet())
+            {
+                Main.getEntryManager().adjustEventCount(scheduleGuild.get(entry.getKey()), entry.getKey(), -entry.getValue());
+            }
+
+            // messages are deleted without being retrieved, queued requests are paced by jda
+            for (ScheduleEntry se : this.removed)
+            {
+                TextChannel channel = this.shard.getTextChannelById(se.getChannelId());
+                if (channel == null) continue;
+                try
+                {
+                    channel.deleteMessageById(se.getMessageId()).queue(null, e -> {});
+                }
+                catch (PermissionException ignored) { }
+            }
+        }
+
+        // displays of changed events are refreshed, and changed schedules re-sorted once
+        Set<String> schedules = new HashSet<>();
+        for (ScheduleEntry se : this.forwarded)
+        {
+            se.reloadDisplay();
+            schedules.add(se.getChannelId());
+        }
+        for (ScheduleEntry se : this.started)
+        {
+            se.setStarted(true);
+            se.reloadDisplay();
+        }
+        for (String channelId : schedules)
+        {
+            EntryManager.autoSort(true, channelId);
+        }
+    }
+
+    /**
+     * replays the actions in due-time order, each guild's actions run one at a time on the guild's queue
+     * @return (int) number of actions replayed
+     */
+    private int replay() throws InterruptedException
+    {
+        List<Action> order = new ArrayList<>();
+        for (List<Action> actions : this.replays.values())
+        {
+            order.addAll(actions);
+        }
+        order.sort(Comparator.comparingLong(action -> action.due));
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Action action : order)
+        {
+            Future<?> future = EntryProcessor.submit(action.entry, () -> this.execute(action));
+            if (future != null) futures.add(future);
+        }
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                Logging.exception(this.getClass(), e.getCause());
+            }
+        }
+        return futures.size();
+    }
+
+    private void execute(Action action)
+    {
+        ScheduleEntry se = action.entry;
+        Integer threshold = Main.getGuildSettingsManager().getGuildSettings(se.getGuildId()).getLateThreshold();
+        boolean late = action.due < System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(threshold);
+        try
+        {
+            switch (action.type)
+            {
+                case END:
+                    se.end();
+                    break;
+                case START:
+                    se.start();
+                    break;
+                case REMIND:
+                    se.remind();
+                    break;
+                case SPECIAL:
+                    se.announce();
+                    break;
+            }
+            if (late) this.skipped.incrementAndGet();
+            else this.sent.incrementAndGet();
+        }
+        catch (CancellationException e)
+        {
+            Logging.warn(this.getClass(), "Stopped abandoned replay of '"+se.getTitle()+"' ["+se.getId()+"]");
+        }
+        catch (PermissionException e)
+        {
+            Logging.warn(this.getClass(), "Permission error on '"+se.getTitle()+"' ["+se.getId()+"]: "+e.getMessage());
+        }
+        catch (Exception e)
+        {
+            Logging.warn(this.getClass(), "Error occurred when replaying event action!");
+            Logging.exception(this.getClass(), e);
+        }
+    }
+
+    private static int getShardId(JDA shard)
+    {
+        return shard.getShardInfo() == null ? 0 : shard.getShardInfo().getShardId();
+    }
+
+    /**
+     * an overdue event action
+     */
+    private static class Action
+    {
+        final ScheduleEntry entry;
+        final ActionType type;
+        final long due;
+
+        Action(ScheduleEntry entry, ActionType type, long due)
+        {
+            this.entry = entry;
+            this.type = type;
+            this.due = due;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ws.nmathe.saber.core.schedule;
+
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The schedule settings used to render an event display, resolved once per schedule.
+ * A context is immutable and is reused for as long as the schedule's cached settings are unchanged and the
+ * alt zone offsets it sorted by are still in effect (until the next daylight saving transition of any alt zone).
+ */
+final class RenderContext
+{
+    static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MMM d");
+    static final DateTimeFormatter ZONE = DateTimeFormatter.ofPattern("z");
+    static final DateTimeFormatter TIME_24 = DateTimeFormatter.ofPattern("H:mm");
+    static final DateTimeFormatter TIME_12 = DateTimeFormatter.ofPattern("h:mm a");
+    static final DateTimeFormatter DEADLINE = DateTimeFormatter.ofPattern("HH:mm");
+
+    private static final Map<String, RenderContext> contexts = new ConcurrentHashMap<>();
+    private static final Map<ZoneId, String> zoneNames = new ConcurrentHashMap<>();
+
+    private final Document settings;    // identity of the settings the context was resolved from
+    private final long validUntil;
+
+    final String style;
+    final DateTimeFormatter time;
+    final boolean rsvpEnabled;
+    final Map<String, String> rsvpOptions;
+    final ZoneId[] altZones;            // sorted by offset, smallest (westernmost) first
+    final int[] altOffsets;             // total seconds, parallel to altZones
+
+    private RenderContext(String cId, Document settings)
+    {
+        this.settings = settings;
+        this.style = Main.getScheduleManager().getStyle(cId).toLowerCase();
+        this.time = Main.getScheduleManager().getClockFormat(cId).equals("24") ? TIME_24 : TIME_12;
+        this.rsvpEnabled = Main.getScheduleManager().isRSVPEnabled(cId);
+        this.rsvpOptions = this.rsvpEnabled ?
+                Collections.unmodifiableMap(new LinkedHashMap<>(Main.getScheduleManager().getRSVPOptions(cId))) :
+                Collections.emptyMap();
+
+        // sort the alt zones by their current offsets, which hold until the next transition of any of them
+        Instant now = Instant.now();
+        long until = Long.MAX_VALUE;
+        List<ZoneId> zones = Main.getScheduleManager().getAltZones(cId);
+        zones.sort((zoneId, t1) -> t1.getRules().getOffset(now).compareTo(zoneId.getRules().getOffset(now)));
+        this.altZones = zones.toArray(new ZoneId[0]);
+        this.altOffsets = new int[this.altZones.length];
+        for (int i = 0; i < this.altZones.length; i++)
+        {
+            this.altOffsets[i] = this.altZones[i].getRules().getOffset(now).getTotalSeconds();
+            ZoneOffsetTransition transition = this.altZones[i].getRules().nextTransition(now);
+            if (transition != null) until = Math.min(until, transition.getInstant().toEpochMilli());
+        }
+        this.validUntil = until;
+    }
+
+    /**
+     * retrieves the render context of a schedule, resolving it again if the schedule's settings have changed
+     * @param cId (String) schedule ID
+     * @return (RenderContext) context
+     */
+    static RenderContext of(String cId)
+    {
+        Document settings = Main.getScheduleManager().getSettings(cId);
+        RenderContext context = contexts.get(cId);
+        if (context == null || context.settings != settings || System.currentTimeMillis() >= context.validUntil)
+        {
+            context = new RenderContext(cId, settings);
+            if (settings != null) contexts.put(cId, context);
+            else contexts.remove(cId);
+        }
+        return context;
+    }
+
+    /**
+     * the zones to list an event's times in, the event's own zone inserted among the alt zones by offset
+     * (after any alt zones with the same offset, as the zones used to be sorted with the event's zone last)
+     * @param primary (ZoneId) the event's zone
+     * @return (ZoneId[]) zones sorted by offset, smallest first
+     */
+    ZoneId[] zonesWith(ZoneId primary)
+    {
+        int offset = primary.getRules().getOffset(Instant.now()).getTotalSeconds();
+        ZoneId[] zones = new ZoneId[this.altZones.length + 1];
+        int i = 0;
+        while (i < this.altZones.length && this.altOffsets[i] <= offset)
+        {
+            zones[i] = this.altZones[i];
+            i++;
+        }
+        zones[i] = primary;
+        System.arraycopy(this.altZones, i, zones, i + 1, this.altZones.length - i);
+        return zones;
+    }
+
+    /**
+     * @param zone (ZoneId) a zone
+     * @return (String) the zone's full english display name
+     */
+    static String zoneName(ZoneId zone)
+    {
+        return zoneNames.computeIfAbsent(zone, key -> key.getDisplayName(TextStyle.FULL, Locale.ENGLISH));
+    }
+}
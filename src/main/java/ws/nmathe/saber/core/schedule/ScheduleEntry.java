@@ -4,7 +4,6 @@ import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.entities.emoji.Emoji;
 import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
-import net.dv8tion.jda.api.exceptions.PermissionException;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.utils.MessageUtilities;
@@ -78,6 +77,10 @@ public class ScheduleEntry
     private Map<String, String> aTargets;   // maps ID to channel target
     private Map<String, String> aMessages;  // maps ID to announcement message
 
+    // the event as last read from or written to the database, used to write only what has changed
+    private Document persisted;
+    private long version;
+
 
     /**
      * Constructor for a partially initialized ScheduleEntry
@@ -225,6 +228,10 @@ public class ScheduleEntry
                 null : entryDocument.getString("color");
         this.nonEmbeded = entryDocument.get("non_embeded") == null?
                 null : entryDocument.getString("non_embeded");
+
+        // detached copy, as the fields above share lists and maps with the document
+        this.persisted = EntryDiff.copy(entryDocument);
+        this.version = EntryWriter.getVersion(entryDocument);
     }
 
 
@@ -232,6 +239,7 @@ public class ScheduleEntry
     {
         Message message = this.getMessageObject();
         if (message == null) return;
+        ActionScheduler.checkCancelled();   // do not update the event if the action was abandoned meanwhile
         this.announce(message);
     }
 
@@ -273,10 +281,10 @@ public class ScheduleEntry
             if (late)
             {
                 String text = ParsingUtilities.processText(this.aMessages.get(key), this, true);
-                String target = this.aTargets.get(key);
+                long[] channels = Main.getAnnouncementRouter().route(message.getGuild(), this.aTargets.get(key));
 
                 // send announcement
-                this.makeAnnouncement(message, text, target);
+                this.makeAnnouncement(message, text, channels);
                 Logging.event(this.getClass(), "Sent special announcement for event " +
                         this.getTitle() + " [" + this.getId() + "]");
             }
@@ -292,6 +300,7 @@ public class ScheduleEntry
     {
         Message message = this.getMessageObject();
         if (message == null) return;
+        ActionScheduler.checkCancelled();   // do not update the event if the action was abandoned meanwhile
         this.remind(message);
     }
 
@@ -322,7 +331,7 @@ public class ScheduleEntry
 
         // parse message and get the target channels
         String text = ParsingUtilities.processText(Main.getScheduleManager().getReminderFormat(this.chanId), this, true);
-        String identifier = Main.getScheduleManager().getReminderChan(this.chanId);
+        long[] channels = Main.getAnnouncementRouter().route(message.getGuild(), this.chanId, AnnouncementRouter.Kind.REMINDER);
 
         if (lastDate != null)
         {
@@ -332,7 +341,7 @@ public class ScheduleEntry
             {   // send reminder
                 if (!this.quietRemind)
                 {
-                    this.makeAnnouncement(message, text, identifier);
+                    this.makeAnnouncement(message, text, channels);
                     Logging.event(this.getClass(), "Sent reminder for event " + this.getTitle() + " [" + this.getId() + "]");
                 }
                 else
@@ -352,6 +361,7 @@ public class ScheduleEntry
     {
         Message message = this.getMessageObject();
         if (message == null) return;
+        ActionScheduler.checkCancelled();   // do not update the event if the action was abandoned meanwhile
         this.start(message);
     }
 
@@ -360,9 +370,9 @@ public class ScheduleEntry
      */
     public void start(Message message)
     {
-        // create start message and grab identifier before modifying entry
+        // create start message and resolve the announcement channels before modifying entry
         String text = ParsingUtilities.processText(Main.getScheduleManager().getStartAnnounceFormat(this.chanId), this, true);
-        String identifier = Main.getScheduleManager().getStartAnnounceChan(this.chanId);
+        long[] channels = Main.getAnnouncementRouter().route(message.getGuild(), this.chanId, AnnouncementRouter.Kind.START);
 
         // is the announcement late?
         Integer threshold = Main.getGuildSettingsManager().getGuildSettings(this.getGuildId()).getLateThreshold();
@@ -385,7 +395,7 @@ public class ScheduleEntry
             // send start announcement
             if (!this.quietStart)
             {
-                this.makeAnnouncement(message, text, identifier);
+                this.makeAnnouncement(message, text, channels);
                 String logStr = "Sent start announcement for event \"" + this.getTitle() + "\" [" + this.entryId + "]";
                 Logging.event(this.getClass(), logStr);
             }
@@ -406,6 +416,7 @@ public class ScheduleEntry
     {
         Message message = this.getMessageObject();
         if (message == null) return;
+        ActionScheduler.checkCancelled();   // do not update the event if the action was abandoned meanwhile
         this.end(message);
     }
 
@@ -418,7 +429,7 @@ public class ScheduleEntry
         // create the announcement message before modifying event
         String text = ParsingUtilities.processText(Main.getScheduleManager()
                 .getEndAnnounceFormat(this.chanId), this, true);
-        String identifier = Main.getScheduleManager().getEndAnnounceChan(this.chanId);
+        long[] channels = Main.getAnnouncementRouter().route(message.getGuild(), this.chanId, AnnouncementRouter.Kind.END);
 
         // check if the event is late
         Integer threshold = Main.getGuildSettingsManager().getGuildSettings(this.getGuildId()).getLateThreshold();
@@ -432,7 +443,7 @@ public class ScheduleEntry
         {
             if (!this.quietEnd)
             {
-                this.makeAnnouncement(message, text, identifier);
+                this.makeAnnouncement(message, text, channels);
                 String logStr = "Sent ended announcement for event \"" + this.getTitle() + "\" [" + this.entryId + "]";
                 Logging.event(this.getClass(), logStr);
             }
@@ -462,29 +473,8 @@ public class ScheduleEntry
 
     private void repeat(Message message)
     {
-        if (this.recurrence.shouldRepeat(this.start)) // find next repeat date and edit the message
-        {
-            this.setNextOccurrence();
-            this.setStarted(false);
-
-            // if the next time an event repeats is after the event's expire, delete the event
-            ZonedDateTime expire = this.recurrence.getExpire();
-            if (expire != null && expire.isBefore(this.getStart()))
-            {
-                Main.getEntryManager().removeEntry(this.entryId);
-                MessageUtilities.deleteMsg(message, null);
-                return;
-            }
-
-            // reload time-dependent announcements
-            this.regenerateAnnouncementOverrides();
-            this.reloadReminders(Main.getScheduleManager().getReminders(this.chanId));
-            this.reloadEndReminders(Main.getScheduleManager().getEndReminders(this.chanId));
-
-            // clear rsvp members list and reload reminders
-            this.rsvpMembers = new HashMap<>();
-
-            // send changes to database
+        if (this.fastForward())
+        {   // send changes to database
             Main.getEntryManager().updateEntry(this, true);
         }
         else // otherwise remove entry and delete the message
@@ -496,46 +486,51 @@ public class ScheduleEntry
 
 
     /**
-     * processes a channel identifier (either a channel name or snowflake ID) into a valid channel
-     * and sends an event announcement
+     * advances the event to its next occurrence, without writing to the database
+     * @return (boolean) false if the event has no further occurrences and should be removed
      */
-    private void makeAnnouncement(Message message, String content, String target)
+    boolean fastForward()
     {
-        // don't send to any announcement if target is null
-        if (target != null)
+        if (!this.recurrence.shouldRepeat(this.start))
+        {
+            return false;
+        }
+        this.setNextOccurrence();
+        this.setStarted(false);
+
+        // if the next time an event repeats is after the event's expire
+        // or the event has exhausted it's occurrence count, the event should be removed
+        ZonedDateTime expire = this.recurrence.getExpire();
+        Integer count = this.recurrence.getCount();
+        if ((expire != null && expire.isBefore(this.getStart()))
+                || (count != null && this.recurrence.countRemaining(this.getStart()) < 1))
         {
-            boolean success = false;
+            return false;
+        }
+
+        // reload time-dependent announcements
+        this.regenerateAnnouncementOverrides();
+        this.reloadReminders(Main.getScheduleManager().getReminders(this.chanId));
+        this.reloadEndReminders(Main.getScheduleManager().getEndReminders(this.chanId));
+
+        // clear rsvp members list
+        this.rsvpMembers = new HashMap<>();
+        return true;
+    }
 
-            // the identifier is an all digits sting,
-            // treat the identifier as a snowflake (channel) ID
-            if(target.matches("([c])?\\d+"))
-            {
-                try
-                {
-                    TextChannel channel = message.getGuild().getTextChannelById(target);
-                    if (channel != null)
-                    {
-                        MessageUtilities.sendMsg(content, channel, null);
-                        success = true;
-                    }
-                }
-                catch (PermissionException ignored)
-                { /* dont care */}
-                catch (Exception e)
-                {
-                    Logging.warn(this.getClass(), "Error when sending announcement: "+e.getMessage());
-                }
-            }
 
-            // if the announcement has not sent using the identifier as a snowflake,
-            // treat the identifier as a channel name
-            if (!success && !target.isEmpty())
+    /**
+     * sends an event announcement to each of the routed channels
+     */
+    private void makeAnnouncement(Message message, String content, long[] channels)
+    {
+        for (long channelId : channels)
+        {
+            ActionScheduler.checkCancelled();
+            TextChannel channel = message.getGuild().getTextChannelById(channelId);
+            if (channel != null)
             {
-                List<TextChannel> channels = message.getGuild().getTextChannelsByName(target, true);
-                for (TextChannel chan : channels)
-                {
-                    MessageUtilities.sendMsg(content, chan, null);
-                }
+                MessageUtilities.sendMsg(content, channel, null);
             }
         }
     }
@@ -547,6 +542,7 @@ public class ScheduleEntry
      */
     void reloadDisplay()
     {
+        Main.getEntryManager().getRefresher().rendered(this);
         this.getMessageObject((message)->
                 MessageUtilities.editMsg(MessageGenerator.generate(this, message), message, null));
     }
@@ -729,20 +725,25 @@ public class ScheduleEntry
 
     /**
      * updates the schedule entry's start and end date-times to the next
-     * scheduled occurrence for the event
+     * scheduled occurrence for the event which has not yet ended,
+     * occurrences missed while the bot was unavailable are skipped in one step
      */
     private ScheduleEntry setNextOccurrence()
     {
-        // update to next occurrence
-        this.start = this.recurrence.next(this.start);
-        this.end   = this.recurrence.next(this.end);
+        // the end keeps the same (local) offset from the start across occurrences
+        Duration length = Duration.between(this.start.toLocalDateTime(), this.end.toLocalDateTime());
 
-        ZonedDateTime now = ZonedDateTime.now();
-        if (this.start.isBefore(now))
+        // update to the first occurrence which ends after the current time
+        ZonedDateTime after = ZonedDateTime.now().minus(Duration.between(this.start, this.end));
+        ZonedDateTime next = this.recurrence.next(this.start, after);
+        if (!next.isAfter(this.start))
         {
             Logging.warn(this.getClass(),
                     "The next occurrence date for event #"+this.getId()+" is invalid! ("+this.recurrence+")");
         }
+
+        this.start = next;
+        this.end   = ZonedDateTime.of(next.toLocalDateTime().plus(length), next.getZone());
         return this;
     }
 
@@ -977,6 +978,22 @@ public class ScheduleEntry
         return this.announcements;
     }
 
+    /**
+     * the event's document as last read from or written to the database, null if the event was not read
+     */
+    Document getPersisted()
+    {
+        return this.persisted;
+    }
+
+    /**
+     * the version of the event's document when it was last read or written
+     */
+    long getVersion()
+    {
+        return this.version;
+    }
+
     public String getMessageId()
     {
         return this.msgId;
@@ -1206,6 +1223,15 @@ public class ScheduleEntry
         return this;
     }
 
+    /**
+     * records the document which has been written for the event
+     */
+    void setPersisted(Document persisted, long version)
+    {
+        this.persisted = persisted;
+        this.version = version;
+    }
+
     /**
      * flag the event as having been started
      */
@@ -0,0 +1,242 @@
+package ws.nmathe.saber.core.schedule;
+
+import com.mongodb.client.MongoCursor;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageChannel;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.exceptions.PermissionException;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+import ws.nmathe.saber.utils.MessageUtilities;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Re-applies a schedule's settings to every event on the schedule, in the background.
+ * All steps requested for a message are done in one pass (the message is retrieved once), and
+ * discord requests are paced per channel so that large schedules do not flood the channel's rate limit bucket.
+ * Progress and completion are reported to the channel the job was requested from.
+ */
+public class ScheduleJob implements Runnable
+{
+    /** the work to do for each event on the schedule */
+    public enum Step
+    {
+        REMINDERS,          // recompute the event's reminders from the schedule's reminder settings
+        END_REMINDERS,      // recompute the event's end reminders from the schedule's settings
+        CLEAR_REACTIONS,    // remove all reactions from the event's message
+        RESET_REACTIONS,    // remove all reactions and add the schedule's rsvp reactions
+        RENDER              // regenerate the event's message
+    }
+
+    // minimum time between two discord requests on the same channel
+    private static final long PACE = 300;
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(15);
+    private static final Map<String, Long> nextSlot = new ConcurrentHashMap<>();
+
+    private final String channelId;
+    private final Set<Step> steps = EnumSet.noneOf(Step.class);
+    private final MessageChannel report;
+    private boolean started = false;
+
+    ScheduleJob(String channelId, Set<Step> steps, MessageChannel report)
+    {
+        this.channelId = channelId;
+        this.steps.addAll(steps);
+        this.report = report;
+    }
+
+    /**
+     * merges more steps into a job which has not yet started
+     * @param more (Set) additional steps
+     * @return (boolean) false if the job has already started, in which case a new job is needed
+     */
+    synchronized boolean merge(Set<Step> more)
+    {
+        if (this.started) return false;
+        this.steps.addAll(more);
+        return true;
+    }
+
+    private synchronized Set<Step> start()
+    {
+        this.started = true;
+        return EnumSet.copyOf(this.steps);
+    }
+
+    @Override
+    public void run()
+    {
+        Set<Step> steps = this.start();
+        String guildId = this.getGuildId();
+        JDA jda = guildId == null ? null : Main.getShardManager().getJDA(guildId);
+        TextChannel channel = jda == null ? null : jda.getTextChannelById(this.channelId);
+        if (channel == null) return;
+
+        // settings are read once for the whole job
+        List<Integer> reminders = Main.getScheduleManager().getReminders(this.channelId);
+        List<Integer> endReminders = Main.getScheduleManager().getEndReminders(this.channelId);
+        Map<String, String> options = Main.getScheduleManager().getRSVPOptions(this.channelId);
+        String clearEmoji = Main.getScheduleManager().getRSVPClear(this.channelId);
+
+        long total = Main.getScheduleManager().getEventCount(this.channelId);
+        this.report("Updating " + total + " event(s) on <#" + this.channelId + ">. . .");
+
+        // events are streamed, only the message ID is needed when no step uses the event itself
+        boolean needsEntry = steps.contains(Step.RENDER) || steps.contains(Step.RESET_REACTIONS)
+                || steps.contains(Step.REMINDERS) || steps.contains(Step.END_REMINDERS);
+        int done = 0, failed = 0;
+        long lastReport = System.currentTimeMillis();
+        MongoCursor<Document> cursor = needsEntry ?
+                Main.getDBDriver().getEventCollection().find(eq("channelId", this.channelId))
+                        .noCursorTimeout(true).iterator() :
+                Main.getDBDriver().getEventCollection().find(eq("channelId", this.channelId))
+                        .projection(fields(include("_id", "messageId"))).noCursorTimeout(true).iterator();
+        try
+        {
+            while (cursor.hasNext())
+            {
+                Document document = cursor.next();
+                try
+                {
+                    ScheduleEntry se = needsEntry ? new ScheduleEntry(document) : null;
+                    this.process(steps, channel, document.getString("messageId"), se,
+                            reminders, endReminders, options, clearEmoji);
+                }
+                catch (PermissionException | ErrorResponseException e)
+                {
+                    failed++;
+                }
+                catch (Exception e)
+                {
+                    failed++;
+                    Logging.exception(this.getClass(), e);
+                }
+                done++;
+
+                if (System.currentTimeMillis() - lastReport > PROGRESS_INTERVAL)
+                {
+                    this.report("Updated " + done + " of " + total + " event(s) on <#" + this.channelId + ">. . .");
+                    lastReport = System.currentTimeMillis();
+                }
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        String msg = "Finished updating " + (done - failed) + " event(s) on <#" + this.channelId + ">.";
+        if (failed > 0)
+        {
+            msg += " " + failed + " event message(s) could not be updated.";
+        }
+        this.report(msg);
+    }
+
+    /**
+     * applies every step to a single event
+     */
+    private void process(Set<Step> steps, TextChannel channel, String messageId, ScheduleEntry se,
+                         List<Integer> reminders, List<Integer> endReminders,
+                         Map<String, String> options, String clearEmoji)
+    {
+        // database steps
+        if (steps.contains(Step.REMINDERS) || steps.contains(Step.END_REMINDERS))
+        {
+            if (steps.contains(Step.REMINDERS)) se.reloadReminders(reminders);
+            if (steps.contains(Step.END_REMINDERS)) se.reloadEndReminders(endReminders);
+            Main.getDBDriver().getEventCollection().updateOne(eq("_id", se.getId()),
+                    combine(set("reminders", se.getReminders()), set("end_reminders", se.getEndReminders()),
+                            inc("version", 1)));
+            Main.getEntryManager().getCatalog().invalidate(se.getId());
+        }
+
+        // discord steps, the message is retrieved once
+        if (!steps.contains(Step.CLEAR_REACTIONS) && !steps.contains(Step.RESET_REACTIONS)
+                && !steps.contains(Step.RENDER))
+        {
+            return;
+        }
+        this.pace();
+        Message message = channel.retrieveMessageById(messageId).complete();
+        if (steps.contains(Step.CLEAR_REACTIONS) || steps.contains(Step.RESET_REACTIONS))
+        {
+            if (!message.getReactions().isEmpty())
+            {
+                this.pace();
+                message.clearReactions().complete();
+            }
+        }
+        if (steps.contains(Step.RESET_REACTIONS))
+        {
+            for (Emoji emoji : EntryManager.getRSVPEmojis(options, clearEmoji, se))
+            {
+                this.pace();
+                message.addReaction(emoji).complete();
+            }
+        }
+        if (steps.contains(Step.RENDER))
+        {
+            MessageEditData content = MessageGenerator.generate(se, message);
+            this.pace();
+            MessageUtilities.editMsg(content, message);
+        }
+    }
+
+    /**
+     * blocks until the channel's next request slot
+     */
+    private void pace()
+    {
+        long now = System.currentTimeMillis();
+        long slot = nextSlot.merge(this.channelId, now + PACE, (prev, next) -> Math.max(prev, now) + PACE) - PACE;
+        if (slot > now)
+        {
+            try
+            {
+                Thread.sleep(slot - now);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void report(String content)
+    {
+        if (this.report != null)
+        {
+            MessageUtilities.sendMsg(content, this.report, null);
+        }
+    }
+
+    private String getGuildId()
+    {
+        Document doc = Main.getDBDriver().getScheduleCollection()
+                .find(eq("_id", this.channelId))
+                .projection(fields(include("guildId")))
+                .first();
+        return doc == null ? null : doc.getString("guildId");
+    }
+
+    String getChannelId()
+    {
+        return this.channelId;
+    }
+}
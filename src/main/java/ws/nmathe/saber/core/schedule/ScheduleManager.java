@@ -9,13 +9,18 @@ import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.exceptions.PermissionException;
 import net.dv8tion.jda.api.managers.channel.concrete.TextChannelManager;
 
+import com.mongodb.client.result.DeleteResult;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.database.DocumentCache;
+import ws.nmathe.saber.core.database.Invalidation;
 import ws.nmathe.saber.utils.Logging;
 
 import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -23,9 +28,13 @@ import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.in;
 import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.inc;
 import static com.mongodb.client.model.Updates.set;
 
 /**
@@ -36,6 +45,14 @@ public class ScheduleManager
     private Set<String> locks = new HashSet<>(); // locks channels from running multiple sorts simultaneously
     private Integer MAX_SIZE_TO_SYNC = 15;  // do not sort schedules more than this number of events
 
+    // background jobs which re-apply schedule settings to events, at most one pending job per schedule
+    private ExecutorService jobExecutor = Executors.newFixedThreadPool(2);
+    private final Map<String, ScheduleJob> pendingJobs = new ConcurrentHashMap<>();
+
+    // schedule settings documents, null for channels which are not schedules
+    private DocumentCache<String, Document> settingsCache = new DocumentCache<>(Invalidation.Source.SCHEDULES,
+            cId -> Main.getDBDriver().getScheduleRepository().find(cId));
+
     /**
      * starts a scheduled thread responsible for synchronizing channels with their linked google calendar counterparts
      * init() need not be called if the bot has not been configured to use a google service account
@@ -46,6 +63,34 @@ public class ScheduleManager
         syncScheduler.scheduleAtFixedRate(new ScheduleSyncer(), 30, 30, TimeUnit.MINUTES);
     }
 
+    /**
+     * queues a background job which applies the steps to every event on a schedule
+     * if a job for the schedule is already waiting to run the steps are merged into that job
+     * @param cId (String) ID of channel / schedule (synonymous)
+     * @param steps (Set) the work to do for each event
+     * @param report (MessageChannel) channel to report progress to, may be null
+     */
+    public void rework(String cId, Set<ScheduleJob.Step> steps, MessageChannel report)
+    {
+        ScheduleJob pending = this.pendingJobs.get(cId);
+        if (pending != null && pending.merge(steps)) return;
+
+        ScheduleJob job = new ScheduleJob(cId, steps, report);
+        this.pendingJobs.put(cId, job);
+        this.jobExecutor.execute(() ->
+        {
+            this.pendingJobs.remove(cId, job);
+            try
+            {
+                job.run();
+            }
+            catch (Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+        });
+    }
+
     /**
      * Create a new schedule and it's associated schedule channel, if the bot cannot create the
      * new channel no schedule will be created
@@ -161,9 +206,13 @@ public class ScheduleManager
                         .append("sync_length", 7)
                         .append("auto_sort", 0)
                         .append("sync_address", "off")
-                        .append("rsvp_options", default_rsvp);
+                        .append("rsvp_options", default_rsvp)
+                        .append("event_count", 0);
 
         Main.getDBDriver().getScheduleCollection().insertOne(schedule);
+        this.settingsCache.invalidate(schedule.get("_id"));
+        Main.getEntryManager().getCatalog().invalidateSchedules(guildId);
+        this.adjustScheduleCount(guildId, 1, 0);
     }
 
     /**
@@ -193,8 +242,23 @@ public class ScheduleManager
             Logging.exception(this.getClass(), e);
         }
 
-        Main.getDBDriver().getEventCollection().deleteMany(eq("channelId", cId));
-        Main.getDBDriver().getScheduleCollection().deleteOne(eq("_id", cId));
+        this.removeSchedule(doc.getString("guildId"), cId);
+    }
+
+    /**
+     * removes a schedule's database entry and all of it's events, and updates the guild's counters
+     * @param gId (String) guild ID
+     * @param cId (String) ID of channel / schedule (synonymous)
+     */
+    public void removeSchedule(String gId, String cId)
+    {
+        DeleteResult events = Main.getDBDriver().getEventCollection().deleteMany(eq("channelId", cId));
+        DeleteResult schedules = Main.getDBDriver().getScheduleCollection().deleteOne(eq("_id", cId));
+        this.settingsCache.invalidate(cId);
+        Main.getAnnouncementRouter().invalidateSchedule(cId);
+        Main.getEntryManager().getCatalog().removeChannel(cId);
+        Main.getEntryManager().getCatalog().invalidateSchedules(gId);
+        this.adjustScheduleCount(gId, (int) -schedules.getDeletedCount(), (int) -events.getDeletedCount());
     }
 
     /**
@@ -204,7 +268,7 @@ public class ScheduleManager
      */
     public boolean isSchedule(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         return settings != null;
     }
 
@@ -215,13 +279,89 @@ public class ScheduleManager
      */
     public boolean isLimitReached(String gId)
     {
-        long count = Main.getDBDriver().getScheduleCollection().count(eq("guildId",gId));
+        long count = this.getScheduleCount(gId);
         return Main.getBotSettingsManager().getMaxSchedules() < count;
     }
 
-    private long getScheduleSize(String cId)
+    /**
+     * retrieves the number of schedules on a guild from the guild document's counter
+     * the counter is initialized from the schedules collection if it does not yet exist
+     * @param gId (String) guild ID
+     * @return (long) number of schedules
+     */
+    public long getScheduleCount(String gId)
+    {
+        Document guildDoc = Main.getDBDriver().getGuildCollection()
+                .find(eq("_id", gId))
+                .projection(fields(include("schedule_count")))
+                .first();
+        if (guildDoc != null && guildDoc.get("schedule_count") != null)
+        {
+            return ((Number) guildDoc.get("schedule_count")).longValue();
+        }
+
+        long count = Main.getDBDriver().getScheduleCollection().count(eq("guildId", gId));
+        Main.getDBDriver().getGuildCollection().updateOne(eq("_id", gId), set("schedule_count", count));
+        return count;
+    }
+
+    /**
+     * retrieves the number of events on a schedule from the schedule document's counter
+     * the counter is initialized from the events collection if it does not yet exist
+     * @param cId (String) schedule ID
+     * @return (long) number of events
+     */
+    public long getEventCount(String cId)
+    {
+        Document settings = Main.getDBDriver().getScheduleCollection()
+                .find(eq("_id", cId))
+                .projection(fields(include("event_count")))
+                .first();
+        if (settings == null)
+        {
+            return 0;
+        }
+        return this.getEventCount(settings);
+    }
+
+    /**
+     * reads the event counter from a (projected) schedule document
+     * the counter is initialized from the events collection if it does not yet exist
+     * @param settings schedule document, which includes at least the _id and event_count fields
+     * @return (long) number of events
+     */
+    public long getEventCount(Document settings)
     {
-        return Main.getDBDriver().getScheduleCollection().count(eq("channelId",cId));
+        if (settings.get("event_count") != null)
+        {
+            return ((Number) settings.get("event_count")).longValue();
+        }
+
+        String cId = settings.getString("_id");
+        long count = Main.getDBDriver().getEventCollection().count(eq("channelId", cId));
+        Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("event_count", count));
+        return count;
+    }
+
+    /**
+     * adjusts the schedule and event counters kept on a guild's document
+     * counters which have not yet been initialized are left untouched (they are counted on first read)
+     * @param gId (String) guild ID
+     * @param schedules number of schedules added (or removed, if negative)
+     * @param events number of events added (or removed, if negative)
+     */
+    private void adjustScheduleCount(String gId, int schedules, int events)
+    {
+        if (schedules != 0)
+        {
+            Main.getDBDriver().getGuildCollection()
+                    .updateOne(and(eq("_id", gId), exists("schedule_count")), inc("schedule_count", schedules));
+        }
+        if (events != 0)
+        {
+            Main.getDBDriver().getGuildCollection()
+                    .updateOne(and(eq("_id", gId), exists("event_count")), inc("event_count", events));
+        }
     }
 
     /**
@@ -266,7 +406,7 @@ public class ScheduleManager
      */
     public void sortSchedule(String cId, boolean reverseOrder)
     {
-        if(this.getScheduleSize(cId) > MAX_SIZE_TO_SYNC) return;
+        if(this.getEventCount(cId) > MAX_SIZE_TO_SYNC) return;
         if(this.isLocked(cId)) return;
 
         this.lock(cId); // lock the channel
@@ -324,12 +464,16 @@ public class ScheduleManager
                     top.setMessageObject(min.getMessageObject());
                     Main.getDBDriver().getEventCollection().updateOne(
                             eq("_id", top.getId()),
-                            new Document("$set", new Document("messageId", min.getMessageObject().getId())));
+                            new Document("$set", new Document("messageId", min.getMessageObject().getId()))
+                                    .append("$inc", new Document("version", 1)));
+                    Main.getEntryManager().getCatalog().invalidate(top.getId());
 
                     min.setMessageObject(tmp);
                     Main.getDBDriver().getEventCollection().updateOne(
                             eq("_id", min.getId()),
-                            new Document("$set", new Document("messageId", tmp.getId())));
+                            new Document("$set", new Document("messageId", tmp.getId()))
+                                    .append("$inc", new Document("version", 1)));
+                    Main.getEntryManager().getCatalog().invalidate(min.getId());
                 }
 
                 // reload display
@@ -358,9 +502,48 @@ public class ScheduleManager
      *
      */
 
+    /**
+     * retrieves the (cached) settings document of a schedule, the document must not be modified
+     * @param cId (String) ID of channel / schedule (synonymous)
+     * @return (Document) settings, or null if the channel is not a schedule
+     */
+    Document getSettings(String cId)
+    {
+        return this.settingsCache.get(cId);
+    }
+
+    /**
+     * loads the settings of every schedule of many guilds with a single query, and caches them so that the
+     * schedules' first renders and commands do not wait on the database
+     * @param guildIds (List) IDs of guilds
+     * @return (int) number of schedule settings cached
+     */
+    public int warm(List<String> guildIds)
+    {
+        int cached = 0;
+        try (DocumentCache<String, Document>.Priming priming = this.settingsCache.priming())
+        {   // schedules changed while loading are skipped, and loaded when first used instead
+            for (Document settings : Main.getDBDriver().getScheduleCollection().find(in("guildId", guildIds)))
+            {
+                if (priming.prime(settings.getString("_id"), settings)) cached++;
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * drops the cached settings of a schedule, should be used after writing to a schedule's document directly
+     * @param cId (String) ID of channel / schedule (synonymous)
+     */
+    public void invalidateSettings(String cId)
+    {
+        this.settingsCache.invalidate(cId);
+        Main.getAnnouncementRouter().invalidateSchedule(cId);
+    }
+
     public boolean isRSVPEnabled(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return false;
@@ -370,7 +553,7 @@ public class ScheduleManager
 
     public boolean isRSVPConfirmationsEnabled(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return false;
@@ -380,7 +563,7 @@ public class ScheduleManager
 
     public boolean isEndFormatOverridden(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return false;
@@ -392,7 +575,7 @@ public class ScheduleManager
 
     public boolean isEndChannelOverridden(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return false;
@@ -404,7 +587,7 @@ public class ScheduleManager
 
     public boolean isRemindFormatOverridden(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return false;
@@ -416,7 +599,7 @@ public class ScheduleManager
 
     public boolean isRemindChanOverridden(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return false;
@@ -428,7 +611,7 @@ public class ScheduleManager
 
     public boolean isRSVPExclusive(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id", cId)).first();
+        Document settings = this.getSettings(cId);
         return settings == null || settings.getBoolean("rsvp_exclusivity", true);
     }
 
@@ -439,17 +622,12 @@ public class ScheduleManager
 
     public List<String> getSchedulesForGuild(String gId)
     {
-        List<String> list = new ArrayList<>();
-        for (Document document : Main.getDBDriver().getScheduleCollection().find(eq("guildId", gId)))
-        {
-            list.add(document.getString("_id"));
-        }
-        return list;
+        return Main.getEntryManager().getCatalog().findSchedules(gId);
     }
 
     public String getStartAnnounceChan(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return Main.getBotSettingsManager().getAnnounceChan();
@@ -464,7 +642,7 @@ public class ScheduleManager
 
     public String getStartAnnounceFormat(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return Main.getBotSettingsManager().getAnnounceFormat();
@@ -479,7 +657,7 @@ public class ScheduleManager
 
     public String getEndAnnounceChan(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return Main.getBotSettingsManager().getAnnounceChan();
@@ -494,7 +672,7 @@ public class ScheduleManager
 
     public String getEndAnnounceFormat(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return Main.getBotSettingsManager().getAnnounceFormat();
@@ -509,7 +687,7 @@ public class ScheduleManager
 
     public String getClockFormat(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return Main.getBotSettingsManager().getClockFormat();
@@ -524,7 +702,7 @@ public class ScheduleManager
 
     public ZoneId getTimeZone(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return ZoneId.of(Main.getBotSettingsManager().getTimeZone());
@@ -539,7 +717,7 @@ public class ScheduleManager
 
     public List<ZoneId> getAltZones(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return new ArrayList<>();
@@ -554,7 +732,7 @@ public class ScheduleManager
 
     public String getAddress(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return "off";
@@ -570,7 +748,7 @@ public class ScheduleManager
 
     public Date getSyncTime(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return Date.from(ZonedDateTime.of(LocalDate.now().plusDays(1),
@@ -589,7 +767,7 @@ public class ScheduleManager
     @SuppressWarnings("unchecked")
     public List<Integer> getReminders(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return new ArrayList<>();
@@ -600,12 +778,12 @@ public class ScheduleManager
         {
             return new ArrayList<>();
         }
-        return reminders;
+        return new ArrayList<>(reminders);
     }
 
     public String getReminderChan(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return Main.getBotSettingsManager().getAnnounceChan();
@@ -622,7 +800,7 @@ public class ScheduleManager
 
     public String getReminderFormat(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if( settings == null )
         {
             return Main.getBotSettingsManager().getAnnounceFormat();
@@ -638,7 +816,7 @@ public class ScheduleManager
 
     public String getStyle(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return "FULL";
@@ -654,7 +832,7 @@ public class ScheduleManager
 
     public int getSyncLength(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return 7;
@@ -670,7 +848,7 @@ public class ScheduleManager
 
     public String getSyncUser(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return null;
@@ -686,7 +864,7 @@ public class ScheduleManager
 
     public int getAutoSort(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return 0;
@@ -702,16 +880,24 @@ public class ScheduleManager
 
     public Map<String, String> getRSVPOptions(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return new HashMap<>();
         }
 
-        Map<String, String> map = (Map) settings.get("rsvp_options");
-        if(map == null)
+        // copied, so that callers do not modify the cached settings
+        Object options = settings.get("rsvp_options");
+        Map<String, String> map = new LinkedHashMap<>();
+        if(options instanceof Map)
+        {
+            for(Map.Entry<?, ?> option : ((Map<?, ?>) options).entrySet())
+            {
+                map.put((String) option.getKey(), (String) option.getValue());
+            }
+        }
+        else
         {
-            map = new LinkedHashMap<>();
             map.put(Main.getBotSettingsManager().getYesEmoji(), "Yes");
             map.put(Main.getBotSettingsManager().getNoEmoji(), "No");
             map.put(Main.getBotSettingsManager().getClearEmoji(), "Undecided");
@@ -721,7 +907,7 @@ public class ScheduleManager
 
     public String getRSVPClear(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return "";
@@ -736,7 +922,7 @@ public class ScheduleManager
 
     public String getRSVPLogging(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return "";
@@ -751,7 +937,7 @@ public class ScheduleManager
 
     public List<Integer> getEndReminders(String cId)
     {
-        Document settings = Main.getDBDriver().getScheduleCollection().find(eq("_id",cId)).first();
+        Document settings = this.getSettings(cId);
         if(settings == null)
         {
             return new ArrayList<>();
@@ -761,7 +947,7 @@ public class ScheduleManager
         {
             return new ArrayList<>();
         }
-        return reminders;
+        return new ArrayList<>(reminders);
     }
 
     /*
@@ -774,6 +960,8 @@ public class ScheduleManager
     public void setAnnounceChan(String cId, String chan )
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("announcement_channel", chan));
+        this.settingsCache.invalidate(cId);
+        Main.getAnnouncementRouter().invalidateSchedule(cId);
     }
 
     /**
@@ -782,6 +970,7 @@ public class ScheduleManager
     public void setAnnounceFormat(String cId, String format )
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("announcement_format", format));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -790,6 +979,8 @@ public class ScheduleManager
     public void setEndAnnounceChan(String cId, String chan )
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("announcement_channel_end", chan));
+        this.settingsCache.invalidate(cId);
+        Main.getAnnouncementRouter().invalidateSchedule(cId);
     }
 
     /**
@@ -798,6 +989,7 @@ public class ScheduleManager
     public void setEndAnnounceFormat(String cId, String format )
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("announcement_format_end", format));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -806,6 +998,7 @@ public class ScheduleManager
     public void setClockFormat(String cId, String clock )
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("clock_format", clock));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -814,6 +1007,7 @@ public class ScheduleManager
     public void setTimeZone(String cId, ZoneId zone)
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("timezone", zone.toString()));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -827,9 +1021,11 @@ public class ScheduleManager
         {
             doc.append("alt_zones", zones);
             Main.getDBDriver().getScheduleCollection().replaceOne(eq("_id", cId), doc);
+            this.settingsCache.invalidate(cId);
         } else
         {
             Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("alt_zones", zones));
+            this.settingsCache.invalidate(cId);
         }
     }
 
@@ -839,6 +1035,7 @@ public class ScheduleManager
     public void setAddress(String cId, String address)
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("sync_address", address));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -847,6 +1044,7 @@ public class ScheduleManager
     public void setSyncTime(String cId, Date syncTime)
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("sync_time", syncTime));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -855,6 +1053,7 @@ public class ScheduleManager
     public void setReminders(String cId, List<Integer> reminders)
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("default_reminders", reminders));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -867,9 +1066,11 @@ public class ScheduleManager
         {
             doc.append("end_reminders", reminders);
             Main.getDBDriver().getScheduleCollection().replaceOne(eq("_id", cId), doc);
+            this.settingsCache.invalidate(cId);
         } else
         {
             Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("end_reminders", reminders));
+            this.settingsCache.invalidate(cId);
         }
     }
 
@@ -879,6 +1080,8 @@ public class ScheduleManager
     public void setReminderChan(String cId, String chan )
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("reminder_channel", chan));
+        this.settingsCache.invalidate(cId);
+        Main.getAnnouncementRouter().invalidateSchedule(cId);
     }
 
     /**
@@ -887,6 +1090,7 @@ public class ScheduleManager
     public void setReminderFormat(String cId, String format )
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("reminder_format", format));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -895,16 +1099,19 @@ public class ScheduleManager
     public void setRSVPEnable(String cId, boolean value)
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("rsvp_enabled", value));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
      * Sets the style type to be used by events on a schedule
      * "full"- all information
      * "narrow"- truncated, less information
+     * "timestamp"- times rendered by the discord client, never needs refreshing
      */
     public void setStyle(String cId, String style)
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("display_style", style));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -913,6 +1120,7 @@ public class ScheduleManager
     public void setSyncLength(String cId, int len)
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("sync_length", len));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -922,6 +1130,7 @@ public class ScheduleManager
     public void setAutoSort(String cId, int type)
     {
         Main.getDBDriver().getScheduleCollection().updateOne(eq("_id",cId), set("auto_sort", type));
+        this.settingsCache.invalidate(cId);
     }
 
     /**
@@ -934,9 +1143,11 @@ public class ScheduleManager
         {
             doc.append("rsvp_options", options);
             Main.getDBDriver().getScheduleCollection().replaceOne(eq("_id", cId), doc);
+            this.settingsCache.invalidate(cId);
         } else
         {
             Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("rsvp_options", options));
+            this.settingsCache.invalidate(cId);
         }
     }
 
@@ -950,9 +1161,11 @@ public class ScheduleManager
         {
             doc.append("rsvp_clear", emoji);
             Main.getDBDriver().getScheduleCollection().replaceOne(eq("_id", cId), doc);
+            this.settingsCache.invalidate(cId);
         } else
         {
             Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("rsvp_clear", emoji));
+            this.settingsCache.invalidate(cId);
         }
     }
 
@@ -966,9 +1179,11 @@ public class ScheduleManager
         {
             doc.append("rsvp_exclusivity", bool);
             Main.getDBDriver().getScheduleCollection().replaceOne(eq("_id", cId), doc);
+            this.settingsCache.invalidate(cId);
         } else
         {
             Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("rsvp_exclusivity", bool));
+            this.settingsCache.invalidate(cId);
         }
     }
 
@@ -982,9 +1197,11 @@ public class ScheduleManager
         {
             doc.append("rsvp_confirmations", bool);
             Main.getDBDriver().getScheduleCollection().replaceOne(eq("_id", cId), doc);
+            this.settingsCache.invalidate(cId);
         } else
         {
             Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("rsvp_confirmations", bool));
+            this.settingsCache.invalidate(cId);
         }
     }
 
@@ -998,9 +1215,11 @@ public class ScheduleManager
         {
             doc.append("rsvp_logging", channelIdentifier);
             Main.getDBDriver().getScheduleCollection().replaceOne(eq("_id", cId), doc);
+            this.settingsCache.invalidate(cId);
         } else
         {
             Main.getDBDriver().getScheduleCollection().updateOne(eq("_id", cId), set("rsvp_logging", channelIdentifier));
+            this.settingsCache.invalidate(cId);
         }
     }
 }
@@ -17,12 +17,10 @@ import java.time.ZonedDateTime;
 import java.util.Date;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.function.Consumer;
 
 import static com.mongodb.client.model.Filters.*;
 import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
-import static com.mongodb.client.model.Updates.set;
 import static ws.nmathe.saber.Main.getGuildSettingsManager;
 
 /**
@@ -33,7 +31,8 @@ import static ws.nmathe.saber.Main.getGuildSettingsManager;
 class ScheduleSyncer implements Runnable
 {
     // thread pool for sync jobs
-    private static ExecutorService executor = Executors.newCachedThreadPool(
+    private static final int WINDOW = 10;
+    private static ExecutorService executor = Executors.newFixedThreadPool(WINDOW,
             new ThreadFactoryBuilder().setNameFormat("ScheduleSync-%d").build());
 
     public void run()
@@ -43,68 +42,66 @@ class ScheduleSyncer implements Runnable
                         ne("sync_address", "off"),
                         lte("sync_time", new Date()));
 
-        Main.getDBDriver().getScheduleCollection()
+        // schedules are synced a few at a time while the next are read
+        Main.getDBDriver().stream(Main.getDBDriver().getScheduleCollection()
                 .find(query)
-                .projection(fields(include("_id", "sync_time", "sync_address","sync_user", "guildId")))
-                .forEach((Consumer<? super Document>) document ->
+                .projection(fields(include("_id", "sync_time", "sync_address","sync_user", "guildId"))),
+                executor, WINDOW, document ->
         {
-            executor.execute(() ->
+            try
             {
-                try
-                {
-                    // identify which shard is responsible for the schedule
-                    String guildId = document.getString("guildId");
-                    JDA jda = Main.getShardManager().getJDA(guildId);
-
-                    // if the shard is not connected, do not sync schedules
-                    if(jda == null) return;
-                    if(JDA.Status.valueOf("CONNECTED") != jda.getStatus()) return;
+                // identify which shard is responsible for the schedule
+                String guildId = document.getString("guildId");
+                JDA jda = Main.getShardManager().getJDA(guildId);
 
-                    String scheduleId = document.getString("_id");
+                // if the shard is not connected, do not sync schedules
+                if(jda == null) return;
+                if(JDA.Status.valueOf("CONNECTED") != jda.getStatus()) return;
 
-                    // add one day to sync_time
-                    Date syncTime = Date.from(ZonedDateTime.ofInstant(document.getDate("sync_time").toInstant(),
-                            Main.getScheduleManager().getTimeZone(scheduleId)).plusDays(1).toInstant());
+                String scheduleId = document.getString("_id");
 
-                    // update schedule document with next sync time
-                    Main.getDBDriver().getScheduleCollection()
-                            .updateOne(eq("_id", scheduleId), set("sync_time", syncTime));
+                // add one day to sync_time
+                Date syncTime = Date.from(ZonedDateTime.ofInstant(document.getDate("sync_time").toInstant(),
+                        Main.getScheduleManager().getTimeZone(scheduleId)).plusDays(1).toInstant());
 
-                    // get the sync address and google credentials, then create the calendar service
-                    String address = document.getString("sync_address");
-                    Credential credential = document.get("sync_user")==null ? GoogleAuth.authorize() :
-                            GoogleAuth.getCredential(document.getString("sync_user"));
-                    Calendar service = GoogleAuth.getCalendarService(credential);
+                // update schedule document with next sync time
+                Main.getDBDriver().getScheduleRepository().setSyncTime(scheduleId, syncTime);
+                Main.getScheduleManager().invalidateSettings(scheduleId);
 
-                    TextChannel channel = jda.getTextChannelById(document.getString("_id"));
-                    if(channel == null) return;
+                // get the sync address and google credentials, then create the calendar service
+                String address = document.getString("sync_address");
+                Credential credential = document.get("sync_user")==null ? GoogleAuth.authorize() :
+                        GoogleAuth.getCredential(document.getString("sync_user"));
+                Calendar service = GoogleAuth.getCalendarService(credential);
 
-                    // attempt to sync schedule
-                    if(Main.getCalendarConverter().checkValidAddress(address, service))
-                    {
-                        Main.getCalendarConverter().importCalendar(address, channel, service);
-                        Logging.info(this.getClass(), "Synchronized schedule #" + channel.getName() + " [" +
-                                document.getString("_id") + "] on '" + channel.getGuild().getName() + "' [" +
-                                channel.getGuild().getId() + "]");
-                    }
-                    else    // if sync address is not valid, set it to off
-                    {
-                        GuildSettingsManager.GuildSettings gs = Main.getGuildSettingsManager().getGuildSettings(guildId);
-                        TextChannel control = Main.getShardManager().getJDA(guildId).getTextChannelById(gs.getCommandChannelId());
-                        String content = "**Warning:** I failed to auto-sync <#" + scheduleId + "> to *" + address + "*!\n" +
-                                "Please make sure that the calendar address is still correct and that the calendar privacy settings have not changed!";
-                        MessageUtilities.sendMsg(content, control, null);
+                TextChannel channel = jda.getTextChannelById(document.getString("_id"));
+                if(channel == null) return;
 
-                        Logging.warn(this.getClass(), "Failed to synchronize schedule #" + channel.getName() + " [" +
-                                document.getString("_id") + "] on '" + channel.getGuild().getName() + "' [" +
-                                channel.getGuild().getId() + "]");
-                    }
+                // attempt to sync schedule
+                if(Main.getCalendarConverter().checkValidAddress(address, service))
+                {
+                    Main.getCalendarConverter().importCalendar(address, channel, service);
+                    Logging.info(this.getClass(), "Synchronized schedule #" + channel.getName() + " [" +
+                            document.getString("_id") + "] on '" + channel.getGuild().getName() + "' [" +
+                            channel.getGuild().getId() + "]");
                 }
-                catch(Exception e)
+                else    // if sync address is not valid, set it to off
                 {
-                    Logging.exception(this.getClass(), e);
+                    GuildSettingsManager.GuildSettings gs = Main.getGuildSettingsManager().getGuildSettings(guildId);
+                    TextChannel control = Main.getShardManager().getJDA(guildId).getTextChannelById(gs.getCommandChannelId());
+                    String content = "**Warning:** I failed to auto-sync <#" + scheduleId + "> to *" + address + "*!\n" +
+                            "Please make sure that the calendar address is still correct and that the calendar privacy settings have not changed!";
+                    MessageUtilities.sendMsg(content, control, null);
+
+                    Logging.warn(this.getClass(), "Failed to synchronize schedule #" + channel.getName() + " [" +
+                            document.getString("_id") + "] on '" + channel.getGuild().getName() + "' [" +
+                            channel.getGuild().getId() + "]");
                 }
-            });
-        });
+            }
+            catch(Exception e)
+            {
+                Logging.exception(this.getClass(), e);
+            }
+        }).join();
     }
 }
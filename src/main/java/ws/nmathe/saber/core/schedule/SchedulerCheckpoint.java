@@ -0,0 +1,190 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.api.JDA;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk checkpoint of the display refresher's per-event state, one file per shard.
+ * For each event the checkpoint holds when its display will next change and a fingerprint of the event
+ * state it was last rendered from, so that a restarted shard only refreshes the displays which actually went
+ * stale while it was down instead of re-rendering every display it owns.
+ * Checkpoints are written periodically and on shutdown, and are only trusted for events whose fingerprint still
+ * matches the event as it is stored in the database.
+ *
+ * File layout (big endian): magic, version, shard ID, shard total, written at (epoch ms), record count,
+ * records of [event ID (int), guild ID (long), next refresh (epoch ms), fingerprint (long)], CRC32 of the records.
+ */
+class SchedulerCheckpoint
+{
+    private static final int MAGIC = 0x53424350;    // "SBCP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 4;
+    private static final int RECORD_SIZE = 4 + 8 + 8 + 8;
+    private static final long PERIOD = 5;           // minutes between checkpoints
+    private static final Path DIRECTORY = Paths.get("checkpoints");
+
+    /**
+     * an event's refresh state
+     */
+    static class Record
+    {
+        final int eventId;
+        final long guildId;
+        final long nextRefresh;
+        final long fingerprint;
+
+        Record(int eventId, long guildId, long nextRefresh, long fingerprint)
+        {
+            this.eventId = eventId;
+            this.guildId = guildId;
+            this.nextRefresh = nextRefresh;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * starts writing checkpoints of the refresher's state periodically and when the bot shuts down
+     * @param refresher (DisplayRefresher) the refresher
+     */
+    static void start(DisplayRefresher refresher)
+    {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "scheduler-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> writeAll(refresher), PERIOD, PERIOD, TimeUnit.MINUTES);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> writeAll(refresher), "scheduler-checkpoint-final"));
+    }
+
+    /**
+     * writes the checkpoint of each shard run by this process
+     */
+    private static void writeAll(DisplayRefresher refresher)
+    {
+        try
+        {
+            Map<Integer, List<Record>> byShard = new HashMap<>();
+            for (Record record : refresher.snapshot())
+            {
+                byShard.computeIfAbsent(shardOf(record.guildId), key -> new ArrayList<>()).add(record);
+            }
+            for (JDA shard : Main.getShardManager().getShards())
+            {
+                int shardId = getShardId(shard);
+                write(shardId, byShard.getOrDefault(shardId, Collections.emptyList()));
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.warn(SchedulerCheckpoint.class, "Failed to write scheduler checkpoint: " + e.getMessage());
+        }
+    }
+
+    private static void write(int shardId, List<Record> records) throws IOException
+    {
+        Files.createDirectories(DIRECTORY);
+        Path file = DIRECTORY.resolve("shard-" + shardId + ".bin");
+        Path temp = DIRECTORY.resolve("shard-" + shardId + ".bin.tmp");
+        long size = HEADER_SIZE + (long) records.size() * RECORD_SIZE + 8;
+
+        Files.deleteIfExists(temp);
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(shardId)
+                    .putInt(Main.getBotSettingsManager().getShardTotal())
+                    .putLong(System.currentTimeMillis())
+                    .putInt(records.size());
+            CRC32 crc = new CRC32();
+            byte[] record = new byte[RECORD_SIZE];
+            for (Record r : records)
+            {
+                int start = buffer.position();
+                buffer.putInt(r.eventId).putLong(r.guildId).putLong(r.nextRefresh).putLong(r.fingerprint);
+                buffer.position(start);
+                buffer.get(record);
+                crc.update(record);
+            }
+            buffer.putLong(crc.getValue());
+            buffer.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * reads a shard's checkpoint
+     * @param shardId (int) shard ID
+     * @return (Map) event ID mapped to its record, empty if there is no valid checkpoint for the shard
+     */
+    static Map<Integer, Record> read(int shardId)
+    {
+        Path file = DIRECTORY.resolve("shard-" + shardId + ".bin");
+        if (!Files.isRegularFile(file)) return Collections.emptyMap();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 8) return invalid(shardId, "truncated");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) return invalid(shardId, "not a checkpoint");
+            if (buffer.getInt() != VERSION) return invalid(shardId, "unsupported version");
+            if (buffer.getInt() != shardId) return invalid(shardId, "written for another shard");
+            if (buffer.getInt() != Main.getBotSettingsManager().getShardTotal()) return invalid(shardId, "shard total changed");
+            buffer.getLong();   // written at
+            int count = buffer.getInt();
+            if (count < 0 || size != HEADER_SIZE + (long) count * RECORD_SIZE + 8) return invalid(shardId, "truncated");
+
+            Map<Integer, Record> records = new HashMap<>();
+            CRC32 crc = new CRC32();
+            byte[] bytes = new byte[RECORD_SIZE];
+            for (int i = 0; i < count; i++)
+            {
+                int start = buffer.position();
+                Record record = new Record(buffer.getInt(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+                buffer.position(start);
+                buffer.get(bytes);
+                crc.update(bytes);
+                records.put(record.eventId, record);
+            }
+            if (buffer.getLong() != crc.getValue()) return invalid(shardId, "checksum mismatch");
+            return records;
+        }
+        catch (IOException e)
+        {
+            return invalid(shardId, e.getMessage());
+        }
+    }
+
+    private static Map<Integer, Record> invalid(int shardId, String reason)
+    {
+        Logging.warn(SchedulerCheckpoint.class, "Ignoring scheduler checkpoint of shard " + shardId + " (" + reason + ").");
+        return Collections.emptyMap();
+    }
+
+    private static int shardOf(long guildId)
+    {
+        int total = Main.getBotSettingsManager().getShardTotal();
+        return total > 0 ? (int) ((guildId >> 22) % total) : 0;
+    }
+
+    private static int getShardId(JDA shard)
+    {
+        return shard.getShardInfo() == null ? 0 : shard.getShardInfo().getShardId();
+    }
+}
@@ -0,0 +1,83 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import ws.nmathe.saber.Main;
+import ws.nmathe.saber.utils.Logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fills the in-process caches for a shard which has just become ready, before the shard's events are processed.
+ * The guild settings, schedule settings and event catalog of the shard's guilds are each loaded with one
+ * query per batch of guilds, rather than with one query per guild or schedule as they are first used.
+ */
+class ShardWarmup
+{
+    private static final int BATCH_SIZE = 500;      // guild IDs per query
+
+    // the most recent warm-up of each shard
+    private static final Map<Integer, ShardWarmup> latest = new ConcurrentHashMap<>();
+
+    final long millis;
+    final int guilds;
+    final int schedules;
+    final int events;
+
+    private ShardWarmup(long millis, int guilds, int schedules, int events)
+    {
+        this.millis = millis;
+        this.guilds = guilds;
+        this.schedules = schedules;
+        this.events = events;
+    }
+
+    /**
+     * warms the caches for a shard
+     * @param shard (JDA) the ready shard
+     * @param catalog (EventCatalog) the event catalog to load the shard's events into
+     */
+    static void warm(JDA shard, EventCatalog catalog)
+    {
+        int shardId = shard.getShardInfo() == null ? 0 : shard.getShardInfo().getShardId();
+        long begin = System.currentTimeMillis();
+        int guilds = 0;
+        int schedules = 0;
+        try
+        {
+            List<Guild> shardGuilds = shard.getGuilds();
+            for (int i = 0; i < shardGuilds.size(); i += BATCH_SIZE)
+            {
+                List<String> ids = new ArrayList<>();
+                for (Guild guild : shardGuilds.subList(i, Math.min(i + BATCH_SIZE, shardGuilds.size())))
+                {
+                    ids.add(guild.getId());
+                }
+                guilds += Main.getGuildSettingsManager().warm(ids);
+                schedules += Main.getScheduleManager().warm(ids);
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.warn(ShardWarmup.class, "Failed to warm the settings caches of shard " + shardId + ": " + e.getMessage());
+        }
+        int events = catalog.load(shard);
+
+        ShardWarmup warmup = new ShardWarmup(System.currentTimeMillis() - begin, guilds, schedules, events);
+        latest.put(shardId, warmup);
+        Logging.info(ShardWarmup.class, "Warmed shard " + shardId + " in " + warmup.millis + "ms: " +
+                guilds + " guild(s), " + schedules + " schedule(s), " + events + " event(s).");
+    }
+
+    /**
+     * @param shardId (int) shard ID
+     * @return (ShardWarmup) the shard's latest warm-up, null if the shard has not been warmed
+     */
+    static ShardWarmup latest(int shardId)
+    {
+        return latest.get(shardId);
+    }
+}
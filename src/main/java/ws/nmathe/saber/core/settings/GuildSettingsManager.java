@@ -1,13 +1,18 @@
 package ws.nmathe.saber.core.settings;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
 import org.bson.Document;
 import ws.nmathe.saber.Main;
 import ws.nmathe.saber.commands.general.*;
+import ws.nmathe.saber.core.database.DocumentCache;
+import ws.nmathe.saber.core.database.Invalidation;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.*;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
 import static com.mongodb.client.model.Updates.set;
 
 /**
@@ -15,38 +20,112 @@ import static com.mongodb.client.model.Updates.set;
  */
 public class GuildSettingsManager
 {
+    // settings objects are shared, their setters update both the object and the database
+    private DocumentCache<String, GuildSettings> settingsCache =
+            new DocumentCache<>(Invalidation.Source.GUILDS, this::loadGuildSettings);
+
     /**
      * retrieves the guild settings object for a guild
      * @param guildId ID of guild
      * @return GuildSettings object (never null)
      */
     public GuildSettings getGuildSettings(String guildId)
+    {
+        return this.settingsCache.get(guildId);
+    }
+
+    /**
+     * loads the guild settings from the database, creating the guild's document if it does not exist
+     * @param guildId ID of guild
+     * @return GuildSettings object (never null)
+     */
+    private GuildSettings loadGuildSettings(String guildId)
     {
         Document guildDoc = Main.getDBDriver().getGuildCollection().find(eq("_id", guildId)).first();
 
         if (guildDoc == null) // create a new guild document and add to db
         {
-            // unrestricted commands are commands that may be used outside of the command channel
-            ArrayList<String> unrestrictedCommands = new ArrayList<>(Arrays.asList(
-                    new ListCommand().name(),
-                    new HelpCommand().name(),
-                    new SchedulesCommand().name(),
-                    new EventsCommand().name(),
-                    new DiagnoseCommand().name())); // defaults
-
-            // initialize with defaults
-            guildDoc = new Document()
-                    .append("_id", guildId)
-                    .append("prefix", Main.getBotSettingsManager().getCommandPrefix())
-                    .append("unrestricted_commands", unrestrictedCommands)
-                    .append("late_threshold", 15);
-
+            guildDoc = defaultGuildDocument(guildId);
             Main.getDBDriver().getGuildCollection().insertOne(guildDoc);
         }
 
         return new GuildSettings(guildDoc);
     }
 
+    /**
+     * loads the settings of many guilds with a single query, creating the documents of guilds which have none,
+     * and caches them so that the guilds' first commands do not wait on the database
+     * @param guildIds IDs of guilds
+     * @return number of guild settings cached
+     */
+    public int warm(List<String> guildIds)
+    {
+        try (DocumentCache<String, GuildSettings>.Priming priming = this.settingsCache.priming())
+        {
+            Map<String, Document> documents = new HashMap<>();
+            for (Document guildDoc : Main.getDBDriver().getGuildCollection().find(in("_id", guildIds)))
+            {
+                documents.put(guildDoc.getString("_id"), guildDoc);
+            }
+
+            List<Document> created = new ArrayList<>();
+            for (String guildId : guildIds)
+            {
+                if (!documents.containsKey(guildId))
+                {
+                    Document guildDoc = defaultGuildDocument(guildId);
+                    documents.put(guildId, guildDoc);
+                    created.add(guildDoc);
+                    priming.written(guildId);
+                }
+            }
+            if (!created.isEmpty())
+            {
+                try
+                {   // unordered, so that a document created concurrently does not stop the rest
+                    Main.getDBDriver().getGuildCollection().insertMany(created, new InsertManyOptions().ordered(false));
+                }
+                catch (MongoBulkWriteException e)
+                {   // documents created meanwhile are loaded when first used instead
+                    for (BulkWriteError error : e.getWriteErrors())
+                    {
+                        documents.remove(created.get(error.getIndex()).getString("_id"));
+                    }
+                }
+            }
+
+            // guilds changed while loading are skipped, and loaded when first used instead
+            int cached = 0;
+            for (Document guildDoc : documents.values())
+            {
+                if (priming.prime(guildDoc.getString("_id"), new GuildSettings(guildDoc))) cached++;
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * @param guildId ID of guild
+     * @return a new guild settings document with the default settings
+     */
+    private static Document defaultGuildDocument(String guildId)
+    {
+        // unrestricted commands are commands that may be used outside of the command channel
+        ArrayList<String> unrestrictedCommands = new ArrayList<>(Arrays.asList(
+                new ListCommand().name(),
+                new HelpCommand().name(),
+                new SchedulesCommand().name(),
+                new EventsCommand().name(),
+                new DiagnoseCommand().name())); // defaults
+
+        // initialize with defaults
+        return new Document()
+                .append("_id", guildId)
+                .append("prefix", Main.getBotSettingsManager().getCommandPrefix())
+                .append("unrestricted_commands", unrestrictedCommands)
+                .append("late_threshold", 15);
+    }
+
     /**
      * object for getting and setting guild options
      */
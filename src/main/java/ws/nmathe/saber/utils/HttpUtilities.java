@@ -1,68 +1,159 @@
 package ws.nmathe.saber.utils;
 
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.Unirest;
 import com.mashape.unirest.http.exceptions.UnirestException;
+import net.dv8tion.jda.api.JDA;
 import org.json.JSONObject;
 import ws.nmathe.saber.Main;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Reports bot metrics to metric tracking services.
+ * Guild counts are kept per shard from the shard's ready event and guild join/leave deltas, so reporting never
+ * walks the guild lists. Changes are coalesced and pushed from a dedicated thread at most once per interval
+ * (one update per changed shard), failed pushes are retried with exponential backoff.
  */
 public class HttpUtilities
 {
-    private static LocalDateTime lastUpdate = LocalDateTime.MIN;
+    private static final long INTERVAL = 60;         // seconds between pushes
+    private static final long MAX_BACKOFF = 30 * 60; // seconds
+
+    private static final Map<Integer, AtomicInteger> guildCounts = new ConcurrentHashMap<>();
+    private static final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "stats-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile String selfId = null;
+
+    // only touched by the reporter thread
+    private static long backoff = 0;
+    private static long nextAttempt = 0;
+
+    static
+    {
+        reporter.scheduleWithFixedDelay(HttpUtilities::push, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+    }
 
     /**
-     * Updates bot metrics for any connected metric tracking services
+     * records the guild count of a shard which has become ready
+     * @param jda (JDA) the shard
      */
-    public static void updateStats(Integer shardId)
+    public static void shardReady(JDA jda)
     {
-        String auth = Main.getBotSettingsManager().getWebToken();
-        if (auth != null)
-        {
-            HttpUtilities.updateStats_abal(auth, shardId);
-        }
+        selfId = jda.getSelfUser().getId();
+        int shardId = shardId(jda);
+        guildCounts.computeIfAbsent(shardId, key -> new AtomicInteger()).set((int) jda.getGuildCache().size());
+        changed.add(shardId);
+    }
+
+    /**
+     * records that a shard joined (delta +1) or left (delta -1) a guild
+     * @param jda (JDA) the shard
+     * @param delta (int) change in guild count
+     */
+    public static void guildsChanged(JDA jda, int delta)
+    {
+        int shardId = shardId(jda);
+        guildCounts.computeIfAbsent(shardId, key -> new AtomicInteger()).addAndGet(delta);
+        changed.add(shardId);
     }
 
+    private static int shardId(JDA jda)
+    {
+        return jda.getShardInfo() == null ? 0 : jda.getShardInfo().getShardId();
+    }
 
     /**
-     * updates bot metrics for bots.discord.pw tracking
-     * @param auth the abal authentication token for the bot
+     * pushes the counts of the shards which changed since the last successful push
      */
-    private static void updateStats_abal(String auth, Integer shardId)
+    private static void push()
     {
-        if (lastUpdate.until(LocalDateTime.now(), ChronoUnit.SECONDS) > 60)
+        try
         {
-            JSONObject json;
-            if (Main.getShardManager().isSharding() && shardId != null)
-            {   // if the bot is sharding send shard information
-                int count = Main.getShardManager().getShard(shardId).getGuilds().size();
-                int total = Main.getBotSettingsManager().getShardTotal();
-                json = new JSONObject().put("shard_count", total).put("shard_id", shardId).put("server_count", count);
+            String auth = Main.getBotSettingsManager().getWebToken();
+            if (auth == null || selfId == null || changed.isEmpty()) return;
+            if (System.currentTimeMillis() < nextAttempt) return;
+
+            List<Integer> shards = new ArrayList<>(changed);
+            changed.removeAll(shards);
+            List<Integer> failed = new ArrayList<>();
+            if (Main.getShardManager().isSharding())
+            {
+                for (Integer shardId : shards)
+                {
+                    JSONObject json = new JSONObject()
+                            .put("shard_count", Main.getBotSettingsManager().getShardTotal())
+                            .put("shard_id", shardId)
+                            .put("server_count", guildCounts.get(shardId).get());
+                    if (!updateStats_abal(auth, json)) failed.add(shardId);
+                }
             }
             else
-            {   // otherwise send only the server count
-                int count = Main.getShardManager().getGuilds().size();
-                json = new JSONObject().put("server_count", count);
+            {
+                int count = 0;
+                for (AtomicInteger shardCount : guildCounts.values())
+                {
+                    count += shardCount.get();
+                }
+                if (!updateStats_abal(auth, new JSONObject().put("server_count", count))) failed.addAll(shards);
             }
 
-            try
-            {   // send the API request
-                Unirest.post("https://bots.discord.pw/api/bots/" + Main.getShardManager().getJDA().getSelfUser().getId() + "/stats")
-                        .header("Authorization", auth)
-                        .header("Content-Type", "application/json")
-                        .body(json).asJson();
-            }
-            catch (UnirestException e)
+            if (failed.isEmpty())
             {
-                Logging.warn(HttpUtilities.class, e.getMessage());
+                backoff = 0;
             }
-            catch (Exception e)
-            {
-                Logging.exception(HttpUtilities.class, e);
+            else
+            {   // try again later
+                changed.addAll(failed);
+                backoff = Math.min(MAX_BACKOFF, backoff == 0 ? INTERVAL : backoff * 2);
+                nextAttempt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(backoff);
+                Logging.warn(HttpUtilities.class, "Failed to update stats for " + failed.size() +
+                        " shard(s), retrying in " + backoff + " seconds.");
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.exception(HttpUtilities.class, e);
+        }
+    }
+
+    /**
+     * updates bot metrics for bots.discord.pw tracking
+     * @param auth the abal authentication token for the bot
+     * @param json the stats to send
+     * @return false if the update should be retried
+     */
+    private static boolean updateStats_abal(String auth, JSONObject json)
+    {
+        try
+        {   // send the API request
+            HttpResponse<JsonNode> response = Unirest.post("https://bots.discord.pw/api/bots/" + selfId + "/stats")
+                    .header("Authorization", auth)
+                    .header("Content-Type", "application/json")
+                    .body(json).asJson();
+            int status = response.getStatus();
+            if (status == 429 || status >= 500) return false;
+            if (status >= 400)
+            {   // retrying will not help
+                Logging.warn(HttpUtilities.class, "Stats update rejected with status " + status + ".");
             }
+            return true;
+        }
+        catch (UnirestException e)
+        {
+            Logging.warn(HttpUtilities.class, e.getMessage());
+            return false;
         }
     }
 }
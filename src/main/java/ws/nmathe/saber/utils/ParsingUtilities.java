@@ -1,10 +1,10 @@
 package ws.nmathe.saber.utils;
 
 import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.*;
 import org.apache.commons.lang3.StringUtils;
 import ws.nmathe.saber.Main;
+import ws.nmathe.saber.core.MemberIndex;
 import ws.nmathe.saber.core.schedule.ScheduleEntry;
 
 import java.time.LocalDate;
@@ -606,19 +606,18 @@ public class ParsingUtilities
         Set<String> users = null;
         if (category.toLowerCase().equals("no-input"))
         {
-            List<String> rsvped = new ArrayList<>();
-            Set<String> keys = entry.getRsvpMembers().keySet();
-            for(String key : keys)
-            {
-                rsvped.addAll(entry.getRsvpMembersOfType(key));
-            }
             JDA shard = Main.getShardManager().getJDA(entry.getGuildId());
             Guild guild = shard.getGuildById(entry.getGuildId());
             GuildChannel channel = shard.getTextChannelById(entry.getChannelId());
-            users = guild.getMembers().stream()
-                    .filter(member -> member.getPermissions(channel).contains(Permission.MESSAGE_HISTORY))
-                    .map(member -> member.getUser().getId())
-                    .filter(memberId -> !rsvped.contains(memberId)).collect(Collectors.toSet());
+
+            // members able to see the schedule, less those who have rsvp'ed
+            MemberIndex.GuildIndex index = Main.getMemberIndex().get(guild);
+            BitSet noInput = index.readers(guild, channel);
+            for(String key : entry.getRsvpMembers().keySet())
+            {
+                noInput.andNot(index.of(entry.getRsvpMembersOfType(key)));
+            }
+            return index.toIds(noInput);
         } else
         {
             List<String> members = entry.getRsvpMembers().get(category);
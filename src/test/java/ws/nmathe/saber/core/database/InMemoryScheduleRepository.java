@@ -0,0 +1,67 @@
+package ws.nmathe.saber.core.database;
+
+import org.bson.Document;
+import ws.nmathe.saber.Main;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Schedules kept in memory, for rendering schedules without a database (such as by the render benchmark and checks).
+ * Documents are copied in and out.
+ */
+public class InMemoryScheduleRepository implements ScheduleRepository
+{
+    private final Map<String, Document> schedules = new ConcurrentHashMap<>();
+
+    @Override
+    public Document find(String id)
+    {
+        Document schedule = this.schedules.get(id);
+        return schedule == null ? null : new Document(schedule);
+    }
+
+    @Override
+    public void setSyncTime(String id, Date syncTime)
+    {
+        this.schedules.computeIfPresent(id, (key, schedule) -> new Document(schedule).append("sync_time", syncTime));
+    }
+
+    /**
+     * replaces the driver's schedule repository with an empty in-memory repository
+     * (code which uses the collections directly still needs a database)
+     * @return (InMemoryScheduleRepository) the installed repository
+     */
+    public static InMemoryScheduleRepository install()
+    {
+        InMemoryScheduleRepository repository = new InMemoryScheduleRepository();
+        try
+        {
+            Field field = Driver.class.getDeclaredField("scheduleRepository");
+            field.setAccessible(true);
+            field.set(Main.getDBDriver(), repository);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        return repository;
+    }
+
+    /**
+     * inserts a schedule, or replaces the schedule with the same ID
+     * @param schedule (Document) the schedule
+     */
+    public void save(Document schedule)
+    {
+        this.schedules.put(schedule.getString("_id"), new Document(schedule));
+    }
+
+    @Override
+    public void deleteByGuild(String guildId)
+    {
+        this.schedules.values().removeIf(schedule -> guildId.equals(schedule.getString("guildId")));
+    }
+}
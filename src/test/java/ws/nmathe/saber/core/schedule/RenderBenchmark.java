@@ -0,0 +1,66 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of rendering event displays through the render contexts of {@link MessageGenerator}
+ * with the renderer which resolved every schedule setting for each line ({@link LegacyMessageGenerator}).
+ *
+ * Run with:
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.workingdir=target/test-classes
+ *     -Dexec.args="-classpath %classpath ws.nmathe.saber.core.schedule.RenderBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark
+{
+    private static final int EVENTS = 64;
+
+    @Param({RenderFixture.FULL, RenderFixture.NARROW, RenderFixture.ALT_ZONES})
+    public String schedule;
+
+    private List<ScheduleEntry> events;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.events = RenderFixture.events(this.schedule, EVENTS);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole)
+    {
+        for (ScheduleEntry se : this.events)
+        {
+            MessageCreateData message = LegacyMessageGenerator.generate(se);
+            blackhole.consume(message);
+        }
+    }
+
+    @Benchmark
+    public void current(Blackhole blackhole)
+    {
+        for (ScheduleEntry se : this.events)
+        {
+            MessageCreateData message = MessageGenerator.generate(se);
+            blackhole.consume(message);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(RenderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,72 @@
+package ws.nmathe.saber.core.schedule;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that rendering through render contexts produces exactly the displays the legacy renderer produced.
+ */
+public class RenderEquivalenceTest
+{
+    private static final int EVENTS = 16;
+
+    @Test
+    public void fullDisplaysAreUnchanged()
+    {
+        this.assertSameDisplays(RenderFixture.FULL);
+    }
+
+    @Test
+    public void narrowDisplaysAreUnchanged()
+    {
+        this.assertSameDisplays(RenderFixture.NARROW);
+    }
+
+    @Test
+    public void altZoneDisplaysAreUnchanged()
+    {
+        this.assertSameDisplays(RenderFixture.ALT_ZONES);
+    }
+
+    @Test
+    public void timestampDisplaysAreUnchanged()
+    {
+        this.assertSameDisplays(RenderFixture.TIMESTAMP);
+    }
+
+    private void assertSameDisplays(String schedule)
+    {
+        for (ScheduleEntry se : RenderFixture.events(schedule, EVENTS))
+        {
+            // both renderers read the clock, and the fixture's times are whole minutes, so the
+            // displays are only comparable when rendered within the same minute
+            MessageCreateData legacy, current;
+            ZonedDateTime minute;
+            do
+            {
+                minute = ZonedDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+                legacy = LegacyMessageGenerator.generate(se);
+                current = MessageGenerator.generate(se);
+            }
+            while (!minute.equals(ZonedDateTime.now().truncatedTo(ChronoUnit.MINUTES)));
+
+            String event = schedule + " event " + se.getId();
+            assertEquals(event, legacy.getContent(), current.getContent());
+            assertEquals(event, 1, current.getEmbeds().size());
+
+            MessageEmbed expected = legacy.getEmbeds().get(0);
+            MessageEmbed actual = current.getEmbeds().get(0);
+            assertEquals(event, expected.getDescription(), actual.getDescription());
+            assertEquals(event, expected.getFooter().getText(), actual.getFooter().getText());
+            assertEquals(event, expected.getAuthor().getName(), actual.getAuthor().getName());
+            assertEquals(event, expected.getAuthor().getUrl(), actual.getAuthor().getUrl());
+            assertEquals(event, expected.getColorRaw(), actual.getColorRaw());
+        }
+    }
+}
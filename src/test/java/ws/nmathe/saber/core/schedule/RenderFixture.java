@@ -0,0 +1,108 @@
+package ws.nmathe.saber.core.schedule;
+
+import org.bson.Document;
+import ws.nmathe.saber.core.database.InMemoryScheduleRepository;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Schedules and events for exercising the display renderers without a database or discord connection.
+ * The schedules are stored in the in-memory schedule repository, which the schedule settings are read from.
+ * Events have a color so that rendering does not look up the bot's role color through a shard.
+ */
+class RenderFixture
+{
+    static final String FULL = "full";
+    static final String NARROW = "narrow";
+    static final String ALT_ZONES = "altzone";
+    static final String TIMESTAMP = "timestamp";
+
+    private static final String GUILD_ID = "100000000000000000";
+    private static boolean loaded = false;
+
+    /**
+     * stores the fixture's schedules, once per JVM
+     */
+    static synchronized void load()
+    {
+        if (loaded) return;
+        loaded = true;
+
+        InMemoryScheduleRepository repository = InMemoryScheduleRepository.install();
+        repository.save(schedule(FULL, "full", "12", "America/New_York",
+                Collections.emptyList()));
+        repository.save(schedule(NARROW, "narrow", "24", "Europe/Berlin",
+                Collections.emptyList()));
+        repository.save(schedule(ALT_ZONES, "full", "24", "America/New_York",
+                Arrays.asList("Europe/London", "Asia/Tokyo", "America/Los_Angeles", "Australia/Sydney")));
+        repository.save(schedule(TIMESTAMP, "timestamp", "12", "America/Chicago",
+                Arrays.asList("Europe/Paris")));
+    }
+
+    /**
+     * creates the events of a schedule, a mix of upcoming and started events
+     * @param scheduleId (String) one of the fixture's schedules
+     * @param count (int) number of events
+     * @return (List) the events
+     */
+    static List<ScheduleEntry> events(String scheduleId, int count)
+    {
+        load();
+        List<ScheduleEntry> events = new ArrayList<>();
+        ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        for (int i = 0; i < count; i++)
+        {
+            // upcoming events at varying distances, every fourth event already started
+            boolean started = i % 4 == 3;
+            ZonedDateTime start = started ? now.minusMinutes(30 + i) : now.plusMinutes(45 + 97L * i);
+            ZonedDateTime end = start.plusHours(2 + i % 3);
+
+            Map<String, Object> members = new LinkedHashMap<>();
+            members.put("Yes", new ArrayList<>(Arrays.asList("200000000000000001", "200000000000000002")));
+            members.put("No", new ArrayList<>(Collections.singletonList("200000000000000003")));
+            Map<String, Object> limits = new LinkedHashMap<>();
+            limits.put("Yes", 10);
+
+            Document document = new Document("_id", 1000 + i)
+                    .append("channelId", scheduleId)
+                    .append("guildId", GUILD_ID)
+                    .append("messageId", String.valueOf(300000000000000000L + i))
+                    .append("title", "Event " + i)
+                    .append("start", Date.from(start.toInstant()))
+                    .append("end", Date.from(end.toInstant()))
+                    .append("comments", new ArrayList<>(Collections.singletonList("bring snacks")))
+                    .append("hasStarted", started)
+                    .append("description", "Weekly session number " + i + ".\n%g")
+                    .append("reminders", started ? new ArrayList<>() : new ArrayList<>(Collections.singletonList(
+                            Date.from(start.minusMinutes(30).toInstant()))))
+                    .append("end_reminders", new ArrayList<>(Collections.singletonList(
+                            Date.from(end.minusMinutes(10).toInstant()))))
+                    .append("rsvp_members", members)
+                    .append("rsvp_limits", limits)
+                    .append("deadline", i % 2 == 0 ? Date.from(start.minusHours(1).toInstant()) : null)
+                    .append("location", i % 3 == 0 ? "Voice channel " + i : null)
+                    .append("color", "#4286f4");
+            events.add(new ScheduleEntry(document));
+        }
+        return events;
+    }
+
+    private static Document schedule(String id, String style, String clock, String zone, List<String> altZones)
+    {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("✅", "Yes");
+        options.put("❌", "No");
+        options.put("❔", "Maybe");
+
+        return new Document("_id", id)
+                .append("guildId", GUILD_ID)
+                .append("display_style", style)
+                .append("clock_format", clock)
+                .append("timezone", zone)
+                .append("alt_zones", new ArrayList<>(altZones))
+                .append("rsvp_enabled", true)
+                .append("rsvp_options", new Document(new LinkedHashMap<>(options)));
+    }
+}